@@ -0,0 +1,106 @@
+package benchmarks;
+
+import client.ServerConnection;
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare le nombre d'inscriptions par seconde d'un conseiller qui inscrit une cohorte: une commande INSCRIRE
+ * par étudiant, ou des lots INSCRIRE_LOT de 1, 100 et 10 000 formulaires. Chaque lot est écrit et forcé sur
+ * le disque en une seule écriture du journal.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.BatchRegistrationBenchmark -Dexec.args="[secondes]"
+ */
+public class BatchRegistrationBenchmark {
+
+    /**
+     * Tailles de lot testées
+     */
+    private static final int[] BATCH_SIZES = {1, 100, 10_000};
+
+    /**
+     * Nombre de cours du catalogue synthétique
+     */
+    private static final int COURSES = 1000;
+
+    /**
+     * Prochain matricule, pour que chaque inscription soit nouvelle
+     */
+    private static int nextMatricule = 10_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path dataDir = Catalogs.createDataDir(COURSES);
+        System.setProperty(Server.DATA_DIR_PROPERTY, dataDir.toString());
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Server server = new Server(0, new ServerConfig().setMode(ConnectionMode.VIRTUAL));
+        Thread acceptor = new Thread(server::run, "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        List<String> rows = new ArrayList<>();
+        rows.add(String.format("%-14s %8s %16s %14s", "commande", "lot", "inscriptions/s", "ms par lot"));
+        try (ServerConnection connection = new ServerConnection("localhost", server.getPort())) {
+            long registered = 0;
+            long start = System.nanoTime();
+            long deadline = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < deadline) {
+                RegistrationResult result = connection.register(nextForm());
+                if (!result.isAccepted()) {
+                    throw new IllegalStateException(result.getMessage());
+                }
+                registered++;
+            }
+            rows.add(row("INSCRIRE", 1, registered, registered, System.nanoTime() - start));
+            for (int size : BATCH_SIZES) {
+                registered = 0;
+                long batches = 0;
+                start = System.nanoTime();
+                deadline = start + seconds * 1_000_000_000L;
+                while (System.nanoTime() < deadline || batches == 0) {
+                    List<RegistrationForm> batch = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        batch.add(nextForm());
+                    }
+                    for (RegistrationResult result : connection.registerAll(batch)) {
+                        if (!result.isAccepted()) {
+                            throw new IllegalStateException(result.getMessage());
+                        }
+                        registered++;
+                    }
+                    batches++;
+                }
+                rows.add(row("INSCRIRE_LOT", size, registered, batches, System.nanoTime() - start));
+            }
+        }
+        System.setOut(console);
+        rows.forEach(System.out::println);
+        Catalogs.delete(dataDir);
+        System.exit(0);
+    }
+
+    private static String row(String command, int size, long registered, long batches, long nanos) {
+        return String.format("%-14s %8d %16.0f %14.2f", command, size, registered / (nanos / 1e9), nanos / 1e6 / batches);
+    }
+
+    /**
+     * @return un formulaire pour un nouvel étudiant, dans un cours offert du catalogue synthétique
+     */
+    private static RegistrationForm nextForm() {
+        int matricule = nextMatricule++;
+        int course = matricule % COURSES;
+        Course c = new Course("Cours_synthetique_" + course, Catalogs.code(course), Catalogs.SESSIONS[course % Catalogs.SESSIONS.length]);
+        return new RegistrationForm("Prenom", "Nom", "etudiant@umontreal.ca", String.valueOf(matricule), c);
+    }
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.CourseCatalog;
+import server.CourseResponseCache;
+import server.models.Course;
+import server.protocol.WireFormat;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure le chemin de CHARGER sur des catalogues synthétiques de 1k à 1M cours:
+ * l'ancienne lecture de cours.txt à chaque requête, la liste du catalogue en mémoire,
+ * la réponse déjà encodée du cache, la réponse "non modifié" à "CHARGER session IF-NOT version"
+ * d'un client qui a déjà la liste, et le chargement complet du catalogue.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar CatalogBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int courses;
+
+    private Path dataDir;
+    private Path coursFile;
+    private CourseCatalog catalog;
+    private CourseResponseCache cache;
+    private String version;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Catalogs.createDataDir(courses);
+        coursFile = dataDir.resolve("cours.txt");
+        catalog = new CourseCatalog(coursFile, 0);
+        cache = new CourseResponseCache(catalog);
+        version = catalog.getSessionVersion("Automne");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        catalog.close();
+        Catalogs.delete(dataDir);
+    }
+
+    /**
+     * L'ancien handleLoadCourses: lire et découper tout le fichier à chaque requête
+     */
+    @Benchmark
+    public ArrayList<Course> scanFile() throws IOException {
+        ArrayList<Course> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(coursFile.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length == 3 && parts[2].trim().equals("Automne")) {
+                    result.add(new Course(parts[1].trim(), parts[0].trim(), "Automne"));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * La liste du catalogue en mémoire, copiée comme pour l'envoyer au client
+     */
+    @Benchmark
+    public ArrayList<Course> catalogLookup() {
+        return new ArrayList<>(catalog.getCourses("Automne"));
+    }
+
+    /**
+     * La réponse déjà encodée, telle qu'écrite sur le socket
+     */
+    @Benchmark
+    public byte[] cachedResponse() {
+        return cache.getCourses("Automne", WireFormat.BINARY);
+    }
+
+    /**
+     * La réponse "non modifié" envoyée à un client qui a déjà la version courante de la session
+     */
+    @Benchmark
+    public byte[] notModifiedResponse() {
+        return cache.getCourses("Automne", version, WireFormat.BINARY);
+    }
+
+    /**
+     * Le chargement complet du fichier, fait au démarrage et à chaque modification de cours.txt
+     */
+    @Benchmark
+    public CourseCatalog loadCatalog() {
+        CourseCatalog loaded = new CourseCatalog(coursFile, 0);
+        loaded.close();
+        return loaded;
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * Génère des catalogues de cours synthétiques au format de cours.txt
+ */
+final class Catalogs {
+
+    /**
+     * Les sessions du catalogue, réparties à tour de rôle entre les cours
+     */
+    static final String[] SESSIONS = {"Automne", "Hiver", "Ete"};
+
+    private Catalogs() {
+    }
+
+    /**
+     * Crée un dossier de données temporaire contenant un cours.txt de la taille demandée
+     * et un inscription.txt vide
+     *
+     * @param courses le nombre de cours
+     * @return le dossier de données
+     */
+    static Path createDataDir(int courses) throws IOException {
+        Path dir = Files.createTempDirectory("server-data");
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("cours.txt"), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < courses; i++) {
+                writer.write(code(i) + "\tCours_synthetique_" + i + "\t" + SESSIONS[i % SESSIONS.length] + "\n");
+            }
+        }
+        Files.createFile(dir.resolve("inscription.txt"));
+        return dir;
+    }
+
+    /**
+     * Écrit un fichier d'inscriptions synthétique au format de inscription.txt: les inscriptions sont
+     * réparties entre 10 000 cours et chaque matricule n'est inscrit qu'une fois à chaque cours
+     *
+     * @param file  le fichier à créer
+     * @param lines le nombre d'inscriptions
+     */
+    static void writeRegistrations(Path file, int lines) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                int course = i % 10_000;
+                writer.write(SESSIONS[course % SESSIONS.length] + "\t" + code(course) + "\t" + (10_000_000 + i)
+                        + "\tPrenom" + i + "\tNom" + i + "\tetudiant" + i + "@umontreal.ca\n");
+            }
+        }
+    }
+
+    /**
+     * @param i le numéro du cours
+     * @return le code du cours
+     */
+    static String code(int i) {
+        return "IFT" + (1000 + i);
+    }
+
+    /**
+     * Supprime un dossier de données créé par {@link #createDataDir(int)}, avec le dossier du journal binaire
+     */
+    static void delete(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.protocol.BinaryCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare la sérialisation Java et le format binaire de BinaryCodec pour les messages du protocole:
+ * un formulaire d'inscription et la liste des cours d'une session.
+ * Le nombre d'octets de chaque message est affiché au début de l'exécution.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar CodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private RegistrationForm form;
+    private ArrayList<Course> courses;
+    private byte[] formJava;
+    private byte[] formBinary;
+    private byte[] coursesJava;
+    private byte[] coursesBinary;
+
+    @Setup
+    public void setup() throws IOException {
+        form = new RegistrationForm("Michalis", "Famelis", "mfamelis@iro.umontreal.ca", "12345678",
+                new Course("Genie_Logiciel", "IFT2255", "Automne"));
+        courses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            courses.add(new Course("Cours_numero_" + i, "IFT" + (1000 + i), "Automne"));
+        }
+        formJava = javaEncode(form);
+        formBinary = BinaryCodec.encode(form);
+        coursesJava = javaEncode(courses);
+        coursesBinary = BinaryCodec.encode(courses);
+        System.out.printf("%nOctets par message: formulaire java=%d binaire=%d, 50 cours java=%d binaire=%d%n",
+                formJava.length, formBinary.length, coursesJava.length, coursesBinary.length);
+    }
+
+    private static byte[] javaEncode(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object javaDecode(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeFormJava() throws IOException {
+        return javaEncode(form);
+    }
+
+    @Benchmark
+    public byte[] encodeFormBinary() {
+        return BinaryCodec.encode(form);
+    }
+
+    @Benchmark
+    public Object decodeFormJava() throws IOException, ClassNotFoundException {
+        return javaDecode(formJava);
+    }
+
+    @Benchmark
+    public Object decodeFormBinary() throws IOException {
+        return BinaryCodec.decode(formBinary, 0, formBinary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeCoursesJava() throws IOException {
+        return javaEncode(courses);
+    }
+
+    @Benchmark
+    public byte[] encodeCoursesBinary() {
+        return BinaryCodec.encode(courses);
+    }
+
+    @Benchmark
+    public Object decodeCoursesJava() throws IOException, ClassNotFoundException {
+        return javaDecode(coursesJava);
+    }
+
+    @Benchmark
+    public Object decodeCoursesBinary() throws IOException {
+        return BinaryCodec.decode(coursesBinary, 0, coursesBinary.length);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import server.Command;
+import server.CommandParser;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'ancien découpage des lignes de commande (split, subList, join puis une paire)
+ * avec CommandParser. Lancer avec -prof gc pour voir le taux d'allocation de chaque version.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar CommandLineBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandLineBenchmark {
+
+    @Param({"CHARGER Automne", "INSCRIRE", "CHARGER Automne Hiver Ete"})
+    public String line;
+
+    /**
+     * L'ancien Server.processCommandLine, qui retournait une javafx.util.Pair
+     */
+    @Benchmark
+    public Map.Entry<String, String> splitAndJoin() {
+        String[] parts = line.split(" ");
+        String cmd = parts[0];
+        String args = String.join(" ", Arrays.asList(parts).subList(1, parts.length));
+        return new AbstractMap.SimpleImmutableEntry<>(cmd, args);
+    }
+
+    @Benchmark
+    public void commandParser(Blackhole blackhole) {
+        Command command = CommandParser.parse(line);
+        blackhole.consume(command);
+        blackhole.consume(CommandParser.argument(line, command));
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import server.FsyncPolicy;
+import server.RegistrationIndex;
+import server.RegistrationJournal;
+import server.RegistrationWal;
+import server.ServerConfig;
+import server.models.Course;
+import server.models.RegistrationForm;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compare le nombre d'inscriptions écrites par seconde entre l'ancien chemin (ouvrir le fichier,
+ * ajouter une ligne, fermer, sans garantie de durabilité), le journal texte à écriture groupée,
+ * qui attend que chaque ligne soit forcée sur le disque, et le journal binaire avec chaque politique
+ * de synchronisation (un appel à force() par enregistrement, par lot ou toutes les 10 ms).
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.JournalBenchmark -Dexec.args="[secondes]"
+ */
+public class JournalBenchmark {
+
+    /**
+     * Nombre de threads d'inscription simultanés testés
+     */
+    private static final int[] THREAD_COUNTS = {1, 8, 64, 256};
+
+    /**
+     * Une ligne typique de inscription.txt
+     */
+    private static final String LINE = "Automne\tIFT2255\t12345678\tMichalis\tFamelis\tmfamelis@iro.umontreal.ca\n";
+
+    /**
+     * Le même formulaire, pour le journal binaire
+     */
+    private static final List<RegistrationForm> FORM = List.of(new RegistrationForm("Michalis", "Famelis",
+            "mfamelis@iro.umontreal.ca", "12345678", new Course("Génie logiciel", "IFT2255", "Automne")));
+
+    /**
+     * Une façon d'enregistrer une ligne
+     */
+    private interface Appender {
+        void append(String line) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        System.out.printf("%-22s %8s %16s%n", "chemin", "threads", "inscriptions/s");
+        for (int threads : THREAD_COUNTS) {
+            Path file = Files.createTempFile("inscription", ".txt");
+            double throughput = measure(threads, seconds, line -> {
+                BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile(), true));
+                writer.write(line);
+                writer.close();
+            });
+            System.out.printf("%-22s %8d %16.0f%n", "ouvrir/ajouter/fermer", threads, throughput);
+            Files.delete(file);
+        }
+        for (int threads : THREAD_COUNTS) {
+            Path file = Files.createTempFile("inscription", ".txt");
+            try (RegistrationJournal journal = new RegistrationJournal(file)) {
+                double throughput = measure(threads, seconds, line -> journal.append(line).join());
+                System.out.printf("%-22s %8d %16.0f%n", "journal (durable)", threads, throughput);
+            }
+            Files.delete(file);
+        }
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            for (int threads : THREAD_COUNTS) {
+                Path dataDir = Files.createTempDirectory("journal");
+                ServerConfig config = new ServerConfig().setFsyncPolicy(policy).setFsyncIntervalMillis(10);
+                try (RegistrationWal wal = new RegistrationWal(dataDir.resolve("journal"), dataDir.resolve("inscription.txt"), config)) {
+                    wal.recover(new RegistrationIndex(RegistrationIndex.UNLIMITED));
+                    double throughput = measure(threads, seconds, line -> wal.append(FORM).join());
+                    System.out.printf("%-22s %8d %16.0f%n", "binaire " + policy.name().toLowerCase(), threads, throughput);
+                }
+                Catalogs.delete(dataDir);
+            }
+        }
+    }
+
+    /**
+     * Fait tourner des threads qui enregistrent des lignes pendant la durée donnée
+     *
+     * @return le nombre de lignes enregistrées par seconde
+     */
+    private static double measure(int threads, int seconds, Appender appender) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread.ofPlatform().daemon().start(() -> {
+                try {
+                    while (running.get()) {
+                        appender.append(LINE);
+                        completed.increment();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                done.countDown();
+            });
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long count = completed.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        done.await();
+        return count / elapsed;
+    }
+}
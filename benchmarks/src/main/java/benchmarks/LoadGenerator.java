@@ -0,0 +1,327 @@
+package benchmarks;
+
+import client.ServerBusyException;
+import client.ServerConnection;
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+import server.metrics.LatencyHistogram;
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+import server.protocol.WireFormat;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge du protocole client-serveur, pour dimensionner le serveur avant une période d'inscription.
+ * Chaque connexion est un {@link ServerConnection}, comme celle de ClientSimple, sur son propre thread; les requêtes
+ * sont un mélange de CHARGER et d'INSCRIRE.
+ * <p>
+ * Avec --rate, la charge est en boucle ouverte: la i-ème requête est prévue à début + i / débit, quelle que soit
+ * la vitesse du serveur, et la connexion libre suivante l'envoie. La latence est mesurée depuis le moment prévu
+ * et non depuis l'envoi: quand le serveur ralentit, les requêtes en retard comptent leur attente, au lieu de
+ * disparaître des centiles parce que le générateur a lui-même ralenti (omission coordonnée). Le temps de service,
+ * mesuré depuis l'envoi, est affiché à côté pour comparaison. Sans --rate, chaque connexion enchaîne ses requêtes
+ * (boucle fermée) et les deux mesures sont égales.
+ * <p>
+ * Options: --host=HÔTE, --port=N (localhost:1337 par défaut), --local (démarre un serveur dans le même processus),
+ * --connections=N (16), --rate=N (requêtes par seconde, 0 pour la boucle fermée), --duration=S (10), --warmup=S (2),
+ * --charger=P (proportion de CHARGER, 0.8), --session=NOM (Automne), --cold (chaque CHARGER ouvre une nouvelle
+ * connexion et reçoit toute la liste, comme un nouveau client), --format=binary|java_serialization
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.LoadGenerator -Dexec.args="--local --rate=2000 --connections=32"
+ */
+public class LoadGenerator {
+
+    /**
+     * Les centiles affichés
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+    private static final String[] QUANTILE_LABELS = {"p50", "p90", "p99", "p99.9", "p99.99"};
+
+    /**
+     * Les mesures d'un type de requête
+     */
+    private static final class Stats {
+
+        final String name;
+        /**
+         * Latence depuis le moment prévu de la requête
+         */
+        final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * Temps de service, depuis l'envoi de la requête
+         */
+        final LatencyHistogram service = new LatencyHistogram();
+        /**
+         * Requêtes refusées: inscription refusée (doublon, cours complet) ou serveur occupé
+         */
+        final LongAdder refused = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Stats(String name) {
+            this.name = name;
+        }
+    }
+
+    private String host = "localhost";
+    private int port = 1337;
+    private boolean local;
+    private int connections = 16;
+    private int rate;
+    private int duration = 10;
+    private int warmup = 2;
+    private double loadRatio = 0.8;
+    private String session = "Automne";
+    private boolean cold;
+    private WireFormat format = WireFormat.BINARY;
+
+    /**
+     * La console des résultats: avec --local, la sortie standard est réservée aux messages du serveur, qui sont ignorés
+     */
+    private final PrintStream out = System.out;
+    private final Stats loads = new Stats("CHARGER");
+    private final Stats registrations = new Stats("INSCRIRE");
+    /**
+     * Numéro de la prochaine requête prévue (boucle ouverte)
+     */
+    private final AtomicLong nextRequest = new AtomicLong();
+    /**
+     * Requêtes envoyées, mise en route comprise
+     */
+    private final LongAdder sentRequests = new LongAdder();
+    /**
+     * Prochain matricule, pour que chaque inscription soit nouvelle
+     */
+    private final AtomicInteger nextMatricule = new AtomicInteger();
+    /**
+     * Les cours de la session, dans lesquels les étudiants s'inscrivent
+     */
+    private List<Course> courses;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) {
+                generator.host = value;
+            } else if (arg.startsWith("--port=")) {
+                generator.port = Integer.parseInt(value);
+            } else if (arg.equals("--local")) {
+                generator.local = true;
+            } else if (arg.startsWith("--connections=")) {
+                generator.connections = Integer.parseInt(value);
+            } else if (arg.startsWith("--rate=")) {
+                generator.rate = Integer.parseInt(value);
+            } else if (arg.startsWith("--duration=")) {
+                generator.duration = Integer.parseInt(value);
+            } else if (arg.startsWith("--warmup=")) {
+                generator.warmup = Integer.parseInt(value);
+            } else if (arg.startsWith("--charger=")) {
+                generator.loadRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--session=")) {
+                generator.session = value;
+            } else if (arg.equals("--cold")) {
+                generator.cold = true;
+            } else if (arg.startsWith("--format=")) {
+                generator.format = WireFormat.valueOf(value.toUpperCase());
+            } else {
+                System.out.println("Option inconnue: " + arg);
+                return;
+            }
+        }
+        generator.run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        Server server = null;
+        Path dataDir = null;
+        if (local) {
+            dataDir = Catalogs.createDataDir(1000);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            server = new Server(0, new ServerConfig().setMode(ConnectionMode.VIRTUAL).setBacklog(4096).setDataDir(dataDir.toString()));
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+        try (ServerConnection connection = new ServerConnection(host, port, format)) {
+            courses = connection.loadCourses(session);
+        }
+        if (courses.isEmpty()) {
+            out.println("Aucun cours à la session " + session);
+            return;
+        }
+        // Des matricules qui ne se répètent pas d'une exécution à l'autre
+        nextMatricule.set(10_000_000 + ThreadLocalRandom.current().nextInt(80_000_000));
+
+        out.printf("%s:%d, %d connexions, %s, %.0f %% CHARGER%s, %d s (+%d s de mise en route)%n", host, port, connections,
+                rate > 0 ? "boucle ouverte à " + rate + " requêtes/s" : "boucle fermée", loadRatio * 100, cold ? " (nouvelle connexion)" : "",
+                duration, warmup);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            // Des threads de plateforme: ServerConnection est synchronisé
+            threads.add(Thread.ofPlatform().name("load-" + i).start(() -> work(start, measureFrom, end)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - measureFrom) / 1e9;
+        long interval = interval();
+        report(elapsed, interval > 0 ? (end - start + interval - 1) / interval : 0);
+
+        if (server != null) {
+            server.stop(1000);
+            Catalogs.delete(dataDir);
+        }
+    }
+
+    /**
+     * Boucle d'une connexion: prend la prochaine requête prévue, attend son moment, l'envoie et mesure sa latence
+     */
+    private void work(long start, long measureFrom, long end) {
+        long interval = interval();
+        ServerConnection connection = new ServerConnection(host, port, format);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long intended;
+            if (rate > 0) {
+                intended = start + nextRequest.getAndIncrement() * interval;
+                if (intended >= end) {
+                    break;
+                }
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (System.nanoTime() >= end) {
+                    // Le test est fini: les requêtes encore en retard ne sont plus envoyées
+                    break;
+                }
+            } else {
+                intended = System.nanoTime();
+                if (intended >= end) {
+                    break;
+                }
+            }
+            boolean load = random.nextDouble() < loadRatio;
+            Stats stats = load ? loads : registrations;
+            long sent = System.nanoTime();
+            sentRequests.increment();
+            boolean refused = false;
+            try {
+                if (load) {
+                    if (cold) {
+                        try (ServerConnection fresh = new ServerConnection(host, port, format)) {
+                            fresh.loadCourses(session);
+                        }
+                    } else {
+                        connection.loadCourses(session);
+                    }
+                } else {
+                    RegistrationResult result = connection.register(nextForm(random));
+                    refused = !result.isAccepted();
+                }
+            } catch (ServerBusyException e) {
+                if (System.nanoTime() >= measureFrom) {
+                    stats.busy.increment();
+                }
+                continue;
+            } catch (Exception e) {
+                if (System.nanoTime() >= measureFrom) {
+                    stats.errors.increment();
+                }
+                continue;
+            }
+            long done = System.nanoTime();
+            // Les requêtes terminées pendant la mesure comptent, même celles prévues pendant la mise en route
+            if (done >= measureFrom) {
+                stats.latency.record(done - intended);
+                stats.service.record(done - sent);
+                if (refused) {
+                    stats.refused.increment();
+                }
+            }
+        }
+        connection.close();
+    }
+
+    /**
+     * @return le temps entre deux requêtes prévues en boucle ouverte, en nanosecondes, 0 en boucle fermée
+     */
+    private long interval() {
+        return rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+    }
+
+    /**
+     * @return un formulaire pour un nouvel étudiant, dans un cours de la session pris au hasard
+     */
+    private RegistrationForm nextForm(ThreadLocalRandom random) {
+        Course course = courses.get(random.nextInt(courses.size()));
+        String matricule = String.valueOf(nextMatricule.getAndIncrement());
+        return new RegistrationForm("Prenom", "Nom", "etudiant" + matricule + "@umontreal.ca", matricule, course);
+    }
+
+    /**
+     * Affiche le débit et les centiles de chaque type de requête
+     *
+     * @param elapsed   la durée de la mesure, en secondes
+     * @param scheduled le nombre de requêtes prévues avant la fin du test, mise en route comprise (boucle ouverte)
+     */
+    private void report(double elapsed, long scheduled) {
+        long completed = loads.latency.getCount() + registrations.latency.getCount();
+        out.printf("%nDébit: %.0f requêtes/s", completed / elapsed);
+        if (rate > 0) {
+            out.printf(" (visé: %d/s)", rate);
+            if (completed / elapsed < rate * 0.95) {
+                out.print(" - le serveur ne suit pas le débit visé: la latence corrigée augmente avec la durée");
+            }
+            if (scheduled > sentRequests.sum()) {
+                out.printf("%n%d requêtes prévues n'étaient pas encore envoyées à la fin du test", scheduled - sentRequests.sum());
+            }
+        }
+        out.println();
+        StringBuilder header = new StringBuilder(String.format("%-9s %-8s %9s", "commande", "mesure", "requêtes"));
+        for (String label : QUANTILE_LABELS) {
+            header.append(String.format(" %9s", label));
+        }
+        header.append(String.format(" %9s %9s %9s %8s %8s", "max", "moyenne", "refusées", "occupé", "erreurs"));
+        out.println(header + "   (ms)");
+        for (Stats stats : List.of(loads, registrations)) {
+            if (stats.latency.getCount() == 0 && stats.busy.sum() == 0 && stats.errors.sum() == 0) {
+                continue;
+            }
+            printRow(stats, rate > 0 ? "corrigée" : "latence", stats.latency, true);
+            if (rate > 0) {
+                printRow(stats, "service", stats.service, false);
+            }
+        }
+    }
+
+    private void printRow(Stats stats, String label, LatencyHistogram histogram, boolean withCounts) {
+        StringBuilder row = new StringBuilder(String.format("%-9s %-8s %9d", withCounts ? stats.name : "", label, histogram.getCount()));
+        for (double quantile : QUANTILES) {
+            row.append(String.format(" %9.2f", histogram.getValueAtQuantile(quantile) / 1e6));
+        }
+        row.append(String.format(" %9.2f %9.2f", histogram.getMax() / 1e6, histogram.getMean() / 1e6));
+        if (withCounts) {
+            row.append(String.format(" %9d %8d %8d", stats.refused.sum(), stats.busy.sum(), stats.errors.sum()));
+        }
+        out.println(row);
+    }
+}
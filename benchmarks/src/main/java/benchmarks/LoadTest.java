@@ -0,0 +1,103 @@
+package benchmarks;
+
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Test de charge du serveur: pour chaque mode de connexion, démarre un serveur local puis mesure
+ * le nombre de requêtes CHARGER servies par seconde selon le nombre de clients simultanés, avec une connexion
+ * par requête puis, pour les modes concurrents, avec une connexion persistante par client.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.LoadTest -Dexec.args="[secondes] [dossier data]"
+ */
+public class LoadTest {
+
+    /**
+     * Nombre de clients simultanés testés pour chaque mode
+     */
+    private static final int[] CLIENT_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        System.setProperty(Server.DATA_DIR_PROPERTY, args.length > 1 ? args[1] : "../src/main/java/server/data");
+
+        // Le serveur écrit une ligne par connexion; on garde la console pour les résultats seulement
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        console.printf("%-8s %-11s %8s %12s%n", "mode", "connexion", "clients", "requêtes/s");
+        for (ConnectionMode mode : ConnectionMode.values()) {
+            Server server = new Server(0, new ServerConfig().setBacklog(1024).setMode(mode).setPoolSize(64));
+            Thread acceptor = new Thread(server::run, "server-" + mode);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            for (int clients : CLIENT_COUNTS) {
+                double throughput = measure(server.getPort(), clients, seconds, false);
+                console.printf("%-8s %-11s %8d %12.0f%n", mode, "par requête", clients, throughput);
+            }
+            // En mode SINGLE, une connexion persistante monopoliserait le serveur
+            if (mode != ConnectionMode.SINGLE) {
+                for (int clients : CLIENT_COUNTS) {
+                    double throughput = measure(server.getPort(), clients, seconds, true);
+                    console.printf("%-8s %-11s %8d %12.0f%n", mode, "persistante", clients, throughput);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Fait tourner des clients qui enchaînent les requêtes CHARGER pendant la durée donnée
+     *
+     * @param keepAlive vrai pour que chaque client garde une seule connexion ouverte
+     *
+     * @return le nombre de requêtes complétées par seconde
+     */
+    private static double measure(int port, int clients, int seconds, boolean keepAlive) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            threads.add(Thread.ofPlatform().daemon().start(() -> {
+                while (running.get()) {
+                    try (Socket socket = new Socket("localhost", port)) {
+                        socket.setTcpNoDelay(true);
+                        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+                        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+                        if (keepAlive) {
+                            out.writeObject(Server.KEEP_ALIVE_COMMAND);
+                        }
+                        do {
+                            out.writeObject(Server.LOAD_COMMAND + " Automne");
+                            in.readObject();
+                            completed.increment();
+                        } while (keepAlive && running.get());
+                    } catch (Exception e) {
+                        // connexion refusée ou interrompue: on réessaie
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long count = completed.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        done.await();
+        return count / elapsed;
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import client.ServerConnection;
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+import server.protocol.BinaryCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Générateur de charge du moteur NIO: ouvre un grand nombre de connexions persistantes inactives
+ * (comme des étudiants qui gardent le portail ouvert), puis mesure le débit de CHARGER de quelques
+ * clients actifs et le nombre de threads du serveur pendant que toutes ces connexions restent ouvertes.
+ * <p>
+ * Sans hôte, un serveur NIO est démarré dans le même processus; chaque connexion consomme alors
+ * deux descripteurs de fichiers (ulimit -n). Avec un hôte et un port, le serveur visé est externe.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.NioLoadTest -Dexec.args="[inactives] [actifs] [secondes] [hôte port]"
+ */
+public class NioLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int active = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        String host = "localhost";
+        int port;
+        if (args.length > 4) {
+            host = args[3];
+            port = Integer.parseInt(args[4]);
+        } else {
+            System.setProperty(Server.DATA_DIR_PROPERTY, "../src/main/java/server/data");
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Server server = new Server(0, new ServerConfig().setMode(ConnectionMode.NIO).setBacklog(4096).setIdleTimeoutMillis(0));
+            System.setOut(console);
+            Thread acceptor = new Thread(server::run, "nio-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            port = server.getPort();
+        }
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        // Connexions inactives: ouvertes en mode bloquant, sans aucun thread pour les garder
+        List<SocketChannel> idleChannels = new ArrayList<>(idle);
+        long start = System.nanoTime();
+        for (int i = 0; i < idle; i++) {
+            idleChannels.add(openIdle(host, port));
+        }
+        System.out.printf("%d connexions inactives ouvertes en %.1f s%n", idle, (System.nanoTime() - start) / 1e9);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(active);
+        for (int i = 0; i < active; i++) {
+            String h = host;
+            Thread.ofPlatform().daemon().start(() -> {
+                try (ServerConnection connection = new ServerConnection(h, port)) {
+                    while (running.get()) {
+                        connection.loadCourses("Automne");
+                        completed.increment();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                done.countDown();
+            });
+        }
+        start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long count = completed.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        int threadsDuring = ManagementFactory.getThreadMXBean().getThreadCount();
+        running.set(false);
+        done.await();
+
+        System.out.printf("%d clients actifs: %.0f requêtes/s%n", active, count / elapsed);
+        System.out.printf("threads de la JVM: %d avant les connexions, %d pendant la charge (dont %d clients actifs)%n",
+                threadsBefore, threadsDuring, active);
+        for (SocketChannel channel : idleChannels) {
+            channel.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Ouvre une connexion binaire persistante et attend que le serveur l'accepte
+     */
+    private static SocketChannel openIdle(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        ByteBuffer hello = ByteBuffer.allocate(64);
+        hello.put(BinaryCodec.MAGIC).put(BinaryCodec.frame(Server.KEEP_ALIVE_COMMAND)).flip();
+        while (hello.hasRemaining()) {
+            channel.write(hello);
+        }
+        ByteBuffer magic = ByteBuffer.allocate(BinaryCodec.MAGIC.length);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic) < 0) {
+                throw new IOException("Connexion refusée par le serveur");
+            }
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import server.RegistrationJournal;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure l'ajout d'une inscription à inscription.txt: l'ancien chemin (ouvrir, ajouter, fermer, sans durabilité)
+ * et le journal à écriture groupée qui attend que la ligne soit forcée sur le disque.
+ * Le nombre de threads se change avec -t.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar RegistrationAppendBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RegistrationAppendBenchmark {
+
+    private static final String LINE = "Automne\tIFT2255\t12345678\tMichalis\tFamelis\tmfamelis@iro.umontreal.ca\n";
+
+    private Path legacyFile;
+    private Path journalFile;
+    private RegistrationJournal journal;
+
+    @Setup
+    public void setup() throws IOException {
+        legacyFile = Files.createTempFile("inscription", ".txt");
+        journalFile = Files.createTempFile("inscription", ".txt");
+        journal = new RegistrationJournal(journalFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.delete(legacyFile);
+        Files.delete(journalFile);
+    }
+
+    @Benchmark
+    public void openAppendClose() throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(legacyFile.toFile(), true));
+        writer.write(LINE);
+        writer.close();
+    }
+
+    @Benchmark
+    public void journalAppend() {
+        journal.append(LINE).join();
+    }
+}
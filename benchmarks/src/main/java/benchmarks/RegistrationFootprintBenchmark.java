@@ -0,0 +1,142 @@
+package benchmarks;
+
+import server.RegistrationIndex;
+import server.StringTable;
+import server.models.Course;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Mesure la mémoire gardée par l'index des inscriptions et par les cours du catalogue, avant et après
+ * la représentation compacte: le tas occupé est mesuré après un ramasse-miettes complet, avant et après
+ * la construction de chaque structure, qui reste atteignable pendant la mesure.
+ * <p>
+ * "avant" reproduit l'ancienne disposition de l'index: un HashSet de chaînes par cours, une chaîne par inscription.
+ * "après" est {@link RegistrationIndex}, dont chaque cours garde ses matricules dans un tableau d'entiers.
+ * Les cours sont lus comme dans cours.txt, avec une chaîne par champ et par ligne, puis avec une table de chaînes.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.RegistrationFootprintBenchmark -Dexec.args="[inscriptions] [cours]"
+ */
+public class RegistrationFootprintBenchmark {
+
+    /**
+     * Nombre de cours entre lesquels les inscriptions sont réparties
+     */
+    private static final int INDEX_COURSES = 10_000;
+
+    /**
+     * L'ancienne clé de l'index
+     */
+    private record CourseKey(String session, String code) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int registrations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int courses = args.length > 1 ? Integer.parseInt(args[1]) : 300_000;
+        System.out.printf("%-44s %12s %14s%n", "structure", "Mo", "octets/élément");
+
+        report("inscriptions, HashSet<String> (avant)", registrations, () -> {
+            Map<CourseKey, Set<String>> index = new HashMap<>();
+            for (int i = 0; i < registrations; i++) {
+                int course = i % INDEX_COURSES;
+                index.computeIfAbsent(new CourseKey(session(course), Catalogs.code(course)), key -> new HashSet<>())
+                        .add(String.valueOf(10_000_000 + i));
+            }
+            return index;
+        });
+        report("inscriptions, RegistrationIndex (après)", registrations, () -> {
+            RegistrationIndex index = new RegistrationIndex(RegistrationIndex.UNLIMITED);
+            for (int i = 0; i < registrations; i++) {
+                int course = i % INDEX_COURSES;
+                index.reserve(session(course), Catalogs.code(course), String.valueOf(10_000_000 + i));
+            }
+            return index;
+        });
+        // Des matricules qui ne sont pas des nombres passent par la table de chaînes: chaque étudiant suit cinq cours
+        report("matricules alphanumériques, avant", registrations, () -> {
+            Map<CourseKey, Set<String>> index = new HashMap<>();
+            for (int i = 0; i < registrations; i++) {
+                int course = i % INDEX_COURSES;
+                index.computeIfAbsent(new CourseKey(session(course), Catalogs.code(course)), key -> new HashSet<>())
+                        .add("p" + (i / 5));
+            }
+            return index;
+        });
+        report("matricules alphanumériques, après", registrations, () -> {
+            RegistrationIndex index = new RegistrationIndex(RegistrationIndex.UNLIMITED);
+            for (int i = 0; i < registrations; i++) {
+                int course = i % INDEX_COURSES;
+                index.reserve(session(course), Catalogs.code(course), "p" + (i / 5));
+            }
+            return index;
+        });
+
+        report("cours, une chaîne par champ (avant)", courses, () -> {
+            List<Course> catalog = new ArrayList<>(courses);
+            for (int i = 0; i < courses; i++) {
+                String[] parts = line(i).split("\t");
+                catalog.add(new Course(parts[1].trim(), parts[0].trim(), parts[2].trim()));
+            }
+            return catalog;
+        });
+        report("cours, table de chaînes (après)", courses, () -> {
+            List<Course> catalog = new ArrayList<>(courses);
+            StringTable strings = new StringTable();
+            for (int i = 0; i < courses; i++) {
+                String[] parts = line(i).split("\t");
+                catalog.add(new Course(strings.canonical(parts[1].trim()), strings.canonical(parts[0].trim()), strings.canonical(parts[2].trim())));
+            }
+            return catalog;
+        });
+    }
+
+    /**
+     * Construit une structure et affiche la mémoire qu'elle garde
+     *
+     * @param label    le nom de la structure
+     * @param elements le nombre d'éléments de la structure
+     * @param builder  construit la structure
+     */
+    private static void report(String label, int elements, Supplier<Object> builder) throws InterruptedException {
+        long before = usedHeap();
+        Object structure = builder.get();
+        long retained = usedHeap() - before;
+        Reference.reachabilityFence(structure);
+        System.out.printf("%-44s %12.1f %14.1f%n", label, retained / 1e6, (double) retained / elements);
+    }
+
+    /**
+     * @return le tas occupé après quelques ramasse-miettes complets
+     */
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    /**
+     * Une ligne de cours.txt: un cours sur trois est aussi offert à la session suivante, avec le même code et le même nom
+     */
+    private static String line(int i) {
+        int course = i - i / 3;
+        return Catalogs.code(course) + "\tCours_synthetique_" + course + "\t" + Catalogs.SESSIONS[i % Catalogs.SESSIONS.length];
+    }
+
+    private static String session(int course) {
+        return Catalogs.SESSIONS[course % Catalogs.SESSIONS.length];
+    }
+}
@@ -0,0 +1,129 @@
+package benchmarks;
+
+import server.RegistrationIndex;
+import server.RegistrationLoader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesure le temps de reconstruction de l'index des inscriptions à partir de fichiers de plusieurs millions de lignes:
+ * lecture ligne par ligne avec BufferedReader, analyse parallèle du fichier projeté en mémoire, et redémarrage
+ * à partir d'un point de reprise avec 1000 lignes ajoutées depuis. Mesure ensuite le débit des vérifications
+ * de doublons et de capacité faites par plusieurs threads à la fois.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.RegistrationIndexBenchmark -Dexec.args="[lignes,lignes,...]"
+ */
+public class RegistrationIndexBenchmark {
+
+    /**
+     * Nombre de reconstructions mesurées pour chaque taille de fichier
+     */
+    private static final int REPETITIONS = 3;
+
+    /**
+     * Nombre de threads d'inscription simultanés testés
+     */
+    private static final int[] THREAD_COUNTS = {1, 8, 64};
+
+    public static void main(String[] args) throws Exception {
+        String sizes = args.length > 0 ? args[0] : "1000000,5000000";
+        System.out.printf("%-14s %12s %12s %10s %14s%n", "chargement", "lignes", "Mo", "ms", "lignes/s");
+        RegistrationIndex index = null;
+        for (String size : sizes.split(",")) {
+            int lines = Integer.parseInt(size.trim());
+            Path file = Files.createTempFile("inscription", ".txt");
+            Path checkpoint = file.resolveSibling(file.getFileName() + ".index");
+            Catalogs.writeRegistrations(file, lines);
+            long megabytes = Files.size(file) / (1024 * 1024);
+            for (int i = 0; i < REPETITIONS; i++) {
+                index = null;
+                long start = System.nanoTime();
+                index = loadWithReader(file);
+                report("BufferedReader", lines, megabytes, System.nanoTime() - start);
+            }
+            for (int i = 0; i < REPETITIONS; i++) {
+                index = null;
+                long start = System.nanoTime();
+                index = RegistrationIndex.load(file, RegistrationIndex.UNLIMITED);
+                report("projection", lines, megabytes, System.nanoTime() - start);
+            }
+            RegistrationLoader loader = new RegistrationLoader(file, checkpoint);
+            index = loader.load(RegistrationIndex.UNLIMITED);
+            loader.writeCheckpoint(index, loader.getLoadedOffset());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                for (int i = 0; i < 1000; i++) {
+                    writer.write("Automne\tIFT1000\t" + (90_000_000 + i) + "\tPrenom\tNom\tetudiant@umontreal.ca\n");
+                }
+            }
+            for (int i = 0; i < REPETITIONS; i++) {
+                index = null;
+                long start = System.nanoTime();
+                index = new RegistrationLoader(file, checkpoint).load(RegistrationIndex.UNLIMITED);
+                report("reprise", lines, megabytes, System.nanoTime() - start);
+            }
+            Files.delete(file);
+            Files.delete(checkpoint);
+        }
+        System.out.printf("%n%8s %20s%n", "threads", "vérifications/s");
+        for (int threads : THREAD_COUNTS) {
+            System.out.printf("%8d %20.0f%n", threads, measureReserve(index, threads, 2));
+        }
+    }
+
+    /**
+     * L'approche d'origine: lire le fichier ligne par ligne et découper chaque ligne avec split
+     */
+    private static RegistrationIndex loadWithReader(Path file) throws IOException {
+        RegistrationIndex index = new RegistrationIndex(RegistrationIndex.UNLIMITED);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length >= 3) {
+                    index.reserve(parts[0].trim(), parts[1].trim(), parts[2].trim());
+                }
+            }
+        }
+        return index;
+    }
+
+    private static void report(String loader, int lines, long megabytes, long nanos) {
+        System.out.printf("%-14s %12d %12d %10d %14.0f%n", loader, lines, megabytes, nanos / 1_000_000, lines / (nanos / 1e9));
+    }
+
+    /**
+     * Fait tourner des threads qui demandent des places (surtout des doublons, comme des clients qui réessaient)
+     *
+     * @return le nombre de demandes par seconde
+     */
+    private static double measureReserve(RegistrationIndex index, int threads, int seconds) throws InterruptedException {
+        LongAdder completed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread.ofPlatform().daemon().start(() -> {
+                long count = 0;
+                for (int i = offset; System.nanoTime() < deadline; i += threads) {
+                    int course = i % 10_000;
+                    index.reserve(Catalogs.SESSIONS[course % Catalogs.SESSIONS.length], Catalogs.code(course),
+                            String.valueOf(10_000_000 + (i % 1_000_000)));
+                    count++;
+                }
+                completed.add(count);
+                done.countDown();
+            });
+        }
+        done.await();
+        return completed.sum() / (double) seconds;
+    }
+
+}
@@ -0,0 +1,28 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lance toutes les suites JMH (ou celles qui correspondent au filtre) et enregistre les résultats en JSON,
+ * pour pouvoir comparer deux versions du serveur.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar benchmarks.RunAll [fichier.json] [filtre]
+ */
+public class RunAll {
+
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : "jmh-result.json";
+        String filter = args.length > 1 ? args[1] : "benchmarks\\..*Benchmark";
+        Options options = new OptionsBuilder()
+                .include(filter)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+        System.out.println("Résultats enregistrés dans " + resultFile);
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.CourseCatalog;
+import server.Server;
+import server.models.Course;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure CHERCHER sur un catalogue synthétique de 1M cours: l'index de recherche contre un parcours de toutes
+ * les sessions qui compare chaque code et chaque nom, pour un préfixe de code, un code exact, un mot du nom
+ * présent dans tous les cours et une requête de deux mots.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar SearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SearchBenchmark {
+
+    @Param({"1000000"})
+    public int courses;
+
+    @Param({"IFT1", "IFT123456", "synthetique", "cours 99999"})
+    public String query;
+
+    private Path dataDir;
+    private CourseCatalog catalog;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Catalogs.createDataDir(courses);
+        catalog = new CourseCatalog(dataDir.resolve("cours.txt"), 0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        catalog.close();
+        Catalogs.delete(dataDir);
+    }
+
+    /**
+     * La recherche avec l'index construit au chargement du catalogue
+     */
+    @Benchmark
+    public ArrayList<Course> index() {
+        return catalog.search(query, Server.SEARCH_RESULTS);
+    }
+
+    /**
+     * Sans index: chaque cours de chaque session est comparé à la requête, en minuscules
+     */
+    @Benchmark
+    public List<Course> scan() {
+        String[] words = query.toLowerCase(Locale.ROOT).split(" ");
+        List<Course> results = new ArrayList<>();
+        for (String session : Catalogs.SESSIONS) {
+            for (Course course : catalog.getCourses(session)) {
+                String text = (course.getCode() + " " + course.getName()).toLowerCase(Locale.ROOT);
+                boolean matches = true;
+                for (String word : words) {
+                    matches &= text.contains(word);
+                }
+                if (matches && results.size() < Server.SEARCH_RESULTS) {
+                    results.add(course);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * La construction de l'index, faite à chaque chargement du catalogue (avec la lecture du fichier)
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CourseCatalog loadCatalog() {
+        CourseCatalog loaded = new CourseCatalog(dataDir.resolve("cours.txt"), 0);
+        loaded.close();
+        return loaded;
+    }
+}
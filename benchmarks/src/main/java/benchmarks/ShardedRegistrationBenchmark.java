@@ -0,0 +1,139 @@
+package benchmarks;
+
+import client.ServerConnection;
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+import server.ShardRouter;
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesure les inscriptions par seconde d'un déploiement réparti selon le nombre de fragments: des clients concurrents
+ * envoient INSCRIRE au routeur, qui relaie chaque inscription au fragment qui possède son cours. Chaque fragment
+ * est un serveur complet, avec son propre dossier de données et son propre journal durable.
+ * <p>
+ * Tous les fragments tournent ici dans la même JVM, sur la même machine: le gain n'est proche du nombre de fragments
+ * que tant que la machine a des coeurs et un disque pour chacun. Sur plusieurs machines, lancer un ServerLauncher
+ * par fragment et un RouterLauncher, puis diriger LoadTest vers le routeur.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.ShardedRegistrationBenchmark -Dexec.args="[secondes] [clients] [fragments max]"
+ */
+public class ShardedRegistrationBenchmark {
+
+    /**
+     * Nombre de cours du catalogue synthétique, répartis entre les fragments
+     */
+    private static final int COURSES = 1000;
+
+    /**
+     * Prochain matricule, pour que chaque inscription soit nouvelle
+     */
+    private static final AtomicInteger nextMatricule = new AtomicInteger(10_000_000);
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int maxShards = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        List<String> rows = new ArrayList<>();
+        rows.add(String.format("%-10s %16s %8s %s", "fragments", "inscriptions/s", "gain", "cours par fragment"));
+        double baseline = 0;
+        for (int shardCount = 1; shardCount <= maxShards; shardCount *= 2) {
+            List<Path> dataDirs = new ArrayList<>();
+            List<Server> servers = new ArrayList<>();
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                Path dataDir = Catalogs.createDataDir(COURSES);
+                Server server = new Server(0, new ServerConfig().setMode(ConnectionMode.VIRTUAL).setDataDir(dataDir.toString()));
+                server.start();
+                dataDirs.add(dataDir);
+                servers.add(server);
+                addresses.add(new InetSocketAddress("localhost", server.getPort()));
+            }
+            ShardRouter router = new ShardRouter(0, addresses, new ServerConfig());
+            Thread acceptor = new Thread(router::run, "router-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            int[] coursesPerShard = new int[shardCount];
+            for (int course = 0; course < COURSES; course++) {
+                coursesPerShard[router.getShardIndex(Catalogs.SESSIONS[course % Catalogs.SESSIONS.length], Catalogs.code(course))]++;
+            }
+
+            double rate = run(router.getPort(), clients, seconds);
+            if (shardCount == 1) {
+                baseline = rate;
+            }
+            rows.add(String.format("%-10d %16.0f %7.2fx %s", shardCount, rate, rate / baseline, Arrays.toString(coursesPerShard)));
+
+            router.stop(1000);
+            for (Server server : servers) {
+                server.stop(1000);
+            }
+            for (Path dataDir : dataDirs) {
+                Catalogs.delete(dataDir);
+            }
+        }
+        System.setOut(console);
+        rows.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    /**
+     * Inscrit des étudiants par le routeur pendant la durée donnée, avec des clients concurrents.
+     * Les clients utilisent des threads de plateforme: ServerConnection est synchronisé.
+     *
+     * @return le nombre d'inscriptions acceptées par seconde
+     */
+    private static double run(int port, int clients, int seconds) throws InterruptedException {
+        LongAdder registered = new LongAdder();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                try (ServerConnection connection = new ServerConnection("localhost", port)) {
+                    while (System.nanoTime() < deadline) {
+                        RegistrationResult result = connection.register(nextForm());
+                        if (!result.isAccepted()) {
+                            throw new IllegalStateException(result.getMessage());
+                        }
+                        registered.increment();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return registered.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * @return un formulaire pour un nouvel étudiant, dans un cours offert du catalogue synthétique
+     */
+    private static RegistrationForm nextForm() {
+        int matricule = nextMatricule.getAndIncrement();
+        int course = matricule % COURSES;
+        Course c = new Course("Cours_synthetique_" + course, Catalogs.code(course), Catalogs.SESSIONS[course % Catalogs.SESSIONS.length]);
+        return new RegistrationForm("Prenom", "Nom", "etudiant@umontreal.ca", String.valueOf(matricule), c);
+    }
+}
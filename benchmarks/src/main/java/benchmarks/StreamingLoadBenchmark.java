@@ -0,0 +1,101 @@
+package benchmarks;
+
+import client.ServerConnection;
+import server.ConnectionMode;
+import server.Server;
+import server.ServerConfig;
+import server.protocol.WireFormat;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare, pour une grande session, CHARGER en un seul message et CHARGER ... FLUX en pages successives:
+ * le temps avant le premier cours reçu, le temps total et les octets alloués par le thread du client.
+ * Chaque chargement utilise une nouvelle connexion, donc sans le cache de versions du client.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.StreamingLoadBenchmark -Dexec.args="[cours] [taille de page]"
+ */
+public class StreamingLoadBenchmark {
+
+    /**
+     * Nombre de chargements ignorés avant de mesurer
+     */
+    private static final int WARMUP = 3;
+
+    /**
+     * Nombre de chargements mesurés
+     */
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int courses = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Path dataDir = Catalogs.createDataDir(courses);
+        System.setProperty(Server.DATA_DIR_PROPERTY, dataDir.toString());
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Server server = new Server(0, new ServerConfig().setMode(ConnectionMode.VIRTUAL));
+        Thread acceptor = new Thread(server::run, "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        List<String> rows = new ArrayList<>();
+        rows.add(String.format("%-20s %-18s %12s %12s %14s", "format", "réponse", "1er cours ms", "total ms", "alloué Mo"));
+        for (WireFormat format : WireFormat.values()) {
+            rows.add(measure(format, "complète", server.getPort(), connection -> {
+                connection.loadCourses("Automne");
+                return System.nanoTime();
+            }));
+            rows.add(measure(format, "FLUX " + pageSize, server.getPort(), connection -> {
+                long[] first = {0};
+                connection.streamCourses("Automne", pageSize, page -> {
+                    if (first[0] == 0) {
+                        first[0] = System.nanoTime();
+                    }
+                });
+                return first[0];
+            }));
+        }
+        System.setOut(console);
+        rows.forEach(System.out::println);
+        Catalogs.delete(dataDir);
+        System.exit(0);
+    }
+
+    /**
+     * Un chargement des cours par une nouvelle connexion
+     */
+    @FunctionalInterface
+    private interface Load {
+        /**
+         * @return l'heure, selon System.nanoTime(), à laquelle le premier cours était disponible
+         */
+        long run(ServerConnection connection) throws Exception;
+    }
+
+    private static String measure(WireFormat format, String label, int port, Load load) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double first = 0;
+        double total = 0;
+        double allocated = 0;
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            try (ServerConnection connection = new ServerConnection("localhost", port, format)) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                long firstCourse = load.run(connection);
+                long end = System.nanoTime();
+                if (i >= WARMUP) {
+                    first += (firstCourse - start) / 1e6;
+                    total += (end - start) / 1e6;
+                    allocated += (threads.getCurrentThreadAllocatedBytes() - bytes) / 1e6;
+                }
+            }
+        }
+        return String.format("%-20s %-18s %12.1f %12.1f %14.1f", format, label, first / RUNS, total / RUNS, allocated / RUNS);
+    }
+}
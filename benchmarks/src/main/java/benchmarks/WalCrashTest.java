@@ -0,0 +1,274 @@
+package benchmarks;
+
+import server.FsyncPolicy;
+import server.RegistrationIndex;
+import server.RegistrationLoader;
+import server.RegistrationWal;
+import server.Server;
+import server.ServerConfig;
+import server.models.Course;
+import server.models.RegistrationForm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Vérifie qu'aucune inscription confirmée par le journal binaire n'est perdue quand le processus qui écrit est tué.
+ * À chaque tour, un processus enfant ouvre le journal du même dossier (ce qui relit et compacte l'état laissé par le
+ * tour précédent), puis des threads ajoutent des inscriptions et affichent chaque matricule confirmé. Le processus
+ * est tué (SIGKILL) à un moment aléatoire, le plus souvent au milieu d'une écriture, d'une synchronisation ou d'une
+ * compaction. Un tour sur deux, un enregistrement incomplet est aussi ajouté au dernier segment, comme si le
+ * processus avait été tué au milieu de l'écriture d'un enregistrement. Un tour sur trois, la première compaction
+ * après un redémarrage normal est aussi « interrompue » au pire moment: les lignes des segments ont été ajoutées à
+ * inscription.txt et forcées, mais le fichier de compaction n'a pas encore été écrit. Le journal est ensuite relu: chaque matricule
+ * confirmé doit être dans l'index, et inscription.txt ne doit contenir aucune ligne en double.
+ * Les politiques de synchronisation sont utilisées à tour de rôle.
+ * <p>
+ * Usage: mvn -q exec:java -Dexec.mainClass=benchmarks.WalCrashTest -Dexec.args="[tours]"
+ */
+public class WalCrashTest {
+
+    /**
+     * Nombre de cours entre lesquels les inscriptions sont réparties
+     */
+    private static final int COURSES = 100;
+    /**
+     * Nombre de matricules réservés à chaque tour
+     */
+    private static final int MATRICULES_PER_ROUND = 10_000_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("writer")) {
+            write(Paths.get(args[1]), FsyncPolicy.valueOf(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        Path dataDir = Files.createTempDirectory("wal-crash");
+        Files.createFile(dataDir.resolve("inscription.txt"));
+        Set<Integer> acknowledged = ConcurrentHashMap.newKeySet();
+        Random random = new Random();
+        long lost = 0;
+        System.out.printf("%-5s %-13s %10s %10s %10s %9s %11s %7s%n", "tour", "politique", "confirmées", "relues", "index", "incomplet", "compaction", "perdues");
+        for (int round = 0; round < rounds; round++) {
+            FsyncPolicy policy = FsyncPolicy.values()[round % FsyncPolicy.values().length];
+            int before = acknowledged.size();
+            runAndKill(dataDir, policy, round, acknowledged, random);
+            boolean torn = round % 2 == 1 && appendTornRecord(dataDir.resolve(Server.WAL_DIRECTORY), random);
+            boolean interrupted = round % 3 == 2;
+            if (interrupted) {
+                interruptCompaction(dataDir, policy, (round + 1) * MATRICULES_PER_ROUND - 100, acknowledged);
+            }
+
+            // Relecture, comme au démarrage du serveur
+            RegistrationWal wal = new RegistrationWal(dataDir.resolve(Server.WAL_DIRECTORY), dataDir.resolve("inscription.txt"), config(policy));
+            RegistrationIndex index = new RegistrationLoader(dataDir.resolve("inscription.txt"), null).load(RegistrationIndex.UNLIMITED);
+            long replayed = wal.recover(index);
+            long missing = acknowledged.stream().filter(matricule -> !index.isRegistered(session(matricule), code(matricule), String.valueOf(matricule))).count();
+            wal.close();
+            long lines;
+            try (Stream<String> file = Files.lines(dataDir.resolve("inscription.txt"))) {
+                lines = file.count();
+            }
+            if (lines != index.size()) {
+                System.out.println("inscription.txt contient " + lines + " lignes pour " + index.size() + " inscriptions");
+                missing++;
+            }
+            lost += missing;
+            System.out.printf("%-5d %-13s %10d %10d %10d %9s %11s %7d%n", round, policy, acknowledged.size() - before, replayed, index.size(),
+                    torn ? "oui" : "non", interrupted ? "interrompue" : "-", missing);
+        }
+        Catalogs.delete(dataDir);
+        System.out.println(lost == 0 ? "Aucune inscription confirmée perdue" : lost + " inscriptions confirmées perdues");
+        System.exit(lost == 0 ? 0 : 1);
+    }
+
+    /**
+     * Lance un processus qui écrit dans le journal, lit les matricules qu'il confirme, puis le tue à un moment aléatoire
+     */
+    private static void runAndKill(Path dataDir, FsyncPolicy policy, int round, Set<Integer> acknowledged, Random random) throws Exception {
+        String classPath = location(WalCrashTest.class) + File.pathSeparator + location(RegistrationWal.class);
+        Process writer = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath, WalCrashTest.class.getName(), "writer", dataDir.toString(), policy.name(),
+                String.valueOf(round * MATRICULES_PER_ROUND))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int[] read = {0};
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(writer.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("OK ")) {
+                        for (String matricule : line.substring(3).split(" ")) {
+                            acknowledged.add(Integer.parseInt(matricule));
+                        }
+                        synchronized (read) {
+                            read[0]++;
+                            read.notifyAll();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // le processus a été tué
+            }
+        });
+        reader.start();
+        // Attendre les premières confirmations: le démarrage de la JVM et la relecture ne comptent pas
+        synchronized (read) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (read[0] == 0 && writer.isAlive() && System.nanoTime() < deadline) {
+                read.wait(100);
+            }
+        }
+        Thread.sleep(100 + random.nextInt(900));
+        writer.destroyForcibly();
+        writer.waitFor();
+        reader.join();
+    }
+
+    /**
+     * Ajoute au dernier segment le début d'un enregistrement: un en-tête complet suivi d'une partie du contenu
+     *
+     * @return vrai si un segment a été trouvé
+     */
+    private static boolean appendTornRecord(Path directory, Random random) throws IOException {
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.filter(file -> file.getFileName().toString().endsWith(".wal")).max(Path::compareTo).orElse(null);
+        }
+        if (last == null) {
+            return false;
+        }
+        byte[] partial = new byte[1 + random.nextInt(40)];
+        random.nextBytes(partial);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(8 + partial.length).putInt(64).putInt(random.nextInt()).put(partial).flip());
+        }
+        return true;
+    }
+
+    /**
+     * Laisse le dossier dans l'état d'une première compaction après un redémarrage normal, arrêtée juste avant
+     * l'écriture du fichier de compaction: le journal est ouvert et fermé normalement, puis rouvert; des inscriptions
+     * y sont ajoutées et une copie du dossier du journal est prise avant la compaction de la fermeture. La copie est
+     * ensuite remise en place, alors que inscription.txt garde les lignes ajoutées par la compaction.
+     */
+    private static void interruptCompaction(Path dataDir, FsyncPolicy policy, int firstMatricule, Set<Integer> acknowledged) throws IOException {
+        Path journal = dataDir.resolve(Server.WAL_DIRECTORY);
+        Path registrations = dataDir.resolve("inscription.txt");
+        RegistrationWal wal = new RegistrationWal(journal, registrations, config(policy));
+        wal.recover(new RegistrationLoader(registrations, null).load(RegistrationIndex.UNLIMITED));
+        wal.close();
+
+        wal = new RegistrationWal(journal, registrations, config(policy));
+        wal.recover(new RegistrationLoader(registrations, null).load(RegistrationIndex.UNLIMITED));
+        List<RegistrationForm> forms = new ArrayList<>();
+        for (int matricule = firstMatricule; matricule < firstMatricule + 100; matricule++) {
+            forms.add(form(matricule));
+        }
+        wal.append(forms).join();
+        for (int matricule = firstMatricule; matricule < firstMatricule + 100; matricule++) {
+            acknowledged.add(matricule);
+        }
+        Path saved = Files.createTempDirectory("wal-crash-journal");
+        copyFiles(journal, saved);
+        wal.close();
+        try (Stream<Path> files = Files.list(journal)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        copyFiles(saved, journal);
+        Catalogs.delete(saved);
+    }
+
+    private static void copyFiles(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    /**
+     * Le processus enfant: ouvre le journal puis ajoute des inscriptions jusqu'à ce qu'il soit tué, en affichant
+     * "OK" suivi des matricules de chaque ajout une fois qu'il est durable
+     */
+    private static void write(Path dataDir, FsyncPolicy policy, int firstMatricule) throws Exception {
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        System.setOut(new PrintStream(System.err, true, StandardCharsets.UTF_8));
+        RegistrationWal wal = new RegistrationWal(dataDir.resolve(Server.WAL_DIRECTORY), dataDir.resolve("inscription.txt"), config(policy));
+        RegistrationIndex index = new RegistrationLoader(dataDir.resolve("inscription.txt"), null).load(RegistrationIndex.UNLIMITED);
+        wal.recover(index);
+        int[] next = {firstMatricule};
+        for (int t = 0; t < 8; t++) {
+            new Thread(() -> {
+                for (int i = 0; ; i++) {
+                    // Une inscription sur quatre est un lot de trois formulaires
+                    int count = i % 4 == 0 ? 3 : 1;
+                    int first;
+                    synchronized (next) {
+                        first = next[0];
+                        next[0] += count;
+                    }
+                    List<RegistrationForm> forms = new ArrayList<>(count);
+                    StringBuilder line = new StringBuilder("OK");
+                    for (int matricule = first; matricule < first + count; matricule++) {
+                        forms.add(form(matricule));
+                        line.append(' ').append(matricule);
+                    }
+                    wal.append(forms).join();
+                    synchronized (out) {
+                        out.println(line);
+                        out.flush();
+                    }
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Une configuration à petits segments et compaction fréquente, pour que le processus soit aussi tué pendant
+     * un changement de segment ou une compaction
+     */
+    private static ServerConfig config(FsyncPolicy policy) {
+        return new ServerConfig().setFsyncPolicy(policy).setFsyncIntervalMillis(5)
+                .setWalSegmentSize(64 * 1024).setCompactionIntervalMillis(50);
+    }
+
+    private static RegistrationForm form(int matricule) {
+        return new RegistrationForm("Prenom" + matricule, "Nom", "etudiant@umontreal.ca", String.valueOf(matricule),
+                new Course("Cours_synthetique", code(matricule), session(matricule)));
+    }
+
+    private static String code(int matricule) {
+        return Catalogs.code(matricule % COURSES);
+    }
+
+    private static String session(int matricule) {
+        return Catalogs.SESSIONS[matricule % COURSES % Catalogs.SESSIONS.length];
+    }
+
+    /**
+     * @return le dossier ou l'archive d'où la classe a été chargée, pour le chemin des classes du processus enfant
+     */
+    private static String location(Class<?> type) throws Exception {
+        return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+}
@@ -0,0 +1,213 @@
+package client;
+
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * La classe AsyncServerConnection exécute les commandes d'un {@link ServerConnection} sur un thread virtuel et rend
+ * un {@link CompletableFuture} au lieu de bloquer l'appelant, par exemple le thread d'une interface graphique.
+ * <p>
+ * Une seule connexion est partagée: les commandes sont exécutées une à la fois, dans l'ordre où elles ont été
+ * demandées. Annuler le résultat d'une commande la retire de la file si elle n'a pas encore commencé, ou
+ * l'interrompt en fermant la connexion ({@link ServerConnection#abort()}) si elle est en cours; la commande suivante
+ * ouvre une nouvelle connexion. Les commandes à une seule réponse échouent avec {@link TimeoutException} si elles ne
+ * sont pas terminées dans le délai, attente dans la file comprise; pour un flux de pages, le délai s'applique à
+ * l'attente de chaque page.
+ * <p>
+ * Les résultats sont complétés sur le thread réseau: c'est à l'appelant de les ramener sur son propre thread,
+ * par exemple avec {@code whenCompleteAsync(action, Platform::runLater)}.
+ */
+public class AsyncServerConnection implements AutoCloseable {
+
+    /**
+     * Délai par défaut d'une commande, en millisecondes
+     */
+    public final static int DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Une commande à exécuter sur la connexion
+     *
+     * @param <T> le type de la réponse
+     */
+    @FunctionalInterface
+    private interface Command<T> {
+        T run(ServerConnection connection) throws Exception;
+    }
+
+    /**
+     * La connexion partagée
+     */
+    private final ServerConnection connection;
+    /**
+     * Délai d'une commande, en millisecondes
+     */
+    private final int timeoutMillis;
+    /**
+     * Le thread réseau: un seul thread virtuel, qui exécute les commandes dans l'ordre
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("client-reseau").factory());
+    /**
+     * Les commandes demandées et pas encore terminées, annulées à la fermeture
+     */
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+    /**
+     * Le résultat de la commande en cours sur la connexion, null entre deux commandes
+     */
+    private CompletableFuture<?> current;
+
+    /**
+     * Crée une connexion avec le délai par défaut
+     *
+     * @param address l'adresse du serveur
+     * @param port    le port du serveur
+     */
+    public AsyncServerConnection(String address, int port) {
+        this(new ServerConnection(address, port), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param connection    la connexion à utiliser, qui ne doit plus servir ailleurs
+     * @param timeoutMillis le délai d'une commande en millisecondes, 0 pour attendre indéfiniment
+     */
+    public AsyncServerConnection(ServerConnection connection, int timeoutMillis) {
+        this.connection = connection;
+        this.timeoutMillis = timeoutMillis;
+        connection.setTimeout(timeoutMillis);
+    }
+
+    /**
+     * Demande les cours d'une session en pages successives, voir {@link ServerConnection#streamCourses}
+     *
+     * @param session  la session
+     * @param pageSize le nombre de cours par page
+     * @param onPage   reçoit les cours de chaque page, sur le thread réseau
+     * @return complété quand la dernière page a été reçue
+     */
+    public CompletableFuture<Void> streamCourses(String session, int pageSize, Consumer<List<Course>> onPage) {
+        return submit(connection -> {
+            connection.streamCourses(session, pageSize, onPage);
+            return null;
+        }, false);
+    }
+
+    /**
+     * Demande les cours d'une session, voir {@link ServerConnection#loadCourses}
+     *
+     * @param session la session
+     * @return la liste des cours de la session
+     */
+    public CompletableFuture<ArrayList<Course>> loadCourses(String session) {
+        return submit(connection -> connection.loadCourses(session), true);
+    }
+
+    /**
+     * Cherche des cours, voir {@link ServerConnection#search}
+     *
+     * @param query les mots cherchés
+     * @return les cours trouvés
+     */
+    public CompletableFuture<ArrayList<Course>> search(String query) {
+        return submit(connection -> connection.search(query), true);
+    }
+
+    /**
+     * Envoie une demande d'inscription, voir {@link ServerConnection#register}.
+     * Une inscription interrompue après son envoi (annulation ou délai) a peut-être été enregistrée par le serveur.
+     *
+     * @param form le formulaire d'inscription
+     * @return le résultat de l'inscription
+     */
+    public CompletableFuture<RegistrationResult> register(RegistrationForm form) {
+        return submit(connection -> connection.register(form), true);
+    }
+
+    /**
+     * Place une commande dans la file du thread réseau
+     *
+     * @param command la commande
+     * @param timed   vrai si le délai s'applique à la commande entière
+     * @return le résultat de la commande
+     */
+    private <T> CompletableFuture<T> submit(Command<T> command, boolean timed) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pending.add(result);
+        result.whenComplete((reply, error) -> {
+            pending.remove(result);
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                abort(result);
+            }
+        });
+        if (timed && timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+            executor.execute(() -> run(command, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new IllegalStateException("Connexion fermée"));
+        }
+        return result;
+    }
+
+    /**
+     * Exécute une commande sur le thread réseau, sauf si son résultat a déjà été annulé ou a expiré dans la file
+     */
+    private <T> void run(Command<T> command, CompletableFuture<T> result) {
+        synchronized (this) {
+            if (result.isDone()) {
+                return;
+            }
+            current = result;
+        }
+        try {
+            result.complete(command.run(connection));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Interrompt la commande si elle est en cours sur la connexion
+     *
+     * @param result le résultat annulé ou expiré de la commande
+     */
+    private synchronized void abort(CompletableFuture<?> result) {
+        if (current == result) {
+            connection.abort();
+        }
+    }
+
+    /**
+     * Annule les commandes en attente ou en cours, puis ferme la connexion
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (CompletableFuture<?> result : pending) {
+            result.cancel(false);
+        }
+        try {
+            executor.awaitTermination(timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connection.close();
+    }
+}
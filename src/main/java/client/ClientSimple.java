@@ -3,15 +3,11 @@ package client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 
-import javafx.util.Pair;
 import server.models.Course;
 import server.models.RegistrationForm;
+import server.models.RegistrationResult;
 
 public class ClientSimple {
 
@@ -20,19 +16,12 @@ public class ClientSimple {
     public final static String REGISTER_COMMAND = "INSCRIRE";
     public final static String LOAD_COMMAND = "CHARGER";
 
-    public static Pair<ObjectInputStream, ObjectOutputStream> connect() throws IOException {
-        Socket socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-
-        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-        return new Pair<>(in, out);
-    }
-
     public static void main(String[] args) {
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
         System.out.println("*** Bienvenue au portail d'inscription de cours de l'UDEM ***");
-        try {
+        // Une seule connexion est gardée ouverte pour toutes les commandes
+        try (ServerConnection connection = new ServerConnection(SERVER_ADDRESS, SERVER_PORT)) {
             while (true) {
                 // Fonctionnalité F1
                 System.out.println("Veuillez choisir la session pour laquelle vous voulez consulter la liste des cours:");
@@ -57,9 +46,7 @@ public class ClientSimple {
                 }
                 if (session.equals("")) continue;
                 System.out.println("Les cours offerts pendant la session d'" + session + " sont:");
-                Pair<ObjectInputStream, ObjectOutputStream> connection = connect();
-                connection.getValue().writeObject(LOAD_COMMAND + " " + session);
-                ArrayList<Course> courses = (ArrayList<Course>) connection.getKey().readObject();
+                ArrayList<Course> courses = connection.loadCourses(session);
                 for (Course course : courses) {
                     System.out.printf("* %s\t%s\n", course.getCode(), course.getName());
                 }
@@ -67,10 +54,16 @@ public class ClientSimple {
                     System.out.println("Que voulez-vous faire? ");
                     System.out.println("1. Consulter les cours offerts pour une autre session");
                     System.out.println("2. Inscription à un cours");
+                    System.out.println("3. Chercher un cours par son code ou son nom");
                     System.out.print("> Choix: ");
                     option = reader.readLine();
-                    if (!option.equals("1") && !option.equals("2")) {
-                        System.out.println("Choix n'est pas 1 ou 2");
+                    if (option.equals("3")) {
+                        System.out.print("Veuillez saisir le début du code ou du nom: ");
+                        for (Course course : connection.search(reader.readLine())) {
+                            System.out.printf("* %s\t%s\t%s\n", course.getCode(), course.getName(), course.getSession());
+                        }
+                    } else if (!option.equals("1") && !option.equals("2")) {
+                        System.out.println("Choix n'est pas 1, 2 ou 3");
                     } else {
                         break;
                     }
@@ -90,25 +83,14 @@ public class ClientSimple {
                     System.out.print("Veuillez saisir la session: ");
                     session = reader.readLine();
 
-                    // Valide le cours et la session
-                    connection = connect();
-                    connection.getValue().writeObject("CHARGER " + session);
-                    courses = (ArrayList<Course>) connection.getKey().readObject();
-                    boolean found = false;
-                    for (Course course : courses) {
-                        found |= course.getCode().equals(code);
-                    }
-                    if (found) {
-                        RegistrationForm registrationForm = new RegistrationForm(prenom, nom, email, matricule, new Course("", code, session));
-                        // Reconnect parce que le serveur déconnecte après chaque requete
-                        connection = connect();
-                        connection.getValue().writeObject("INSCRIRE");
-                        connection.getValue().writeObject(registrationForm);
-
-                        String response = (String) connection.getKey().readObject();
-                        System.out.println(response);
-                    } else {
-                        System.out.println("Cours ou session invalide");
+                    // Le serveur valide le cours et la session: un cours inconnu est refusé avec un message d'échec
+                    RegistrationForm registrationForm = new RegistrationForm(prenom, nom, email, matricule, new Course("", code, session));
+                    try {
+                        RegistrationResult result = connection.register(registrationForm);
+                        System.out.println(result.getMessage());
+                    } catch (ServerBusyException e) {
+                        // Le serveur est saturé: l'inscription n'a pas été traitée et peut être refaite
+                        System.out.println(e.getMessage());
                     }
                 }
             }
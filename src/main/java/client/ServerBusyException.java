@@ -0,0 +1,20 @@
+package client;
+
+import java.io.IOException;
+
+/**
+ * Signale que le serveur a refusé une commande sans la traiter, parce qu'il est saturé ou que le client a dépassé
+ * son débit. La connexion reste utilisable et la commande peut être envoyée de nouveau un peu plus tard,
+ * même une inscription: elle n'a pas été enregistrée.
+ */
+public class ServerBusyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message la réponse du serveur, qui commence par "OCCUPE"
+     */
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,516 @@
+package client;
+
+import server.Server;
+import server.models.Course;
+import server.models.CourseList;
+import server.models.CoursePage;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+import server.protocol.BinaryCodec;
+import server.protocol.WireFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * La classe ServerConnection garde une seule connexion ouverte avec le serveur pour toutes les commandes du client.
+ * La connexion est ouverte au premier besoin et annoncée comme persistante avec "MAINTENIR", ce qui évite
+ * la poignée de main TCP et l'en-tête des flux d'objets à chaque commande.
+ * Si le serveur a fermé la connexion (délai d'inactivité), elle est rouverte automatiquement pour CHARGER.
+ * Les listes de cours reçues sont gardées avec leur version: CHARGER ne les redemande qu'avec "IF-NOT version",
+ * et le serveur ne renvoie les cours que s'ils ont changé.
+ * Les messages sont échangés dans le format binaire compact par défaut, ou en sérialisation Java sur demande.
+ * Une commande refusée par le serveur parce qu'il est saturé lève {@link ServerBusyException}, sans être répétée:
+ * c'est à l'appelant de réessayer plus tard.
+ * <p>
+ * Les commandes d'un même objet sont exécutées l'une après l'autre. Avec {@link #setTimeout(int)}, une connexion ou
+ * une réponse qui tarde lève {@link SocketTimeoutException} au lieu de bloquer l'appelant indéfiniment, et
+ * {@link #abort()} interrompt depuis un autre thread la commande en cours.
+ */
+public class ServerConnection implements AutoCloseable {
+
+    /**
+     * Adresse du serveur
+     */
+    private final String address;
+    /**
+     * Port du serveur
+     */
+    private final int port;
+    /**
+     * Le format des messages échangés avec le serveur
+     */
+    private final WireFormat format;
+    /**
+     * Délai maximal de connexion et d'attente de chaque réponse, en millisecondes (0: aucun)
+     */
+    private volatile int timeoutMillis;
+    /**
+     * Verrou des commandes: un verrou plutôt que des méthodes synchronisées, pour qu'un thread virtuel bloqué sur
+     * le socket libère son thread porteur
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Protège {@link #socket} et {@link #aborted} entre le thread de la commande et {@link #abort()}
+     */
+    private final Object abortLock = new Object();
+    /**
+     * Vrai si la commande en cours a été interrompue par {@link #abort()}: elle n'est pas répétée
+     */
+    private boolean aborted;
+    /**
+     * Socket de la connexion courante, null si aucune connexion n'est ouverte
+     */
+    private Socket socket;
+    /**
+     * Flux d'entrée de la connexion courante
+     */
+    private InputStream in;
+    /**
+     * Flux de sortie de la connexion courante
+     */
+    private OutputStream out;
+    /**
+     * Flux d'objets d'entrée, en sérialisation Java seulement
+     */
+    private ObjectInputStream objectIn;
+    /**
+     * Flux d'objets de sortie, en sérialisation Java seulement
+     */
+    private ObjectOutputStream objectOut;
+    /**
+     * Les dernières listes de cours reçues, par session, avec leur version
+     */
+    private final Map<String, CourseList> courseCache = new HashMap<>();
+
+    /**
+     * Crée une connexion qui utilise le format binaire compact
+     *
+     * @param address l'adresse du serveur
+     * @param port    le port du serveur
+     */
+    public ServerConnection(String address, int port) {
+        this(address, port, WireFormat.BINARY);
+    }
+
+    /**
+     * @param address l'adresse du serveur
+     * @param port    le port du serveur
+     * @param format  le format des messages échangés avec le serveur
+     */
+    public ServerConnection(String address, int port, WireFormat format) {
+        this.address = address;
+        this.port = port;
+        this.format = format;
+    }
+
+    /**
+     * Fixe le délai maximal d'ouverture de la connexion et d'attente de chaque réponse (ou de chaque page d'un flux).
+     * Une commande qui dépasse le délai lève {@link SocketTimeoutException} et n'est pas répétée;
+     * la connexion est fermée, car la réponse en retard arriverait à la place de celle de la commande suivante.
+     *
+     * @param timeoutMillis le délai en millisecondes, 0 pour attendre indéfiniment (par défaut)
+     */
+    public void setTimeout(int timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Délai négatif: " + timeoutMillis);
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Ouvre la connexion si elle ne l'est pas déjà
+     *
+     * @throws IOException si la connexion au serveur échoue
+     */
+    private void ensureConnected() throws IOException {
+        if (socket != null && !socket.isClosed()) {
+            return;
+        }
+        // Un socket fermé par abort() juste après la fin de la commande précédente est remplacé
+        disconnect();
+        Socket opened = new Socket();
+        synchronized (abortLock) {
+            if (aborted) {
+                throw new SocketException("Commande interrompue");
+            }
+            socket = opened;
+        }
+        int timeout = timeoutMillis;
+        try {
+            socket.connect(new InetSocketAddress(address, port), timeout);
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+        socket.setSoTimeout(timeout);
+        socket.setTcpNoDelay(true);
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new BufferedInputStream(socket.getInputStream());
+        if (format == WireFormat.BINARY) {
+            // Demande le format binaire; le serveur l'accepte en renvoyant les mêmes octets
+            out.write(BinaryCodec.MAGIC);
+            out.flush();
+            if (!Arrays.equals(in.readNBytes(BinaryCodec.MAGIC.length), BinaryCodec.MAGIC)) {
+                disconnect();
+                throw new StreamCorruptedException("Le serveur ne supporte pas le format binaire");
+            }
+        } else {
+            objectOut = new ObjectOutputStream(out);
+            objectOut.flush();
+            objectIn = new ObjectInputStream(in);
+        }
+        send(Server.KEEP_ALIVE_COMMAND);
+    }
+
+    /**
+     * Écrit un message dans le format de la connexion, sans vider le tampon
+     *
+     * @param message le message
+     */
+    private void send(Object message) throws IOException {
+        if (format == WireFormat.BINARY) {
+            BinaryCodec.writeMessage(out, message);
+        } else {
+            objectOut.writeObject(message);
+        }
+    }
+
+    /**
+     * Vide le tampon de sortie vers le serveur
+     */
+    private void flush() throws IOException {
+        if (format == WireFormat.BINARY) {
+            out.flush();
+        } else {
+            objectOut.flush();
+        }
+    }
+
+    /**
+     * Lit un message dans le format de la connexion
+     *
+     * @return le message lu
+     */
+    private Object receive() throws IOException, ClassNotFoundException {
+        if (format == WireFormat.BINARY) {
+            return BinaryCodec.readMessage(in);
+        }
+        return objectIn.readObject();
+    }
+
+    /**
+     * Demande au serveur les cours offerts pendant une session.
+     * Si la session est déjà en cache, le serveur répond seulement "non modifié" tant que ses cours n'ont pas changé.
+     *
+     * @param session la session
+     * @return la liste des cours de la session
+     * @throws IOException            si une erreur de communication se produit
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    public ArrayList<Course> loadCourses(String session) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            CourseList cached = courseCache.get(session);
+            String command = Server.LOAD_COMMAND + " " + session + " " + Server.IF_NOT_KEYWORD + " "
+                    + (cached == null ? CourseList.NO_VERSION : cached.getVersion());
+            CourseList reply = (CourseList) idempotentRequest(command);
+            if (reply.isModified()) {
+                courseCache.put(session, reply);
+                cached = reply;
+            } else if (cached == null) {
+                throw new StreamCorruptedException("Réponse \"non modifié\" pour une session absente du cache: " + session);
+            }
+            // Une copie, pour que l'appelant ne puisse pas modifier le cache
+            return new ArrayList<>(cached.getCourses());
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Cherche des cours de toutes les sessions par des mots partiels de leur code ou de leur nom ("CHERCHER")
+     *
+     * @param query les mots cherchés, par exemple "IFT1" ou "programmation"
+     * @return les cours trouvés, au plus {@link Server#SEARCH_RESULTS}
+     * @throws IOException            si une erreur de communication se produit
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<Course> search(String query) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            return (ArrayList<Course>) idempotentRequest(Server.SEARCH_COMMAND + " " + query);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Demande au serveur une page des cours offerts pendant une session ("CHARGER session PAGE début nombre").
+     * La version de la page permet de savoir si le catalogue a changé depuis la page précédente.
+     *
+     * @param session la session
+     * @param offset  la position du premier cours de la page
+     * @param limit   le nombre de cours de la page (au plus {@link Server#MAX_PAGE_SIZE})
+     * @return la page
+     * @throws IOException            si une erreur de communication se produit ou si le serveur refuse la demande
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    public CoursePage loadCoursePage(String session, int offset, int limit) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            String command = Server.LOAD_COMMAND + " " + session + " " + Server.PAGE_KEYWORD + " " + offset + " " + limit;
+            return page(idempotentRequest(command));
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Demande au serveur les cours offerts pendant une session en pages successives ("CHARGER session FLUX taille")
+     * et passe chaque page à l'appelant dès qu'elle arrive, sans attendre les suivantes.
+     * Si la session est déjà en cache et n'a pas changé, la liste du cache est passée en une seule fois.
+     *
+     * @param session  la session
+     * @param pageSize le nombre de cours par page (au plus {@link Server#MAX_PAGE_SIZE})
+     * @param onPage   reçoit les cours de chaque page, dans l'ordre
+     * @throws IOException            si une erreur de communication se produit ou si le serveur refuse la demande
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    public void streamCourses(String session, int pageSize, Consumer<List<Course>> onPage) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            CourseList cached = courseCache.get(session);
+            String command = Server.LOAD_COMMAND + " " + session + " " + Server.IF_NOT_KEYWORD + " "
+                    + (cached == null ? CourseList.NO_VERSION : cached.getVersion()) + " " + Server.STREAM_KEYWORD + " " + pageSize;
+            // Aucune page n'a encore été reçue: la demande peut être répétée sans risque
+            CoursePage page = page(idempotentRequest(command));
+            if (!page.isModified()) {
+                if (cached == null) {
+                    throw new StreamCorruptedException("Réponse \"non modifié\" pour une session absente du cache: " + session);
+                }
+                onPage.accept(new ArrayList<>(cached.getCourses()));
+                return;
+            }
+            // Le cache partage les cours passés à l'appelant, seules les références sont copiées
+            ArrayList<Course> courses = new ArrayList<>(page.getTotal());
+            try {
+                while (true) {
+                    courses.addAll(page.getCourses());
+                    onPage.accept(page.getCourses());
+                    if (page.isLast()) {
+                        break;
+                    }
+                    page = page(receive());
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                // Le reste du flux est perdu: la connexion ne peut plus être utilisée
+                disconnect();
+                throw e;
+            }
+            courseCache.put(session, new CourseList(session, page.getVersion(), courses));
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * @param reply la réponse du serveur à une demande de pages
+     * @return la page
+     * @throws IOException si le serveur a refusé la demande
+     */
+    private static CoursePage page(Object reply) throws IOException {
+        if (reply instanceof String message) {
+            throw new IOException(message);
+        }
+        return (CoursePage) reply;
+    }
+
+    /**
+     * Envoie une demande d'inscription au serveur
+     *
+     * Le serveur vérifie lui-même que le cours est offert pendant la session: inutile de charger les cours avant.
+     *
+     * @param form le formulaire d'inscription
+     * @return le résultat de l'inscription, accepté ou refusé avec la raison
+     * @throws IOException            si une erreur de communication se produit
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    public RegistrationResult register(RegistrationForm form) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            try {
+                return (RegistrationResult) request(Server.REGISTER_COMMAND, form);
+            } catch (ServerBusyException e) {
+                throw e;
+            } catch (IOException e) {
+                // Une inscription n'est pas répétée: le serveur l'a peut-être déjà enregistrée
+                disconnect();
+                throw e;
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Envoie plusieurs demandes d'inscription au serveur en un seul message ("INSCRIRE_LOT")
+     *
+     * @param forms les formulaires d'inscription
+     * @return le résultat de chaque inscription, dans l'ordre des formulaires
+     * @throws IOException            si une erreur de communication se produit
+     * @throws ClassNotFoundException si la réponse du serveur est d'une classe inconnue
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<RegistrationResult> registerAll(List<RegistrationForm> forms) throws IOException, ClassNotFoundException {
+        lock.lock();
+        try {
+            try {
+                return (ArrayList<RegistrationResult>) request(Server.BATCH_REGISTER_COMMAND, new ArrayList<>(forms));
+            } catch (ServerBusyException e) {
+                throw e;
+            } catch (IOException e) {
+                // Comme pour une inscription, le lot n'est pas répété
+                disconnect();
+                throw e;
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Envoie une commande qui peut être répétée sans risque (CHARGER, CHERCHER) et lit la réponse du serveur.
+     * Si la connexion a expiré côté serveur, elle est rouverte et la commande est envoyée une seconde fois;
+     * un refus du serveur saturé, un délai dépassé ou une commande interrompue ne sont pas répétés.
+     *
+     * @param command la ligne de commande
+     * @return la réponse du serveur
+     */
+    private Object idempotentRequest(String command) throws IOException, ClassNotFoundException {
+        try {
+            return request(command);
+        } catch (ServerBusyException e) {
+            throw e;
+        } catch (SocketTimeoutException e) {
+            disconnect();
+            throw e;
+        } catch (IOException e) {
+            disconnect();
+            // Après abort(), ensureConnected refuse de rouvrir la connexion
+            return request(command);
+        }
+    }
+
+    /**
+     * Envoie une commande, suivie de ses objets, et lit la réponse du serveur
+     *
+     * @param command la ligne de commande
+     * @param objects les objets qui accompagnent la commande
+     * @return la réponse du serveur
+     * @throws ServerBusyException si le serveur a refusé la commande sans la traiter
+     */
+    private Object request(String command, Object... objects) throws IOException, ClassNotFoundException {
+        ensureConnected();
+        send(command);
+        for (Object object : objects) {
+            send(object);
+        }
+        flush();
+        Object reply = receive();
+        if (reply instanceof String message && message.startsWith(Server.BUSY_REPLY)) {
+            throw new ServerBusyException(message);
+        }
+        return reply;
+    }
+
+    /**
+     * Ferme la connexion courante sans prévenir le serveur
+     */
+    private void disconnect() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // la connexion est déjà inutilisable
+        }
+        synchronized (abortLock) {
+            socket = null;
+        }
+        in = null;
+        out = null;
+        objectIn = null;
+        objectOut = null;
+    }
+
+    /**
+     * Interrompt la commande en cours d'un autre thread en fermant son socket: elle lève une IOException sans être
+     * répétée, et la commande suivante ouvre une nouvelle connexion. Sans commande en cours, n'a aucun effet.
+     * Une inscription interrompue a peut-être été enregistrée par le serveur.
+     */
+    public void abort() {
+        synchronized (abortLock) {
+            if (!lock.isLocked()) {
+                return;
+            }
+            aborted = true;
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // la connexion est déjà inutilisable
+                }
+            }
+        }
+    }
+
+    /**
+     * Termine une commande: libère le verrou, puis oublie une éventuelle interruption, qui ne visait que cette commande
+     */
+    private void unlock() {
+        lock.unlock();
+        synchronized (abortLock) {
+            aborted = false;
+        }
+    }
+
+    /**
+     * Envoie "FERMER" au serveur puis ferme la connexion
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (socket != null) {
+                try {
+                    send(Server.CLOSE_COMMAND);
+                    flush();
+                } catch (IOException e) {
+                    // le serveur a déjà fermé la connexion
+                }
+            }
+            disconnect();
+        } finally {
+            unlock();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package client.clientfx;
 
+import client.AsyncServerConnection;
+import client.ServerBusyException;
 import server.models.Course;
 import server.models.RegistrationForm;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.*;
@@ -13,13 +16,11 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.*;
 import javafx.scene.text.*;
 import javafx.stage.Stage;
-import javafx.util.Pair;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Classe ClientFX permettant de gérer une interface utilisateur pour l'inscription aux cours.
@@ -45,6 +46,11 @@ public class ClientFX extends Application {
      */
     public final static String LOAD_COMMAND = "CHARGER";
 
+    /**
+     * Nombre de cours demandés au serveur par page
+     */
+    private static final int PAGE_SIZE = 500;
+
     /**
      * Arrière-plan pour l'interface utilisateur
      */
@@ -55,37 +61,55 @@ public class ClientFX extends Application {
     }
 
     /**
-     * Méthode permettant de se connecter au serveur et d'établir la communication.
+     * Connexion au serveur, gardée ouverte et réutilisée par toutes les commandes de l'interface.
+     * Les commandes sont exécutées sur un thread réseau: le thread de l'interface n'attend jamais le serveur.
+     */
+    private static final AsyncServerConnection CONNECTION = new AsyncServerConnection(SERVER_ADDRESS, SERVER_PORT);
+
+    /**
+     * Méthode permettant d'obtenir la connexion au serveur.
      *
-     * @return Une paire d'ObjectInputStream et ObjectOutputStream pour la communication avec le serveur.
-     * @throws IOException Si une erreur de communication se produit.
+     * @return La connexion partagée avec le serveur, ouverte au premier besoin.
      */
+    public static AsyncServerConnection connect() {
+        return CONNECTION;
+    }
 
-    public static Pair<ObjectInputStream, ObjectOutputStream> connect() throws IOException {
-        Socket socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
+    /**
+     * Numéro du dernier chargement demandé; les pages d'un chargement plus ancien sont ignorées
+     */
+    private static final AtomicInteger LOADS = new AtomicInteger();
 
-        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-        return new Pair<>(in, out);
-    }
+    /**
+     * Le dernier chargement demandé, annulé si un autre est demandé avant sa fin (thread de l'interface seulement)
+     */
+    private static CompletableFuture<Void> loading;
 
     /**
      * Méthode permettant de charger les cours disponibles pour une session spécifique.
+     * Les cours sont reçus page par page sur le thread réseau et ajoutés au tableau dès leur arrivée,
+     * sans bloquer l'interface pendant le chargement d'une longue liste. Un nouveau chargement annule le précédent.
      *
      * @param data     La liste des cours à afficher.
      * @param choixBox Le ComboBox contenant la session choisie.
      */
     public static void charger(ObservableList<Course> data, ComboBox<String> choixBox) {
         String session = choixBox.getValue();
-        try {
-            Pair<ObjectInputStream, ObjectOutputStream> connection = connect();
-            connection.getValue().writeObject(LOAD_COMMAND + " " + session);
-            ArrayList<Course> courses = (ArrayList<Course>) connection.getKey().readObject();
-            data.clear();
-            data.addAll(courses);
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Échec avec la connection au serveur");
+        int load = LOADS.incrementAndGet();
+        if (loading != null) {
+            loading.cancel(false);
         }
+        data.clear();
+        loading = connect().streamCourses(session, PAGE_SIZE, page -> Platform.runLater(() -> {
+            if (LOADS.get() == load) {
+                data.addAll(page);
+            }
+        }));
+        loading.whenCompleteAsync((ignored, e) -> {
+            if (e != null && !(e instanceof CancellationException)) {
+                System.out.println("Échec avec la connection au serveur");
+            }
+        }, Platform::runLater);
     }
 
     /**
@@ -129,6 +153,19 @@ public class ClientFX extends Application {
         alert.showAndWait();
     }
 
+    /**
+     * Méthode pour afficher la raison d'un refus d'inscription par le serveur.
+     *
+     * @param message Le message d'échec envoyé par le serveur.
+     */
+    private static void showRefusal(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Attention!");
+        alert.setHeaderText("Inscription refusée");
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
     /**
      * Méthode pour créer et afficher une fenêtre de succès avec un message personnalisé.
      *
@@ -150,8 +187,9 @@ public class ClientFX extends Application {
      * @param emailField     Champ de texte pour l'adresse e-mail.
      * @param matriculeField Champ de texte pour le matricule.
      * @param table          Vue de table contenant la liste des cours.
+     * @param envoyer        Bouton d'envoi, désactivé jusqu'à la réponse du serveur.
      */
-    private static void submitForm(TextField prenomField, TextField nomField, TextField emailField, TextField matriculeField, TableView<Course> table) {
+    private static void submitForm(TextField prenomField, TextField nomField, TextField emailField, TextField matriculeField, TableView<Course> table, Button envoyer) {
         if (!validateForm(prenomField, nomField, emailField, matriculeField, table)) {
             showError();
             return;
@@ -165,19 +203,34 @@ public class ClientFX extends Application {
 
         RegistrationForm form = new RegistrationForm(prenom, nom, email, matricule, course);
 
-        try {
-            Pair<ObjectInputStream, ObjectOutputStream> connection = connect();
-            connection.getValue().writeObject(REGISTER_COMMAND);
-            connection.getValue().writeObject(form);
-            showSuccess((String) connection.getKey().readObject());
+        // Le serveur valide lui-même le cours et la session: aucune requête CHARGER n'est nécessaire
+        envoyer.setDisable(true);
+        connect().register(form).whenCompleteAsync((result, e) -> {
+            envoyer.setDisable(false);
+            if (e instanceof ServerBusyException) {
+                // L'inscription n'a pas été traitée: l'étudiant peut la soumettre de nouveau
+                showRefusal(e.getMessage());
+                return;
+            }
+            if (e instanceof TimeoutException) {
+                showRefusal("Le serveur n'a pas répondu à temps: l'inscription a peut-être été enregistrée.");
+                return;
+            }
+            if (e != null) {
+                System.out.println("Échec avec la connection au serveur");
+                return;
+            }
+            if (!result.isAccepted()) {
+                showRefusal(result.getMessage());
+                return;
+            }
+            showSuccess(result.getMessage());
 
             prenomField.clear();
             nomField.clear();
             emailField.clear();
             matriculeField.clear();
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Échec avec la connection au serveur");
-        }
+        }, Platform::runLater);
     }
 
     /**
@@ -275,7 +328,7 @@ public class ClientFX extends Application {
 
         Button envoyer = new Button("Envoyer");
         envoyer.setOnAction(event -> {
-            submitForm(prenomField, nomField, emailField, matriculeField, tableView);
+            submitForm(prenomField, nomField, emailField, matriculeField, tableView, envoyer);
         });
 
         VBox formBox = new VBox(prenom, nom, email, matricule, envoyer);
@@ -301,5 +354,13 @@ public class ClientFX extends Application {
 
     }
 
+    /**
+     * Ferme la connexion au serveur à la fermeture de l'application.
+     */
+    @Override
+    public void stop() {
+        CONNECTION.close();
+    }
+
 
 }
@@ -0,0 +1,258 @@
+package server;
+
+import server.metrics.ServerMetrics;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe AdmissionControl décide si une commande reçue est traitée ou refusée tout de suite avec une réponse
+ * "occupé", pour que la latence reste bornée quand le serveur est saturé au lieu de s'allonger sans limite.
+ * <p>
+ * Deux limites s'appliquent: le nombre de commandes traitées en même temps par tout le serveur, et un seau à jetons
+ * par adresse IP, qui permet à une adresse un débit moyen et une rafale au-delà desquels ses commandes sont refusées.
+ * Chaque seau tient dans un seul AtomicLong, mis à jour par compareAndSet (algorithme GCRA: l'heure à laquelle
+ * le seau sera de nouveau plein), dans une ConcurrentHashMap: aucune commande n'attend un verrou.
+ * <p>
+ * Le nombre d'adresses suivies est borné. Quand la table est pleine, un nettoyage, au plus un par intervalle, oublie
+ * les seaux pleins puis, s'il en reste trop, ceux qui seront pleins le plus tôt. Entre deux nettoyages, une nouvelle
+ * adresse qui ne trouve pas de place est traitée comme une adresse neuve, sans être suivie.
+ */
+public class AdmissionControl {
+
+    /**
+     * Valeur qui désactive une limite
+     */
+    public final static int UNLIMITED = 0;
+
+    /**
+     * Nombre maximal d'adresses suivies par défaut
+     */
+    private final static int MAX_TRACKED_ADDRESSES = 10_000;
+
+    /**
+     * Intervalle minimal entre deux nettoyages de la table des seaux, en nanosecondes: un nettoyage parcourt toute
+     * la table
+     */
+    private final static long SWEEP_INTERVAL_NANOS = 100_000_000L;
+
+    /**
+     * La décision prise pour une commande
+     */
+    public enum Decision {
+        /**
+         * La commande est traitée; {@link #release()} doit être appelé à la fin
+         */
+        ADMITTED,
+        /**
+         * L'adresse du client a dépassé son débit
+         */
+        THROTTLED,
+        /**
+         * Le serveur traite déjà le nombre maximal de commandes
+         */
+        BUSY,
+        /**
+         * Le serveur s'arrête et n'accepte plus de commandes
+         */
+        CLOSED
+    }
+
+    /**
+     * Le nombre maximal de commandes traitées en même temps, {@link #UNLIMITED} pour aucune limite
+     */
+    private final int maxInFlight;
+    /**
+     * L'intervalle moyen permis entre deux commandes d'une même adresse, en nanosecondes (0 sans limite)
+     */
+    private final long intervalNanos;
+    /**
+     * L'avance permise sur l'intervalle moyen, soit la rafale moins une commande, en nanosecondes
+     */
+    private final long toleranceNanos;
+    /**
+     * Les commandes en cours de traitement
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * Pour chaque adresse, l'heure (selon System.nanoTime()) à laquelle son seau sera de nouveau plein
+     */
+    private final Map<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+    /**
+     * Le nombre maximal d'adresses suivies
+     */
+    private final int maxTrackedAddresses;
+    /**
+     * Vrai une fois que plus aucune commande n'est admise
+     */
+    private volatile boolean closed;
+    /**
+     * Le moment, selon System.nanoTime(), à partir duquel un nouveau nettoyage de la table est permis
+     */
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+    /**
+     * Les mesures du serveur, où les décisions sont comptées
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * @param maxInFlight   le nombre maximal de commandes traitées en même temps, {@link #UNLIMITED} pour aucune limite
+     * @param ratePerSecond le débit moyen permis à chaque adresse, en commandes par seconde, {@link #UNLIMITED} pour aucune limite
+     * @param burst         le nombre de commandes qu'une adresse peut envoyer d'un coup, 0 pour une seconde de débit
+     * @param metrics       les mesures du serveur
+     */
+    public AdmissionControl(int maxInFlight, int ratePerSecond, int burst, ServerMetrics metrics) {
+        this(maxInFlight, ratePerSecond, burst, metrics, MAX_TRACKED_ADDRESSES);
+    }
+
+    /**
+     * @param maxInFlight         le nombre maximal de commandes traitées en même temps, {@link #UNLIMITED} pour aucune limite
+     * @param ratePerSecond       le débit moyen permis à chaque adresse, en commandes par seconde, {@link #UNLIMITED} pour aucune limite
+     * @param burst               le nombre de commandes qu'une adresse peut envoyer d'un coup, 0 pour une seconde de débit
+     * @param metrics             les mesures du serveur
+     * @param maxTrackedAddresses le nombre maximal d'adresses dont le seau est suivi
+     */
+    AdmissionControl(int maxInFlight, int ratePerSecond, int burst, ServerMetrics metrics, int maxTrackedAddresses) {
+        if (maxInFlight < 0 || ratePerSecond < 0 || maxTrackedAddresses < 1) {
+            throw new IllegalArgumentException("Les limites doivent être positives ou nulles");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxTrackedAddresses = maxTrackedAddresses;
+        this.intervalNanos = ratePerSecond == UNLIMITED ? 0 : 1_000_000_000L / ratePerSecond;
+        this.toleranceNanos = intervalNanos * ((burst > 0 ? burst : Math.max(1, ratePerSecond)) - 1);
+        this.metrics = metrics;
+        metrics.setInFlightSource(inFlight::get);
+    }
+
+    /**
+     * Décide si une commande d'un client est traitée
+     *
+     * @param remote l'adresse du client
+     * @return ADMITTED si la commande peut être traitée (appeler ensuite {@link #release()}), sinon la raison du refus
+     */
+    public Decision tryAdmit(SocketAddress remote) {
+        if (intervalNanos > 0 && remote instanceof InetSocketAddress address && !tryTake(address.getAddress())) {
+            metrics.requestThrottled();
+            return Decision.THROTTLED;
+        }
+        int current = inFlight.incrementAndGet();
+        // Compté avant de lire closed: close() puis awaitIdle() ne peut pas manquer cette commande
+        if (closed) {
+            inFlight.decrementAndGet();
+            metrics.requestShed();
+            return Decision.CLOSED;
+        }
+        if (current > maxInFlight && maxInFlight != UNLIMITED) {
+            inFlight.decrementAndGet();
+            metrics.requestShed();
+            return Decision.BUSY;
+        }
+        metrics.requestAdmitted();
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * Signale la fin du traitement d'une commande admise
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return le nombre de commandes en cours de traitement
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return le nombre d'adresses dont le seau est suivi
+     */
+    int getTrackedAddresses() {
+        return buckets.size();
+    }
+
+    /**
+     * Refuse toutes les commandes suivantes; celles déjà admises continuent leur traitement
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Attend la fin des commandes admises, après {@link #close()}
+     *
+     * @param deadline le moment limite, selon System.nanoTime()
+     * @return vrai si plus aucune commande n'est en cours, faux si le délai a expiré avant
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public boolean awaitIdle(long deadline) throws InterruptedException {
+        // Un arrêt est rare: quelques millisecondes d'attente active évitent un signal à chaque release()
+        while (inFlight.get() > 0) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /**
+     * Prend un jeton dans le seau d'une adresse, sans verrou
+     *
+     * @param address l'adresse du client
+     * @return faux si le seau est vide
+     */
+    private boolean tryTake(InetAddress address) {
+        long now = System.nanoTime();
+        AtomicLong full = buckets.get(address);
+        if (full == null) {
+            if (buckets.size() >= maxTrackedAddresses && !sweep(now)) {
+                // Pas de place: l'adresse est traitée comme neuve, et un seau neuf est plein
+                return true;
+            }
+            full = buckets.computeIfAbsent(address, a -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = full.get();
+            if (current - now > toleranceNanos) {
+                return false;
+            }
+            if (full.compareAndSet(current, Math.max(current, now) + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Fait de la place dans la table pleine, au plus une fois par {@link #SWEEP_INTERVAL_NANOS}: oublie les seaux
+     * pleins, qui équivalent à des seaux neufs, puis ceux qui seront pleins le plus tôt jusqu'à libérer un dixième
+     * de la table
+     *
+     * @param now le moment présent, selon System.nanoTime()
+     * @return vrai si la table a de la place pour une nouvelle adresse
+     */
+    private boolean sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return false;
+        }
+        buckets.values().removeIf(full -> full.get() - now <= 0);
+        int excess = buckets.size() - (maxTrackedAddresses - Math.max(1, maxTrackedAddresses / 10));
+        if (excess > 0) {
+            long[] fullTimes = buckets.values().stream().mapToLong(AtomicLong::get).sorted().toArray();
+            if (excess >= fullTimes.length) {
+                buckets.clear();
+            } else {
+                long threshold = fullTimes[excess - 1];
+                buckets.values().removeIf(full -> full.get() <= threshold);
+            }
+        }
+        return buckets.size() < maxTrackedAddresses;
+    }
+}
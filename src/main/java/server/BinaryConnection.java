@@ -0,0 +1,96 @@
+package server;
+
+import server.protocol.BinaryCodec;
+import server.protocol.WireFormat;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Arrays;
+
+/**
+ * Connexion qui échange des messages dans le format binaire de {@link BinaryCodec}
+ */
+public class BinaryConnection extends Connection {
+
+    /**
+     * Le socket du client
+     */
+    private final Socket socket;
+    /**
+     * Flux d'entrée tamponné du socket
+     */
+    private final CountingInputStream in;
+    /**
+     * Flux de sortie tamponné du socket
+     */
+    private final CountingOutputStream out;
+
+    /**
+     * Vérifie la demande de format binaire du client et l'accepte en lui renvoyant les mêmes octets
+     *
+     * @param socket le socket du client
+     * @param in     le flux d'entrée du socket, positionné au début de la demande du client
+     * @param out    le flux de sortie tamponné du socket
+     * @throws IOException si la demande du client est invalide
+     */
+    BinaryConnection(Socket socket, CountingInputStream in, CountingOutputStream out) throws IOException {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        byte[] magic = in.readNBytes(BinaryCodec.MAGIC.length);
+        if (!Arrays.equals(magic, BinaryCodec.MAGIC)) {
+            throw new StreamCorruptedException("Version du protocole binaire non supportée");
+        }
+        out.write(BinaryCodec.MAGIC);
+        out.flush();
+    }
+
+    @Override
+    public Object readObject() throws IOException {
+        return BinaryCodec.readMessage(in);
+    }
+
+    @Override
+    public void writeObject(Object object) throws IOException {
+        BinaryCodec.writeMessage(out, object);
+        out.flush();
+    }
+
+    @Override
+    public void writeEncoded(byte[] payload) throws IOException {
+        out.write(payload);
+        out.flush();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return in.getCount();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return out.getCount();
+    }
+
+    @Override
+    public WireFormat getFormat() {
+        return WireFormat.BINARY;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return socket.toString();
+    }
+}
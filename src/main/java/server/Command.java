@@ -0,0 +1,80 @@
+package server;
+
+/**
+ * Les commandes du protocole, reconnues par {@link CommandParser}
+ */
+public enum Command {
+
+    /**
+     * Charger les cours d'une session
+     */
+    LOAD(Server.LOAD_COMMAND),
+
+    /**
+     * Chercher des cours par des mots partiels de leur code ou de leur nom
+     */
+    SEARCH(Server.SEARCH_COMMAND),
+
+    /**
+     * Inscrire un étudiant à un cours
+     */
+    REGISTER(Server.REGISTER_COMMAND),
+
+    /**
+     * Inscrire plusieurs étudiants en un seul message
+     */
+    BATCH_REGISTER(Server.BATCH_REGISTER_COMMAND),
+
+    /**
+     * Garder la connexion ouverte après chaque commande
+     */
+    KEEP_ALIVE(Server.KEEP_ALIVE_COMMAND),
+
+    /**
+     * Fermer une connexion maintenue ouverte
+     */
+    CLOSE(Server.CLOSE_COMMAND),
+
+    /**
+     * Une commande que le serveur ne gère pas lui-même (elle est quand même signalée aux gestionnaires)
+     */
+    UNKNOWN(null);
+
+    /**
+     * Les commandes connues, pour les parcourir sans copier le tableau de values()
+     */
+    private final static Command[] KNOWN = {LOAD, SEARCH, REGISTER, BATCH_REGISTER, KEEP_ALIVE, CLOSE};
+
+    /**
+     * Le mot qui désigne la commande dans une ligne de commande
+     */
+    private final String keyword;
+
+    Command(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * @return le mot qui désigne la commande, null pour UNKNOWN
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Trouve la commande dont le mot occupe le début d'une ligne, sans rien allouer
+     *
+     * @param line   la ligne de commande
+     * @param length la longueur du mot de commande au début de la ligne
+     * @return la commande, ou UNKNOWN
+     */
+    static Command match(String line, int length) {
+        for (Command command : KNOWN) {
+            String keyword = command.keyword;
+            if (keyword.length() == length && line.regionMatches(0, keyword, 0, length)) {
+                return command;
+            }
+        }
+        return UNKNOWN;
+    }
+}
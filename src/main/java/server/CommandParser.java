@@ -0,0 +1,69 @@
+package server;
+
+/**
+ * La classe CommandParser découpe une ligne de commande "COMMANDE argument" en un seul parcours.
+ * La commande est retournée comme une constante de {@link Command}: aucune chaîne n'est créée pour elle.
+ * L'argument est tout ce qui suit le premier espace, sans les espaces de fin, comme le faisait
+ * l'ancien découpage par String.split(" ") suivi de String.join(" ", ...).
+ */
+public final class CommandParser {
+
+    private CommandParser() {
+    }
+
+    /**
+     * @param line la ligne de commande
+     * @return la commande au début de la ligne, ou UNKNOWN
+     */
+    public static Command parse(String line) {
+        return Command.match(line, nameLength(line));
+    }
+
+    /**
+     * Retourne le mot de commande tel qu'écrit dans la ligne
+     * Pour une commande connue, c'est la constante de la commande: rien n'est alloué.
+     *
+     * @param line la ligne de commande
+     * @return le mot de commande
+     */
+    public static String name(String line) {
+        int length = nameLength(line);
+        Command command = Command.match(line, length);
+        return command != Command.UNKNOWN ? command.getKeyword() : line.substring(0, length);
+    }
+
+    /**
+     * Retourne l'argument de la commande: la seule chaîne créée par le découpage
+     *
+     * @param line la ligne de commande
+     * @return l'argument, ou une chaîne vide s'il n'y en a pas
+     */
+    public static String argument(String line) {
+        return argument(line, parse(line));
+    }
+
+    /**
+     * Retourne l'argument d'une ligne déjà reconnue par {@link #parse(String)}, sans reparcourir le mot de commande
+     *
+     * @param line    la ligne de commande
+     * @param command la commande retournée par parse(line)
+     * @return l'argument, ou une chaîne vide s'il n'y en a pas
+     */
+    public static String argument(String line, Command command) {
+        int start = (command != Command.UNKNOWN ? command.getKeyword().length() : nameLength(line)) + 1;
+        int end = line.length();
+        while (end > start && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return start < end ? line.substring(start, end) : "";
+    }
+
+    /**
+     * @param line la ligne de commande
+     * @return la longueur du mot de commande, jusqu'au premier espace
+     */
+    private static int nameLength(String line) {
+        int space = line.indexOf(' ');
+        return space < 0 ? line.length() : space;
+    }
+}
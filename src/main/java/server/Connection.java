@@ -0,0 +1,131 @@
+package server;
+
+import server.protocol.BinaryCodec;
+import server.protocol.WireFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+/**
+ * La classe Connection regroupe l'état propre à un client connecté: son socket et ses flux.
+ * Chaque connexion acceptée par le serveur possède sa propre instance, ce qui permet de servir
+ * plusieurs clients en parallèle sans partager de flux entre eux.
+ * Les sous-classes implémentent chacune un format de message ({@link WireFormat}).
+ */
+public abstract class Connection implements AutoCloseable {
+
+    /**
+     * Octets lus au moment où la dernière commande a été mesurée
+     */
+    private long measuredRead;
+    /**
+     * Octets écrits au moment où la dernière commande a été mesurée
+     */
+    private long measuredWritten;
+
+    /**
+     * Ouvre une connexion sur le socket d'un client qui vient d'être accepté.
+     * Le format est choisi d'après les premiers octets envoyés par le client: {@link BinaryCodec#MAGIC}
+     * pour le format binaire, sinon l'en-tête d'un flux d'objets Java.
+     *
+     * @param socket le socket du client
+     * @return la connexion, dans le format demandé par le client
+     * @throws IOException si les premiers octets du client ne peuvent pas être lus
+     */
+    public static Connection open(Socket socket) throws IOException {
+        // Les réponses sont petites: on les envoie sans attendre l'accusé de réception du paquet précédent
+        socket.setTcpNoDelay(true);
+        InputStream buffered = new BufferedInputStream(socket.getInputStream());
+        buffered.mark(1);
+        int first = buffered.read();
+        buffered.reset();
+        // Les octets sont comptés au-dessus du tampon: seuls ceux consommés par les messages sont attribués
+        CountingInputStream in = new CountingInputStream(buffered);
+        CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (first == BinaryCodec.MAGIC[0]) {
+            return new BinaryConnection(socket, in, out);
+        }
+        return new ObjectStreamConnection(socket, in, out);
+    }
+
+    /**
+     * @return le nombre d'octets des messages reçus du client depuis l'ouverture de la connexion
+     */
+    public abstract long getBytesRead();
+
+    /**
+     * @return le nombre d'octets envoyés au client depuis l'ouverture de la connexion
+     */
+    public abstract long getBytesWritten();
+
+    /**
+     * Retourne les octets reçus depuis le dernier appel (utilisé par le thread qui traite les commandes)
+     *
+     * @return le nombre d'octets reçus depuis le dernier appel
+     */
+    long takeBytesRead() {
+        long total = getBytesRead();
+        long delta = total - measuredRead;
+        measuredRead = total;
+        return delta;
+    }
+
+    /**
+     * Retourne les octets envoyés depuis le dernier appel (utilisé par le thread qui traite les commandes)
+     *
+     * @return le nombre d'octets envoyés depuis le dernier appel
+     */
+    long takeBytesWritten() {
+        long total = getBytesWritten();
+        long delta = total - measuredWritten;
+        measuredWritten = total;
+        return delta;
+    }
+
+    /**
+     * Lit le prochain objet envoyé par le client
+     *
+     * @return l'objet lu
+     * @throws IOException            s'il y a une erreur de lecture
+     * @throws ClassNotFoundException si la classe de l'objet est introuvable
+     */
+    public abstract Object readObject() throws IOException, ClassNotFoundException;
+
+    /**
+     * Envoie un objet au client
+     *
+     * @param object l'objet à envoyer
+     * @throws IOException s'il y a une erreur d'écriture
+     */
+    public abstract void writeObject(Object object) throws IOException;
+
+    /**
+     * Envoie au client un message déjà encodé par {@link WireFormat#encode(Object)} dans le format de la connexion
+     *
+     * @param payload les octets du message
+     * @throws IOException s'il y a une erreur d'écriture
+     */
+    public abstract void writeEncoded(byte[] payload) throws IOException;
+
+    /**
+     * @return le format des messages de cette connexion
+     */
+    public abstract WireFormat getFormat();
+
+    /**
+     * @return l'adresse du client
+     */
+    public abstract SocketAddress getRemoteAddress();
+
+    /**
+     * Ferme les flux de la connexion et le socket du client
+     *
+     * @throws IOException s'il y a un problème au niveau des fermetures
+     */
+    @Override
+    public abstract void close() throws IOException;
+}
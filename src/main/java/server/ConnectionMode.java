@@ -0,0 +1,51 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Les différentes façons dont le serveur peut servir les connexions acceptées
+ */
+public enum ConnectionMode {
+
+    /**
+     * Une connexion à la fois, directement sur le thread qui accepte (comportement historique). Un client qui garde
+     * sa connexion ouverte avec "MAINTENIR", comme ClientSimple et ClientFX, bloque alors tous les autres jusqu'à
+     * sa fermeture ou au délai d'inactivité.
+     */
+    SINGLE,
+
+    /**
+     * Chaque connexion est servie par un pool borné de threads
+     */
+    POOL,
+
+    /**
+     * Chaque connexion est servie par son propre thread virtuel
+     */
+    VIRTUAL,
+
+    /**
+     * Quelques threads surveillent toutes les connexions avec un Selector; les commandes décodées sont
+     * traitées sur des threads virtuels. Ce mode n'accepte que le format binaire.
+     */
+    NIO;
+
+    /**
+     * Crée l'exécuteur qui servira les connexions dans ce mode
+     *
+     * @param poolSize le nombre de threads du pool (utilisé seulement en mode POOL)
+     * @return l'exécuteur (celui des commandes en mode NIO), ou null en mode SINGLE
+     */
+    public ExecutorService newExecutor(int poolSize) {
+        switch (this) {
+            case POOL:
+                return Executors.newFixedThreadPool(poolSize);
+            case VIRTUAL:
+            case NIO:
+                return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-", 0).factory());
+            default:
+                return null;
+        }
+    }
+}
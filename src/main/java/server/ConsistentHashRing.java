@@ -0,0 +1,91 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * La classe ConsistentHashRing associe chaque clé à un fragment par hachage cohérent.
+ * Chaque fragment occupe plusieurs points (nœuds virtuels) sur un anneau de valeurs de hachage; une clé appartient
+ * au premier point qui suit son hachage. Ajouter ou retirer un fragment ne déplace que les clés de ses propres points,
+ * environ 1/N des clés, au lieu de presque toutes comme avec un simple modulo.
+ *
+ * @param <T> le type des fragments
+ */
+public class ConsistentHashRing<T> {
+
+    /**
+     * Nombre de points par fragment par défaut: assez pour que les fragments reçoivent des parts proches
+     */
+    public final static int DEFAULT_VIRTUAL_NODES = 160;
+
+    /**
+     * Les points de l'anneau, triés par valeur de hachage
+     */
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * Place les fragments sur l'anneau avec le nombre de points par défaut
+     *
+     * @param shards les fragments, chacun avec un nom stable (par exemple "hôte:port")
+     */
+    public ConsistentHashRing(Map<String, T> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Place les fragments sur l'anneau
+     *
+     * @param shards       les fragments, chacun avec un nom stable: la position des points ne dépend que du nom
+     * @param virtualNodes le nombre de points de chaque fragment
+     */
+    public ConsistentHashRing(Map<String, T> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("Il faut au moins un fragment et un point par fragment");
+        }
+        for (Map.Entry<String, T> shard : shards.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard.getKey() + "#" + i), shard.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param key la clé
+     * @return le fragment qui possède la clé
+     */
+    public T get(String key) {
+        Map.Entry<Long, T> owner = ring.ceilingEntry(hash(key));
+        // Après le dernier point, l'anneau revient au premier
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * @return les fragments distincts de l'anneau, dans l'ordre de leur premier point
+     */
+    public List<T> getShards() {
+        return ring.values().stream().distinct().toList();
+    }
+
+    /**
+     * Hachage 64 bits FNV-1a des octets UTF-8, suivi du mélange final de MurmurHash3 pour que des clés proches
+     * ("IFT1015", "IFT1016") tombent loin l'une de l'autre sur l'anneau
+     *
+     * @param key la clé
+     * @return la valeur de hachage
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,60 @@
+package server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Flux d'entrée qui compte les octets lus, pour les mesures des connexions
+ */
+class CountingInputStream extends FilterInputStream {
+
+    /**
+     * Le nombre d'octets lus depuis l'ouverture du flux
+     */
+    private long count;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    /**
+     * Le marquage rendrait le compte faux: il n'est pas supporté
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return le nombre d'octets lus depuis l'ouverture du flux
+     */
+    long getCount() {
+        return count;
+    }
+}
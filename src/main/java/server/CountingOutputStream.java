@@ -0,0 +1,39 @@
+package server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Flux de sortie qui compte les octets écrits, pour les mesures des connexions
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Le nombre d'octets écrits depuis l'ouverture du flux
+     */
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * @return le nombre d'octets écrits depuis l'ouverture du flux
+     */
+    long getCount() {
+        return count;
+    }
+}
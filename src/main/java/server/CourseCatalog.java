@@ -0,0 +1,304 @@
+package server;
+
+import server.models.Course;
+import server.models.CourseList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe CourseCatalog garde en mémoire les cours du fichier cours.txt, indexés par session.
+ * Le fichier est lu une seule fois au démarrage, puis relu seulement quand sa date de modification change.
+ * Chaque lecture du fichier produit un nouvel instantané immuable qui remplace l'ancien d'un seul coup,
+ * donc les lectures ne sont jamais bloquées et ne voient jamais un catalogue à moitié chargé.
+ * Chaque session a aussi une version, tirée du contenu de ses cours: elle ne change que si les cours de la session
+ * changent, même d'un redémarrage à l'autre, ce qui permet aux clients de garder leur liste en cache.
+ * L'index de recherche des cours est construit avec chaque instantané.
+ */
+public final class CourseCatalog implements AutoCloseable {
+
+    /**
+     * Intervalle par défaut, en millisecondes, entre deux vérifications de la date de modification
+     */
+    public final static long DEFAULT_POLL_MILLIS = 1000;
+
+    /**
+     * Instantané immuable du catalogue
+     *
+     * @param modified la date de modification du fichier au moment de la lecture
+     * @param version  numéro qui augmente à chaque rechargement
+     * @param sessions les cours de chaque session, dans l'ordre du fichier
+     * @param codes    les cours de chaque session, par code
+     * @param versions la version des cours de chaque session
+     * @param search   l'index de recherche des cours de toutes les sessions
+     */
+    private record Snapshot(FileTime modified, long version, Map<String, List<Course>> sessions,
+                            Map<String, Map<String, Course>> codes, Map<String, String> versions,
+                            CourseSearchIndex search) {
+
+        Snapshot(FileTime modified, long version, Map<String, List<Course>> sessions) {
+            this(modified, version, sessions, indexByCode(sessions), versionsOf(sessions), new CourseSearchIndex(sessions));
+        }
+    }
+
+    /**
+     * Les cours d'une session et leur version, tirés du même instantané
+     *
+     * @param version la version des cours de la session
+     * @param courses les cours (non modifiables) de la session, dans l'ordre du fichier
+     */
+    public record SessionCourses(String version, List<Course> courses) {
+    }
+
+    /**
+     * La version d'une session sans aucun cours
+     */
+    private final static String EMPTY_VERSION = versionOf(List.of());
+
+    /**
+     * Le fichier des cours
+     */
+    private final Path file;
+    /**
+     * L'instantané courant, remplacé en entier à chaque rechargement
+     */
+    private volatile Snapshot snapshot;
+    /**
+     * Thread qui surveille la date de modification du fichier, null si la surveillance est désactivée
+     */
+    private final ScheduledExecutorService watcher;
+
+    /**
+     * Charge le catalogue et surveille le fichier à l'intervalle par défaut
+     *
+     * @param file le fichier des cours
+     */
+    public CourseCatalog(Path file) {
+        this(file, DEFAULT_POLL_MILLIS);
+    }
+
+    /**
+     * Charge le catalogue et surveille le fichier à l'intervalle donné
+     *
+     * @param file       le fichier des cours
+     * @param pollMillis l'intervalle entre deux vérifications, 0 pour ne jamais recharger automatiquement
+     */
+    public CourseCatalog(Path file, long pollMillis) {
+        this.file = file;
+        this.snapshot = new Snapshot(null, 0, Map.of());
+        reloadIfModified();
+        if (pollMillis > 0) {
+            this.watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "course-catalog-watcher");
+                t.setDaemon(true);
+                return t;
+            });
+            this.watcher.scheduleWithFixedDelay(this::reloadIfModified, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Retourne les cours offerts pendant une session, sans aucun accès au disque
+     *
+     * @param session la session demandée
+     * @return la liste (non modifiable) des cours de la session, vide si la session est inconnue
+     */
+    public List<Course> getCourses(String session) {
+        return snapshot.sessions().getOrDefault(session, List.of());
+    }
+
+    /**
+     * Trouve un cours offert pendant une session, en temps constant
+     *
+     * @param session la session
+     * @param code    le code du cours
+     * @return le cours, ou null s'il n'est pas offert pendant cette session
+     */
+    public Course findCourse(String session, String code) {
+        Map<String, Course> courses = snapshot.codes().get(session);
+        return courses == null ? null : courses.get(code);
+    }
+
+    /**
+     * Cherche des cours de toutes les sessions à partir de mots partiels de leur code ou de leur nom,
+     * sans tenir compte des majuscules ni des accents (voir {@link CourseSearchIndex})
+     *
+     * @param query les mots cherchés
+     * @param limit le nombre maximal de cours retournés
+     * @return les cours trouvés
+     */
+    public ArrayList<Course> search(String query, int limit) {
+        return snapshot.search().search(query, limit);
+    }
+
+    /**
+     * Retourne la version des cours d'une session: deux listes identiques ont toujours la même version
+     *
+     * @param session la session demandée
+     * @return la version, celle d'une liste vide si la session est inconnue
+     */
+    public String getSessionVersion(String session) {
+        return snapshot.versions().getOrDefault(session, EMPTY_VERSION);
+    }
+
+    /**
+     * Retourne les cours d'une session avec leur version, lus dans le même instantané
+     *
+     * @param session la session demandée
+     * @return la liste des cours de la session et sa version
+     */
+    public CourseList getCourseList(String session) {
+        SessionCourses courses = getSessionCourses(session);
+        return new CourseList(session, courses.version(), new ArrayList<>(courses.courses()));
+    }
+
+    /**
+     * Retourne les cours d'une session avec leur version, lus dans le même instantané et sans copie,
+     * par exemple pour les envoyer page par page sans qu'un rechargement les mélange
+     *
+     * @param session la session demandée
+     * @return les cours de la session et leur version
+     */
+    public SessionCourses getSessionCourses(String session) {
+        Snapshot current = snapshot;
+        return new SessionCourses(current.versions().getOrDefault(session, EMPTY_VERSION),
+                current.sessions().getOrDefault(session, List.of()));
+    }
+
+    /**
+     * @return le numéro de l'instantané courant, qui change à chaque rechargement du fichier
+     */
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Relit le fichier si sa date de modification a changé depuis la dernière lecture
+     *
+     * @return vrai si le catalogue a été rechargé
+     */
+    public synchronized boolean reloadIfModified() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            Snapshot current = snapshot;
+            if (modified.equals(current.modified())) {
+                return false;
+            }
+            snapshot = new Snapshot(modified, current.version() + 1, read(file));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Lit le fichier des cours et regroupe les cours par session
+     * Chaque ligne valide contient le code, le nom et la session séparés par une tabulation.
+     * Les champs passent par une table de chaînes: tous les cours d'une session partagent la même chaîne de session,
+     * et un cours offert à plusieurs sessions partage son code et son nom.
+     *
+     * @param file le fichier des cours
+     * @return les cours de chaque session
+     * @throws IOException s'il y a une erreur de lecture
+     */
+    private static Map<String, List<Course>> read(Path file) throws IOException {
+        Map<String, ArrayList<Course>> sessions = new HashMap<>();
+        StringTable strings = new StringTable();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length == 3) {
+                    String code = strings.canonical(parts[0].trim());
+                    String name = strings.canonical(parts[1].trim());
+                    String session = strings.canonical(parts[2].trim());
+                    sessions.computeIfAbsent(session, s -> new ArrayList<>()).add(new Course(name, code, session));
+                }
+            }
+        }
+        Map<String, List<Course>> result = new HashMap<>();
+        sessions.forEach((session, courses) -> result.put(session, Collections.unmodifiableList(courses)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Indexe les cours de chaque session par code
+     *
+     * @param sessions les cours de chaque session
+     * @return les cours de chaque session, par code
+     */
+    private static Map<String, Map<String, Course>> indexByCode(Map<String, List<Course>> sessions) {
+        Map<String, Map<String, Course>> codes = new HashMap<>();
+        sessions.forEach((session, courses) -> {
+            Map<String, Course> byCode = new HashMap<>();
+            for (Course course : courses) {
+                byCode.putIfAbsent(course.getCode(), course);
+            }
+            codes.put(session, byCode);
+        });
+        return codes;
+    }
+
+    /**
+     * Calcule la version des cours de chaque session
+     *
+     * @param sessions les cours de chaque session
+     * @return la version de chaque session
+     */
+    private static Map<String, String> versionsOf(Map<String, List<Course>> sessions) {
+        Map<String, String> versions = new HashMap<>();
+        sessions.forEach((session, courses) -> versions.put(session, versionOf(courses)));
+        return versions;
+    }
+
+    /**
+     * Calcule la version d'une liste de cours: les 8 premiers octets du SHA-256 des cours, dans l'ordre, en hexadécimal
+     *
+     * @param courses les cours d'une session
+     * @return la version
+     */
+    private static String versionOf(List<Course> courses) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Course course : courses) {
+                digest.update((course.getCode() + "\t" + course.getName() + "\t" + course.getSession() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] hash = digest.digest();
+            StringBuilder version = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                version.append(String.format("%02x", hash[i]));
+            }
+            return version.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 fait partie des algorithmes que toute JVM doit fournir
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Arrête la surveillance du fichier
+     */
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+}
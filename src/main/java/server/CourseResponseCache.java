@@ -0,0 +1,163 @@
+package server;
+
+import server.models.Course;
+import server.models.CourseList;
+import server.protocol.WireFormat;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * La classe CourseResponseCache garde, pour chaque session et chaque format de message, la réponse à CHARGER déjà encodée.
+ * Le serveur écrit ces octets directement dans le socket au lieu de réencoder la liste de cours à chaque requête.
+ * Les réponses versionnées à "CHARGER session IF-NOT version" (la liste avec sa version, ou seulement "non modifié"
+ * quand le client a déjà la version courante) sont gardées de la même façon.
+ * Le cache est vidé dès que le catalogue change de version.
+ */
+public class CourseResponseCache {
+
+    /**
+     * Les réponses encodées pour une version donnée du catalogue
+     *
+     * @param version     la version du catalogue
+     * @param payloads    les listes de cours encodées, par format puis par session
+     * @param versioned   les listes de cours avec leur version encodées, par format puis par session
+     * @param notModified les réponses "non modifié" encodées, par format puis par session
+     */
+    private record Generation(long version, EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> payloads,
+                              EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> versioned,
+                              EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> notModified) {
+
+        Generation(long version) {
+            this(version, perFormat(), perFormat(), perFormat());
+        }
+
+        private static EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> perFormat() {
+            EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> payloads = new EnumMap<>(WireFormat.class);
+            for (WireFormat format : WireFormat.values()) {
+                payloads.put(format, new ConcurrentHashMap<>());
+            }
+            return payloads;
+        }
+    }
+
+    /**
+     * Le catalogue dont les réponses sont gardées
+     */
+    private final CourseCatalog catalog;
+    /**
+     * Les réponses de la version courante du catalogue
+     */
+    private volatile Generation generation;
+    /**
+     * Nombre de réponses trouvées dans le cache
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Nombre de réponses qui ont dû être encodées
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * Nombre de réponses "non modifié"
+     */
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    /**
+     * @param catalog le catalogue dont les réponses sont gardées
+     */
+    public CourseResponseCache(CourseCatalog catalog) {
+        this.catalog = catalog;
+        this.generation = new Generation(catalog.getVersion());
+    }
+
+    /**
+     * Retourne la réponse encodée à CHARGER pour une session, en l'encodant au besoin
+     *
+     * @param session la session demandée
+     * @param format  le format de la connexion qui recevra la réponse
+     * @return les octets à écrire tels quels avec {@link Connection#writeEncoded(byte[])}
+     */
+    public byte[] getCourses(String session, WireFormat format) {
+        return payload(current().payloads(), format, session,
+                key -> format.encode(new ArrayList<Course>(catalog.getCourses(key))));
+    }
+
+    /**
+     * Retourne la réponse encodée à "CHARGER session IF-NOT version": seulement "non modifié" si le client a déjà
+     * la version courante des cours de la session, sinon la liste avec sa version
+     *
+     * @param session      la session demandée
+     * @param knownVersion la version que le client a déjà, ou {@link CourseList#NO_VERSION}
+     * @param format       le format de la connexion qui recevra la réponse
+     * @return les octets à écrire tels quels avec {@link Connection#writeEncoded(byte[])}
+     */
+    public byte[] getCourses(String session, String knownVersion, WireFormat format) {
+        Generation current = current();
+        String version = catalog.getSessionVersion(session);
+        if (version.equals(knownVersion)) {
+            notModifiedCount.increment();
+            return payload(current.notModified(), format, session, key -> format.encode(new CourseList(key, version, null)));
+        }
+        return payload(current.versioned(), format, session, key -> format.encode(catalog.getCourseList(key)));
+    }
+
+    /**
+     * @return les réponses de la version courante du catalogue, remplacées si le catalogue a changé
+     */
+    private Generation current() {
+        Generation current = generation;
+        long version = catalog.getVersion();
+        if (current.version() != version) {
+            current = new Generation(version);
+            generation = current;
+        }
+        return current;
+    }
+
+    /**
+     * Retourne une réponse encodée du cache, en l'encodant au besoin
+     *
+     * @param payloads les réponses encodées, par format puis par session
+     * @param format   le format de la réponse
+     * @param session  la session demandée
+     * @param encoder  encode la réponse d'une session
+     * @return la réponse encodée
+     */
+    private byte[] payload(EnumMap<WireFormat, ConcurrentHashMap<String, byte[]>> payloads, WireFormat format, String session,
+                           Function<String, byte[]> encoder) {
+        ConcurrentHashMap<String, byte[]> bySession = payloads.get(format);
+        byte[] payload = bySession.get(session);
+        if (payload != null) {
+            hits.increment();
+            return payload;
+        }
+        misses.increment();
+        payload = encoder.apply(session);
+        bySession.put(session, payload);
+        return payload;
+    }
+
+    /**
+     * @return le nombre de réponses trouvées dans le cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return le nombre de réponses qui ont dû être encodées
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return le nombre de réponses "non modifié", qui n'ont renvoyé aucun cours
+     */
+    public long getNotModified() {
+        return notModifiedCount.sum();
+    }
+}
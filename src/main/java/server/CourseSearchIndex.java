@@ -0,0 +1,264 @@
+package server;
+
+import server.models.Course;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * La classe CourseSearchIndex retrouve des cours à partir de mots partiels de leur code ou de leur nom
+ * ("IFT1", "programmation"), sans tenir compte des majuscules ni des accents.
+ * <p>
+ * Chaque code et chaque nom est découpé en mots normalisés (minuscules, sans accents, séparés par tout ce qui n'est
+ * pas une lettre ou un chiffre). Les mots distincts sont gardés dans un tableau trié, si bien que tous les mots qui
+ * commencent par un préfixe se suivent à partir d'une recherche dichotomique. Les cours de chaque mot (l'index inversé)
+ * sont rangés à la suite dans un seul tableau d'entiers, dans l'ordre du catalogue.
+ * <p>
+ * Une recherche parcourt les mots qui commencent par le mot le plus sélectif de la requête (celui qui a le moins
+ * de cours, compté en deux recherches dichotomiques), le mot exact d'abord puis les autres dans l'ordre alphabétique,
+ * et s'arrête dès qu'elle a trouvé le nombre de cours demandé: son coût dépend du nombre de résultats, pas de la taille
+ * du catalogue. Les autres mots de la requête doivent aussi être le début d'un mot du cours.
+ * <p>
+ * L'index est immuable et construit une seule fois par version du catalogue.
+ */
+public class CourseSearchIndex {
+
+    /**
+     * Les cours indexés, dans l'ordre du catalogue
+     */
+    private final Course[] courses;
+    /**
+     * Les mots distincts, triés
+     */
+    private final String[] terms;
+    /**
+     * Les cours du mot terms[i] sont postings[starts[i]] à postings[starts[i + 1] - 1]
+     */
+    private final int[] starts;
+    /**
+     * Les positions des cours de chaque mot, à la suite
+     */
+    private final int[] postings;
+
+    /**
+     * Construit l'index des cours de toutes les sessions
+     *
+     * @param sessions les cours de chaque session
+     */
+    public CourseSearchIndex(Map<String, List<Course>> sessions) {
+        List<Course> all = new ArrayList<>();
+        sessions.values().forEach(all::addAll);
+        this.courses = all.toArray(new Course[0]);
+
+        // Premier passage: un numéro par mot distinct, et les paires (mot, cours) dans l'ordre des cours
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        int[] pairTerms = new int[Math.max(16, courses.length * 4)];
+        int[] pairCourses = new int[pairTerms.length];
+        int pairs = 0;
+        Set<String> seen = new HashSet<>();
+        for (int c = 0; c < courses.length; c++) {
+            seen.clear();
+            for (String field : new String[]{courses[c].getCode(), courses[c].getName()}) {
+                for (String word : tokenize(field)) {
+                    if (!seen.add(word)) {
+                        continue;
+                    }
+                    Integer id = ids.get(word);
+                    if (id == null) {
+                        id = words.size();
+                        ids.put(word, id);
+                        words.add(word);
+                    }
+                    if (pairs == pairTerms.length) {
+                        pairTerms = Arrays.copyOf(pairTerms, pairs * 2);
+                        pairCourses = Arrays.copyOf(pairCourses, pairs * 2);
+                    }
+                    pairTerms[pairs] = id;
+                    pairCourses[pairs] = c;
+                    pairs++;
+                }
+            }
+        }
+
+        // Tri des mots, puis rangement des cours de chaque mot à la suite
+        Integer[] order = new Integer[words.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> words.get(a).compareTo(words.get(b)));
+        int[] rank = new int[order.length];
+        this.terms = new String[order.length];
+        for (int r = 0; r < order.length; r++) {
+            rank[order[r]] = r;
+            terms[r] = words.get(order[r]);
+        }
+        this.starts = new int[terms.length + 1];
+        for (int p = 0; p < pairs; p++) {
+            starts[rank[pairTerms[p]] + 1]++;
+        }
+        for (int t = 0; t < terms.length; t++) {
+            starts[t + 1] += starts[t];
+        }
+        this.postings = new int[pairs];
+        int[] fill = Arrays.copyOf(starts, terms.length);
+        for (int p = 0; p < pairs; p++) {
+            postings[fill[rank[pairTerms[p]]]++] = pairCourses[p];
+        }
+    }
+
+    /**
+     * Cherche les cours dont le code ou le nom contient un mot qui commence par chaque mot de la requête
+     *
+     * @param query les mots cherchés, par exemple "IFT1" ou "prog logiciel"
+     * @param limit le nombre maximal de cours retournés
+     * @return les cours trouvés: ceux qui contiennent exactement le mot le plus sélectif de la requête d'abord
+     */
+    public ArrayList<Course> search(String query, int limit) {
+        ArrayList<Course> results = new ArrayList<>(Math.min(limit, 64));
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return results;
+        }
+        // Le mot qui a le moins de cours choisit les candidats; les autres ne font que les filtrer
+        String driver = null;
+        int driverCount = Integer.MAX_VALUE;
+        for (String word : words) {
+            int count = starts[upperBound(word)] - starts[lowerBound(word)];
+            if (count < driverCount) {
+                driver = word;
+                driverCount = count;
+            }
+        }
+        List<String> others = new ArrayList<>(words);
+        others.remove(driver);
+        Set<Integer> found = new HashSet<>();
+        for (int t = lowerBound(driver); t < terms.length && terms[t].startsWith(driver); t++) {
+            for (int p = starts[t]; p < starts[t + 1]; p++) {
+                int c = postings[p];
+                if (found.contains(c) || !matchesAll(courses[c], others)) {
+                    continue;
+                }
+                found.add(c);
+                results.add(courses[c]);
+                if (results.size() == limit) {
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return le nombre de mots distincts de l'index
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * @return le nombre de cours indexés
+     */
+    public int getCourseCount() {
+        return courses.length;
+    }
+
+    /**
+     * @param prefix un mot normalisé
+     * @return la position du premier mot de l'index qui n'est pas avant le préfixe
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param prefix un mot normalisé
+     * @return la position du premier mot de l'index qui ne commence pas par le préfixe et n'est pas avant lui
+     */
+    private int upperBound(String prefix) {
+        // Aucun mot ne contient ce caractère: tous les mots qui commencent par le préfixe sont avant
+        return lowerBound(prefix + Character.MAX_VALUE);
+    }
+
+    /**
+     * @return vrai si chaque mot est le début d'un mot du code ou du nom du cours
+     */
+    private static boolean matchesAll(Course course, List<String> words) {
+        if (words.isEmpty()) {
+            return true;
+        }
+        List<String> courseWords = tokenize(course.getCode());
+        courseWords.addAll(tokenize(course.getName()));
+        for (String word : words) {
+            boolean matched = false;
+            for (String courseWord : courseWords) {
+                if (courseWord.startsWith(word)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Découpe un texte en mots normalisés: en minuscules, sans accents, séparés par tout ce qui n'est pas
+     * une lettre ou un chiffre ("Génie_Logiciel" donne "genie" et "logiciel")
+     *
+     * @param text le texte, ou null
+     * @return les mots, dans l'ordre du texte
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>(4);
+        if (text == null) {
+            return words;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return le texte en minuscules et sans accents
+     */
+    private static String fold(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            // "é" devient "e" suivi d'un accent combinant, qui est ensuite retiré
+            text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,288 @@
+package server;
+
+import server.metrics.OperationMetrics;
+import server.metrics.ServerMetrics;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * La classe EventDispatcher alerte les gestionnaires d'évènements enregistrés auprès du serveur.
+ * Un gestionnaire synchrone est appelé directement sur le thread de la connexion. Un gestionnaire asynchrone
+ * a sa propre file bornée: ses évènements sont traités dans l'ordre, un à la fois, sur un petit pool de threads
+ * partagé, et une connexion qui trouve la file pleine attend qu'une place se libère.
+ * La liste des gestionnaires peut être modifiée pendant que le serveur fonctionne. Chaque gestionnaire est enregistré
+ * sous un nom, qui désigne ses mesures: deux gestionnaires enregistrés en même temps ne peuvent pas avoir le même nom.
+ * {@link #close(long)} laisse les gestionnaires asynchrones vider leur file avant d'arrêter le pool; une fois la
+ * fermeture commencée, une file est vidée d'un seul coup au lieu d'être reconfiée au pool.
+ */
+class EventDispatcher {
+
+    /**
+     * Nombre maximal d'évènements traités d'un coup pour un gestionnaire avant de laisser passer les autres
+     */
+    private final static int MAX_EVENTS_PER_RUN = 64;
+
+    /**
+     * Un évènement à signaler
+     *
+     * @param cmd la commande donnée par le client
+     * @param arg l'argument de la commande
+     */
+    private record Event(String cmd, String arg) {
+    }
+
+    /**
+     * Les gestionnaires enregistrés, copiés à chaque modification pour être parcourus sans verrou
+     */
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    /**
+     * Les mesures du serveur, où chaque gestionnaire a les siennes
+     */
+    private final ServerMetrics metrics;
+    /**
+     * Le pool qui exécute les gestionnaires asynchrones
+     */
+    private final ExecutorService executor;
+    /**
+     * La taille de la file de chaque gestionnaire asynchrone
+     */
+    private final int queueCapacity;
+    /**
+     * Le numéro du prochain gestionnaire enregistré sans nom
+     */
+    private final AtomicInteger unnamed = new AtomicInteger();
+    /**
+     * Vrai une fois {@link #close(long)} appelé: aucune file n'est plus reconfiée au pool, qui va être arrêté
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param metrics       les mesures du serveur
+     * @param threads       le nombre de threads partagés par les gestionnaires asynchrones
+     * @param queueCapacity la taille de la file de chaque gestionnaire asynchrone
+     */
+    EventDispatcher(ServerMetrics metrics, int threads, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("La taille des files doit être positive: " + queueCapacity);
+        }
+        this.metrics = metrics;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "event-handler-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Enregistre un gestionnaire
+     *
+     * @param name         le nom sous lequel les mesures du gestionnaire sont exposées
+     * @param handler      le gestionnaire
+     * @param asynchronous vrai pour l'appeler hors du thread de la connexion
+     * @throws IllegalArgumentException si un gestionnaire enregistré porte déjà ce nom
+     */
+    synchronized void add(String name, EventHandler handler, boolean asynchronous) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Un gestionnaire doit avoir un nom");
+        }
+        for (Registration registration : registrations) {
+            if (registration.name.equals(name)) {
+                throw new IllegalArgumentException("Un gestionnaire nommé " + name + " est déjà enregistré");
+            }
+        }
+        OperationMetrics handlerMetrics = metrics.handler(name);
+        registrations.add(asynchronous
+                ? new AsyncRegistration(name, handler, handlerMetrics, new ArrayBlockingQueue<>(queueCapacity))
+                : new Registration(name, handler, handlerMetrics));
+    }
+
+    /**
+     * @return un nom pour un gestionnaire enregistré sans nom: "gestionnaire-" suivi de son ordre d'enregistrement
+     */
+    String nextUnnamed() {
+        return "gestionnaire-" + unnamed.incrementAndGet();
+    }
+
+    /**
+     * Retire un gestionnaire; les évènements déjà dans sa file sont quand même traités
+     *
+     * @param handler le gestionnaire
+     * @return vrai si le gestionnaire était enregistré
+     */
+    boolean remove(EventHandler handler) {
+        return registrations.removeIf(registration -> registration.handler == handler);
+    }
+
+    /**
+     * Signale un évènement à tous les gestionnaires enregistrés
+     *
+     * @param cmd la commande donnée par le client
+     * @param arg l'argument de la commande
+     */
+    void dispatch(String cmd, String arg) {
+        for (Registration registration : registrations) {
+            registration.submit(cmd, arg);
+        }
+    }
+
+    /**
+     * Attend que les gestionnaires asynchrones aient traité leurs évènements, puis arrête le pool
+     *
+     * @param deadline le moment limite, selon System.nanoTime()
+     * @return vrai si tous les évènements ont été traités avant le délai
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    boolean close(long deadline) throws InterruptedException {
+        // Marqué avant d'attendre: une file en cours de traitement est vidée sur son thread, sans tâche de plus
+        closed = true;
+        boolean idle;
+        while (!(idle = registrations.stream().allMatch(Registration::isIdle)) && deadline - System.nanoTime() > 0) {
+            Thread.sleep(5);
+        }
+        executor.shutdown();
+        return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) && idle;
+    }
+
+    /**
+     * Un gestionnaire synchrone et ses mesures
+     */
+    private static class Registration {
+
+        final String name;
+        final EventHandler handler;
+        final OperationMetrics metrics;
+
+        Registration(String name, EventHandler handler, OperationMetrics metrics) {
+            this.name = name;
+            this.handler = handler;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Signale un évènement au gestionnaire
+         */
+        void submit(String cmd, String arg) {
+            call(cmd, arg);
+        }
+
+        /**
+         * @return vrai si aucun évènement n'attend d'être traité
+         */
+        boolean isIdle() {
+            return true;
+        }
+
+        /**
+         * Appelle le gestionnaire en mesurant sa durée; une exception est comptée comme une erreur
+         */
+        void call(String cmd, String arg) {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                handler.handle(cmd, arg);
+                success = true;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                metrics.record(System.nanoTime() - start, 0, 0, success);
+            }
+        }
+    }
+
+    /**
+     * Un gestionnaire asynchrone, avec sa file d'évènements
+     */
+    private class AsyncRegistration extends Registration {
+
+        /**
+         * Les évènements pas encore traités, dans l'ordre de leur arrivée
+         */
+        private final BlockingQueue<Event> queue;
+        /**
+         * Vrai pendant qu'un thread du pool traite la file
+         */
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        AsyncRegistration(String name, EventHandler handler, OperationMetrics metrics, BlockingQueue<Event> queue) {
+            super(name, handler, metrics);
+            this.queue = queue;
+        }
+
+        /**
+         * Ajoute l'évènement à la file, en attendant une place si elle est pleine
+         */
+        @Override
+        void submit(String cmd, String arg) {
+            try {
+                queue.put(new Event(cmd, arg));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            schedule();
+        }
+
+        @Override
+        boolean isIdle() {
+            return queue.isEmpty() && !running.get();
+        }
+
+        /**
+         * Confie le traitement de la file au pool, si aucun thread ne s'en occupe déjà
+         */
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                execute();
+            }
+        }
+
+        /**
+         * Confie la file au pool; le thread qui appelle doit avoir passé running à vrai
+         */
+        private void execute() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Le pool est arrêté: l'évènement est arrivé après la fin de close(), il n'est pas traité
+                running.set(false);
+            }
+        }
+
+        /**
+         * Traite quelques évènements de la file, dans l'ordre, puis rend le thread aux autres gestionnaires.
+         * Après {@link #close(long)}, traite toute la file sans la reconfier au pool.
+         */
+        private void drain() {
+            while (true) {
+                boolean closing = closed;
+                for (int i = 0; closing || i < MAX_EVENTS_PER_RUN; i++) {
+                    Event event = queue.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    call(event.cmd(), event.arg());
+                }
+                running.set(false);
+                // Un évènement a pu arriver entre le dernier poll() et set(false)
+                if (queue.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
+                }
+                if (!closed) {
+                    execute();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -3,4 +3,14 @@ package server;
 @FunctionalInterface
 public interface EventHandler {
     void handle(String cmd, String arg);
+
+    /**
+     * Un gestionnaire lent (audit, envoi de courriels) devrait être asynchrone: il est alors appelé hors du thread
+     * de la connexion, dans l'ordre des évènements, et le client n'attend que si sa file est pleine
+     *
+     * @return vrai si le gestionnaire doit être appelé hors du thread de la connexion
+     */
+    default boolean isAsynchronous() {
+        return false;
+    }
 }
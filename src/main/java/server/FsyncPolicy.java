@@ -0,0 +1,26 @@
+package server;
+
+/**
+ * Les moments où le journal binaire des inscriptions force ses écritures sur le disque.
+ * Dans tous les cas, une inscription n'est confirmée au client qu'une fois forcée: la politique change le nombre
+ * d'appels à force(), donc le débit et la latence, pas la garantie.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Chaque enregistrement est forcé seul, avant le suivant: la latence la plus basse sans charge, mais un appel
+     * à force() par inscription
+     */
+    EVERY_RECORD,
+
+    /**
+     * Les enregistrements arrivés pendant l'écriture du lot précédent sont forcés ensemble (group commit)
+     */
+    GROUP,
+
+    /**
+     * Les enregistrements sont écrits dès leur arrivée et forcés ensemble à intervalle fixe: le nombre d'appels
+     * à force() ne dépend plus de la charge, au prix d'une attente jusqu'au prochain intervalle
+     */
+    INTERVAL
+}
@@ -0,0 +1,110 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * L'argument d'une commande CHARGER, découpé:
+ * "session [IF-NOT version] [PAGE début nombre | FLUX taille]".
+ * Sans mot-clé, tout l'argument est la session, comme avant.
+ *
+ * @param session      la session demandée
+ * @param knownVersion la version que le client a déjà (IF-NOT), ou null
+ * @param mode         la forme de la réponse
+ * @param offset       la position du premier cours demandé (PAGE), 0 sinon
+ * @param limit        le nombre de cours par page, au plus {@link Server#MAX_PAGE_SIZE}
+ */
+record LoadRequest(String session, String knownVersion, Mode mode, int offset, int limit) {
+
+    /**
+     * Les formes de réponse à CHARGER
+     */
+    enum Mode {
+        /**
+         * Toute la liste en un seul message
+         */
+        ALL,
+        /**
+         * Une seule page de la liste
+         */
+        PAGE,
+        /**
+         * Toute la liste, en pages envoyées l'une après l'autre
+         */
+        STREAM
+    }
+
+    /**
+     * Découpe l'argument d'une commande CHARGER
+     *
+     * @param arg l'argument de la commande
+     * @return la demande
+     * @throws IllegalArgumentException si un mot-clé n'est pas suivi de ses valeurs
+     */
+    static LoadRequest parse(String arg) {
+        String[] tokens = arg.split(" ");
+        int first = 0;
+        while (first < tokens.length && !isKeyword(tokens[first])) {
+            first++;
+        }
+        if (first == tokens.length) {
+            return new LoadRequest(arg, null, Mode.ALL, 0, 0);
+        }
+        String session = String.join(" ", Arrays.copyOfRange(tokens, 0, first)).trim();
+        String knownVersion = null;
+        Mode mode = Mode.ALL;
+        int offset = 0;
+        int limit = 0;
+        int i = first;
+        while (i < tokens.length) {
+            String keyword = tokens[i++];
+            switch (keyword) {
+                case Server.IF_NOT_KEYWORD:
+                    knownVersion = value(tokens, i++, keyword);
+                    break;
+                case Server.PAGE_KEYWORD:
+                    mode = Mode.PAGE;
+                    offset = number(tokens, i++, keyword);
+                    limit = number(tokens, i++, keyword);
+                    break;
+                case Server.STREAM_KEYWORD:
+                    mode = Mode.STREAM;
+                    limit = number(tokens, i++, keyword);
+                    break;
+                case "":
+                    // Espaces répétés
+                    break;
+                default:
+                    throw new IllegalArgumentException("Mot-clé inconnu: " + keyword);
+            }
+        }
+        return new LoadRequest(session, knownVersion, mode, offset, Math.max(1, Math.min(limit, Server.MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * @return vrai si le mot est un des mots-clés de CHARGER
+     */
+    private static boolean isKeyword(String token) {
+        return token.equals(Server.IF_NOT_KEYWORD) || token.equals(Server.PAGE_KEYWORD) || token.equals(Server.STREAM_KEYWORD);
+    }
+
+    /**
+     * @return la valeur qui suit un mot-clé
+     */
+    private static String value(String[] tokens, int index, String keyword) {
+        if (index >= tokens.length || tokens[index].isEmpty()) {
+            throw new IllegalArgumentException(keyword + " doit être suivi d'une valeur");
+        }
+        return tokens[index];
+    }
+
+    /**
+     * @return le nombre positif ou nul qui suit un mot-clé
+     */
+    private static int number(String[] tokens, int index, String keyword) {
+        int number = Integer.parseInt(value(tokens, index, keyword));
+        if (number < 0) {
+            throw new IllegalArgumentException(keyword + " n'accepte pas de nombre négatif: " + number);
+        }
+        return number;
+    }
+}
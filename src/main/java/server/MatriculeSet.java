@@ -0,0 +1,165 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * La classe MatriculeSet garde les matricules inscrits à un cours dans un seul tableau d'entiers, par adressage
+ * ouvert (sondage linéaire), au lieu d'un HashSet de chaînes: quelques octets par inscription au lieu d'un noeud,
+ * d'une chaîne et de son tableau d'octets.
+ * Un matricule numérique (jusqu'à 9 chiffres, sans zéro en tête) est gardé tel quel; tout autre matricule est gardé
+ * par son numéro dans la table des chaînes de l'index, sous forme négative, si bien que chaque matricule retrouve
+ * exactement sa chaîne d'origine.
+ * L'ensemble n'est pas synchronisé: l'index le protège par le verrou du cours.
+ */
+class MatriculeSet {
+
+    /**
+     * Marque une case vide; aucun matricule encodé n'a cette valeur
+     */
+    final static int ABSENT = Integer.MIN_VALUE;
+
+    /**
+     * Les cases du tableau, de taille puissance de deux
+     */
+    private int[] slots;
+    /**
+     * Le nombre de matricules de l'ensemble
+     */
+    private int size;
+
+    MatriculeSet() {
+        slots = new int[8];
+        Arrays.fill(slots, ABSENT);
+    }
+
+    /**
+     * Encode un matricule
+     *
+     * @param matricule le matricule
+     * @param table     la table des matricules qui ne sont pas de simples nombres
+     * @param intern    vrai pour ajouter le matricule à la table au besoin, faux pour une simple recherche
+     * @return le matricule encodé, ou {@link #ABSENT} pour une recherche d'un matricule qui n'est pas dans la table
+     */
+    static int encode(String matricule, StringTable table, boolean intern) {
+        int length = matricule.length();
+        if (length > 0 && length <= 9 && (matricule.charAt(0) != '0' || length == 1)) {
+            int value = 0;
+            int i = 0;
+            while (i < length && matricule.charAt(i) >= '0' && matricule.charAt(i) <= '9') {
+                value = value * 10 + (matricule.charAt(i) - '0');
+                i++;
+            }
+            if (i == length) {
+                return value;
+            }
+        }
+        int id = intern ? table.intern(matricule) : table.find(matricule);
+        return id < 0 ? ABSENT : -id - 1;
+    }
+
+    /**
+     * @param value un matricule encodé par {@link #encode(String, StringTable, boolean)}
+     * @param table la table des matricules qui ne sont pas de simples nombres
+     * @return le matricule
+     */
+    static String decode(int value, StringTable table) {
+        return value >= 0 ? Integer.toString(value) : table.get(-value - 1);
+    }
+
+    /**
+     * @return la case où le matricule est rangé, ou la case vide où il serait rangé
+     */
+    private int slot(int value) {
+        int mask = slots.length - 1;
+        int i = home(value, mask);
+        while (slots[i] != ABSENT && slots[i] != value) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @return la case d'origine d'un matricule: le multiplicateur de Fibonacci puis un mélange des bits hauts
+     * répartissent les matricules consécutifs sur tout le tableau
+     */
+    private static int home(int value, int mask) {
+        int h = value * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    boolean contains(int value) {
+        return value != ABSENT && slots[slot(value)] == value;
+    }
+
+    /**
+     * @return vrai si le matricule n'était pas déjà dans l'ensemble
+     */
+    boolean add(int value) {
+        int i = slot(value);
+        if (slots[i] == value) {
+            return false;
+        }
+        slots[i] = value;
+        // Au plus 3/4 des cases sont occupées, pour que les suites de cases occupées restent courtes
+        if (++size * 4 > slots.length * 3) {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            Arrays.fill(slots, ABSENT);
+            for (int v : old) {
+                if (v != ABSENT) {
+                    slots[slot(v)] = v;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retire un matricule, puis recule les matricules suivants de la même suite de cases pour qu'ils restent
+     * trouvables sans marque de suppression
+     *
+     * @return vrai si le matricule était dans l'ensemble
+     */
+    boolean remove(int value) {
+        if (!contains(value)) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        int hole = slot(value);
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            int next = slots[i];
+            if (next == ABSENT) {
+                break;
+            }
+            int home = home(next, mask);
+            // La valeur peut combler le trou si sa case d'origine n'est pas entre le trou et sa position actuelle
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = next;
+                hole = i;
+            }
+        }
+        slots[hole] = ABSENT;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return les matricules encodés de l'ensemble, dans un ordre quelconque
+     */
+    int[] toArray() {
+        int[] values = new int[size];
+        int n = 0;
+        for (int v : slots) {
+            if (v != ABSENT) {
+                values[n++] = v;
+            }
+        }
+        return values;
+    }
+}
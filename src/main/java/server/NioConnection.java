@@ -0,0 +1,467 @@
+package server;
+
+import server.protocol.BinaryCodec;
+import server.protocol.WireFormat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connexion du mode NIO: le sélecteur découpe les octets reçus en messages binaires et les place dans
+ * une file; les commandes de la file sont traitées dans l'ordre, une à la fois, sur l'exécuteur des commandes.
+ * Les réponses sont écrites directement si le socket les accepte, sinon gardées jusqu'à ce que le sélecteur
+ * signale que le socket peut de nouveau écrire. Au-delà de {@value #MAX_PENDING_BYTES} octets gardés, la commande
+ * qui écrit attend que le client lise, pour qu'une longue réponse (CHARGER ... FLUX) ne s'accumule pas en mémoire.
+ * Dans l'autre sens, le tampon de lecture grandit au rythme des octets reçus, pas selon la longueur annoncée par le
+ * client, et le sélecteur cesse de lire le socket tant que {@value #MAX_QUEUED_FRAMES} messages attendent d'être
+ * traités: un client qui envoie plus vite que le serveur ne traite attend dans son propre tampon TCP.
+ */
+class NioConnection extends Connection {
+
+    /**
+     * Taille initiale du tampon de lecture
+     */
+    private final static int INITIAL_BUFFER_SIZE = 1024;
+    /**
+     * Nombre d'octets de réponses gardés au-delà duquel la commande qui écrit attend
+     */
+    private final static int MAX_PENDING_BYTES = 1 << 20;
+    /**
+     * Nombre de messages reçus en attente au-delà duquel le sélecteur cesse de lire le socket
+     */
+    private final static int MAX_QUEUED_FRAMES = 64;
+    /**
+     * Nombre de messages en attente sous lequel la lecture reprend
+     */
+    private final static int RESUME_QUEUED_FRAMES = MAX_QUEUED_FRAMES / 2;
+    /**
+     * Un message reçu, avec le nombre d'octets qu'il occupait dans le flux
+     *
+     * @param message le message décodé
+     * @param size    la taille du message, longueur comprise
+     */
+    private record Frame(Object message, int size) {
+    }
+
+    /**
+     * Marque la fin du flux dans la file des messages reçus
+     */
+    private final static Frame END_OF_STREAM = new Frame(null, 0);
+
+    private final Server server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ExecutorService commandExecutor;
+    private final int idleTimeoutMillis;
+    /**
+     * Les octets reçus qui ne forment pas encore un message complet (utilisé par le sélecteur seulement)
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    /**
+     * Vrai pendant que le sélecteur ne lit plus le socket parce que trop de messages attendent (modifié sous this)
+     */
+    private volatile boolean readPaused;
+    /**
+     * Vrai une fois la demande de format binaire du client reçue et acceptée
+     */
+    private boolean handshakeDone;
+    /**
+     * Les messages reçus, pas encore traités
+     */
+    private final BlockingQueue<Frame> inbound = new LinkedBlockingQueue<>();
+    /**
+     * Vrai pendant qu'un thread de l'exécuteur traite les messages de cette connexion
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+    /**
+     * Les réponses que le socket n'a pas encore acceptées (protégé par this)
+     */
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    /**
+     * Le nombre d'octets des réponses gardées (protégé par this)
+     */
+    private long pendingBytes;
+    /**
+     * Vrai si la connexion doit être fermée dès que les réponses en attente sont écrites (protégé par this)
+     */
+    private boolean closeAfterFlush;
+    /**
+     * Vrai une fois la connexion fermée (protégé par this)
+     */
+    private boolean closed;
+    /**
+     * Vrai si le client a envoyé "MAINTENIR" (utilisé par le thread qui traite les messages)
+     */
+    private boolean keepAlive;
+    /**
+     * Dernière activité de lecture, selon System.nanoTime()
+     */
+    private volatile long lastActivity = System.nanoTime();
+    /**
+     * Octets des messages reçus déjà retirés de la file
+     */
+    private volatile long bytesRead;
+    /**
+     * Octets des réponses envoyées, augmenté sous le verrou de this
+     */
+    private volatile long bytesWritten;
+
+    NioConnection(Server server, SocketChannel channel, SelectionKey key, ExecutorService commandExecutor, int idleTimeoutMillis) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.commandExecutor = commandExecutor;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Lit ce que le client a envoyé et place chaque message complet dans la file (thread du sélecteur)
+     */
+    void onReadable() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            lastActivity = System.nanoTime();
+            readBuffer.flip();
+            if (!handshakeDone) {
+                if (readBuffer.remaining() < BinaryCodec.MAGIC.length) {
+                    readBuffer.compact();
+                    return;
+                }
+                byte[] magic = new byte[BinaryCodec.MAGIC.length];
+                readBuffer.get(magic);
+                if (!Arrays.equals(magic, BinaryCodec.MAGIC)) {
+                    // Seul le format binaire est découpable en messages sans bloquer
+                    close();
+                    return;
+                }
+                handshakeDone = true;
+                bytesRead = BinaryCodec.MAGIC.length;
+                writeEncoded(BinaryCodec.MAGIC.clone());
+            }
+            boolean received = false;
+            // La taille du message incomplet au début du tampon, longueur comprise, 0 s'il n'y en a pas
+            int needed = 0;
+            while (readBuffer.hasRemaining()) {
+                int start = readBuffer.position();
+                int length = readLength();
+                if (length == -1) {
+                    break;
+                }
+                if (length > BinaryCodec.MAX_MESSAGE_LENGTH) {
+                    close();
+                    return;
+                }
+                if (readBuffer.remaining() < length) {
+                    needed = readBuffer.position() - start + length;
+                    readBuffer.position(start);
+                    break;
+                }
+                Object message = BinaryCodec.decode(readBuffer.array(), readBuffer.position(), length);
+                inbound.add(new Frame(message, readBuffer.position() - start + length));
+                readBuffer.position(readBuffer.position() + length);
+                received = true;
+            }
+            readBuffer.compact();
+            resizeReadBuffer(needed);
+            if (received) {
+                // Les messages déjà dans le tampon sont tous placés dans la file: leur taille est bornée par le tampon
+                if (inbound.size() >= MAX_QUEUED_FRAMES) {
+                    pauseReading();
+                }
+                schedule();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Agrandit le tampon de lecture quand un message incomplet le remplit, en doublant sa taille sans dépasser
+     * celle du message: la mémoire réservée reste proportionnelle aux octets réellement reçus.
+     * Un tampon agrandi vide reprend sa taille initiale.
+     *
+     * @param needed la taille du message incomplet au début du tampon, longueur comprise, 0 s'il n'y en a pas
+     */
+    private void resizeReadBuffer(int needed) {
+        if (needed > readBuffer.capacity() && !readBuffer.hasRemaining()) {
+            readBuffer.flip();
+            readBuffer = ByteBuffer.allocate((int) Math.min(needed, 2L * readBuffer.capacity())).put(readBuffer);
+        } else if (readBuffer.position() == 0 && readBuffer.capacity() > INITIAL_BUFFER_SIZE) {
+            readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Cesse de lire le socket jusqu'à ce que la file des messages reçus se vide (thread du sélecteur)
+     */
+    private synchronized void pauseReading() {
+        if (closed) {
+            return;
+        }
+        readPaused = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        // La file a pu se vider avant que readPaused soit vu par le thread qui la traite
+        if (inbound.size() <= RESUME_QUEUED_FRAMES) {
+            readPaused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Reprend la lecture du socket si elle était suspendue et que la file s'est assez vidée
+     * (thread qui retire les messages de la file)
+     */
+    private void resumeReadingIfDrained() {
+        if (!readPaused || inbound.size() > RESUME_QUEUED_FRAMES) {
+            return;
+        }
+        synchronized (this) {
+            if (!readPaused || closed) {
+                return;
+            }
+            readPaused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            key.selector().wakeup();
+        }
+    }
+
+    /**
+     * Lit la longueur en varint du prochain message
+     *
+     * @return la longueur, ou -1 si elle n'est pas encore complète (la position est alors inchangée)
+     * @throws IOException si la longueur est invalide
+     */
+    private int readLength() throws IOException {
+        int start = readBuffer.position();
+        int length = 0;
+        for (int shift = 0; shift <= 28; shift += 7) {
+            if (!readBuffer.hasRemaining()) {
+                readBuffer.position(start);
+                return -1;
+            }
+            int b = readBuffer.get();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length < 0) {
+                    break;
+                }
+                return length;
+            }
+        }
+        throw new IOException("Longueur de message invalide");
+    }
+
+    /**
+     * Confie le traitement des messages reçus à l'exécuteur, si aucun thread ne s'en occupe déjà
+     */
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            commandExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Traite les commandes reçues, dans l'ordre, jusqu'à ce que la file soit vide
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Frame frame = inbound.poll();
+                if (frame == null) {
+                    running.set(false);
+                    // Un message a pu arriver entre poll() et set(false)
+                    if (inbound.isEmpty() || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (frame == END_OF_STREAM) {
+                    return;
+                }
+                resumeReadingIfDrained();
+                bytesRead += frame.size();
+                keepAlive = server.dispatch(this, frame.message().toString(), keepAlive);
+                if (!keepAlive) {
+                    closeAfterFlush();
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    /**
+     * Écrit les réponses en attente que le socket accepte maintenant (thread du sélecteur)
+     */
+    synchronized void onWritable() {
+        try {
+            while (!pending.isEmpty()) {
+                ByteBuffer head = pending.peek();
+                pendingBytes -= channel.write(head);
+                if (pendingBytes <= MAX_PENDING_BYTES) {
+                    notifyAll();
+                }
+                if (head.hasRemaining()) {
+                    return;
+                }
+                pending.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeAfterFlush) {
+                close();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * @param now l'heure courante, selon System.nanoTime()
+     * @return vrai si la connexion n'a rien reçu depuis le délai d'inactivité et qu'aucune commande n'est en cours
+     */
+    boolean isIdle(long now) {
+        return !running.get() && now - lastActivity > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /**
+     * Attend le prochain message de la file (utilisé par les gestionnaires qui lisent un objet après leur commande)
+     */
+    @Override
+    public Object readObject() throws IOException {
+        try {
+            Frame frame = idleTimeoutMillis > 0
+                    ? inbound.poll(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                    : inbound.take();
+            if (frame == null) {
+                throw new SocketTimeoutException("Aucun message du client");
+            }
+            if (frame == END_OF_STREAM) {
+                throw new EOFException();
+            }
+            resumeReadingIfDrained();
+            bytesRead += frame.size();
+            return frame.message();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void writeObject(Object object) throws IOException {
+        writeEncoded(BinaryCodec.frame(object));
+    }
+
+    /**
+     * Écrit une réponse, ou la garde si le socket ne l'accepte pas tout de suite.
+     * Si trop d'octets sont déjà gardés, attend que le client en lise; un client qui ne lit plus rien
+     * pendant le délai d'inactivité voit sa connexion fermée.
+     * Le thread du sélecteur n'appelle cette méthode que pour la poignée de main, quand rien n'est gardé.
+     */
+    @Override
+    public synchronized void writeEncoded(byte[] payload) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        while (pendingBytes > MAX_PENDING_BYTES && !closed) {
+            long remaining = idleTimeoutMillis > 0 ? deadline - System.nanoTime() : Long.MAX_VALUE;
+            if (remaining <= 0) {
+                close();
+                throw new SocketTimeoutException("Le client ne lit plus les réponses");
+            }
+            try {
+                if (idleTimeoutMillis > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (closed) {
+            throw new IOException("Connexion fermée");
+        }
+        bytesWritten += payload.length;
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        if (pending.isEmpty()) {
+            channel.write(buffer);
+        }
+        if (buffer.hasRemaining()) {
+            pending.add(buffer);
+            pendingBytes += buffer.remaining();
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            key.selector().wakeup();
+        }
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public WireFormat getFormat() {
+        return WireFormat.BINARY;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return channel.socket().getRemoteSocketAddress();
+    }
+
+    /**
+     * Ferme la connexion dès que les réponses en attente sont écrites
+     */
+    private synchronized void closeAfterFlush() {
+        if (pending.isEmpty()) {
+            close();
+        } else {
+            closeAfterFlush = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        notifyAll();
+        server.getMetrics().connectionClosed();
+        inbound.add(END_OF_STREAM);
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // le canal est déjà inutilisable
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NioConnection[" + getRemoteAddress() + "]";
+    }
+}
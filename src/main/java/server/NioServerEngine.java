@@ -0,0 +1,218 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe NioServerEngine sert les connexions du mode NIO sans thread par client.
+ * Le thread qui appelle {@link #run(Server)} accepte les connexions et les répartit entre quelques
+ * sélecteurs; chaque sélecteur lit et écrit les messages de ses connexions sans jamais bloquer.
+ * Les messages décodés sont traités par {@link Server#dispatch(Connection, String, boolean)}
+ * sur les threads de l'exécuteur des commandes, comme dans les autres modes.
+ * À l'arrêt du serveur, {@link #stopAccepting()} ferme le canal d'écoute, puis {@link #close()} ferme les connexions
+ * restantes et les sélecteurs.
+ */
+class NioServerEngine {
+
+    /**
+     * Le serveur dont les commandes sont traitées, donné par {@link #run(Server)}: les sélecteurs ne le lisent
+     * qu'après avoir reçu une connexion acceptée par cette boucle
+     */
+    private Server server;
+    /**
+     * Le canal qui accepte les connexions, en mode bloquant
+     */
+    private final ServerSocketChannel acceptor;
+    /**
+     * Les sélecteurs, chacun sur son propre thread
+     */
+    private final Reactor[] reactors;
+    /**
+     * L'exécuteur qui traite les commandes décodées
+     */
+    private final ExecutorService commandExecutor;
+    /**
+     * Délai d'inactivité, en millisecondes, après lequel une connexion est fermée (0 pour aucun délai)
+     */
+    private final int idleTimeoutMillis;
+    /**
+     * Vrai une fois le moteur arrêté: les sélecteurs ferment leurs connexions et terminent leur boucle
+     */
+    private volatile boolean closed;
+
+    /**
+     * Ouvre le canal d'écoute et les sélecteurs
+     *
+     * @param port            le port d'écoute
+     * @param config          la configuration du serveur (file d'attente, nombre de sélecteurs, délai d'inactivité)
+     * @param commandExecutor l'exécuteur qui traite les commandes décodées
+     * @throws IOException si le canal ou un sélecteur ne peut pas être ouvert
+     */
+    NioServerEngine(int port, ServerConfig config, ExecutorService commandExecutor) throws IOException {
+        this.commandExecutor = commandExecutor;
+        this.idleTimeoutMillis = config.getIdleTimeoutMillis();
+        this.acceptor = ServerSocketChannel.open();
+        this.acceptor.bind(new InetSocketAddress(port), config.getBacklog());
+        this.reactors = new Reactor[config.getSelectorThreads()];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(Selector.open());
+            Thread thread = new Thread(reactors[i], "nio-selector-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return le port sur lequel le moteur écoute
+     */
+    int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * Accepte les connexions et les confie aux sélecteurs, à tour de rôle
+     *
+     * @param server le serveur dont les commandes sont traitées
+     */
+    void run(Server server) {
+        this.server = server;
+        int next = 0;
+        while (acceptor.isOpen()) {
+            try {
+                SocketChannel channel = acceptor.accept();
+                long acceptedAt = System.nanoTime();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                reactors[next].register(channel, acceptedAt);
+                next = (next + 1) % reactors.length;
+            } catch (IOException e) {
+                if (acceptor.isOpen()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ferme le canal d'écoute: {@link #run(Server)} retourne et plus aucune connexion n'est acceptée
+     *
+     * @throws IOException si le canal ne peut pas être fermé
+     */
+    void stopAccepting() throws IOException {
+        acceptor.close();
+    }
+
+    /**
+     * Ferme toutes les connexions et arrête les sélecteurs
+     */
+    void close() {
+        closed = true;
+        for (Reactor reactor : reactors) {
+            reactor.selector.wakeup();
+        }
+    }
+
+    /**
+     * Une connexion acceptée, pas encore enregistrée auprès d'un sélecteur
+     *
+     * @param channel    le canal de la connexion
+     * @param acceptedAt le moment de l'acceptation, selon System.nanoTime()
+     */
+    private record Accepted(SocketChannel channel, long acceptedAt) {
+    }
+
+    /**
+     * Un sélecteur et la boucle qui sert ses connexions
+     */
+    private class Reactor implements Runnable {
+
+        /**
+         * Le sélecteur des connexions de ce thread
+         */
+        private final Selector selector;
+        /**
+         * Les connexions acceptées qui attendent d'être enregistrées auprès du sélecteur
+         */
+        private final Queue<Accepted> accepted = new ConcurrentLinkedQueue<>();
+
+        Reactor(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Confie une connexion acceptée à ce sélecteur
+         *
+         * @param channel    le canal de la connexion
+         * @param acceptedAt le moment de l'acceptation, selon System.nanoTime()
+         */
+        void register(SocketChannel channel, long acceptedAt) {
+            accepted.add(new Accepted(channel, acceptedAt));
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastIdleCheck = System.nanoTime();
+            while (!closed) {
+                try {
+                    selector.select(1000);
+                    Accepted next;
+                    while ((next = accepted.poll()) != null) {
+                        SelectionKey key = next.channel().register(selector, SelectionKey.OP_READ);
+                        server.getMetrics().connectionOpened(System.nanoTime() - next.acceptedAt());
+                        key.attach(new NioConnection(server, next.channel(), key, commandExecutor, idleTimeoutMillis));
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                    long now = System.nanoTime();
+                    if (idleTimeoutMillis > 0 && now - lastIdleCheck > TimeUnit.SECONDS.toNanos(1)) {
+                        lastIdleCheck = now;
+                        for (SelectionKey key : selector.keys()) {
+                            NioConnection connection = (NioConnection) key.attachment();
+                            if (connection != null && connection.isIdle(now)) {
+                                connection.close();
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            // Seul ce thread parcourt les clés du sélecteur
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection connection) {
+                    connection.close();
+                }
+            }
+            Accepted next;
+            while ((next = accepted.poll()) != null) {
+                try {
+                    next.channel().close();
+                } catch (IOException e) {
+                    // la connexion est déjà inutilisable
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import server.protocol.WireFormat;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+/**
+ * Connexion qui échange des objets Serializable avec ObjectInputStream et ObjectOutputStream (format d'origine)
+ */
+public class ObjectStreamConnection extends Connection {
+
+    /**
+     * Le socket du client
+     */
+    private final Socket socket;
+    /**
+     * Flux d'entrée permettant de lire les objets envoyés par le client
+     */
+    private final ObjectInputStream objectInputStream;
+    /**
+     * Flux de sortie permettant d'envoyer les objets au client
+     */
+    private final ObjectOutputStream objectOutputStream;
+    /**
+     * Flux d'entrée du socket, qui compte les octets lus
+     */
+    private final CountingInputStream rawInputStream;
+    /**
+     * Flux de sortie brut (tamponné) du socket, pour écrire des objets déjà sérialisés
+     */
+    private final CountingOutputStream rawOutputStream;
+
+    /**
+     * Ouvre les flux d'objets sur le socket d'un client
+     *
+     * @param socket le socket du client
+     * @param in     le flux d'entrée du socket, positionné au début de l'en-tête du client
+     * @param out    le flux de sortie tamponné du socket
+     * @throws IOException si l'en-tête du flux du client ne peut pas être lu
+     */
+    ObjectStreamConnection(Socket socket, CountingInputStream in, CountingOutputStream out) throws IOException {
+        this.socket = socket;
+        this.rawInputStream = in;
+        this.objectInputStream = new ObjectInputStream(in);
+        this.rawOutputStream = out;
+        this.objectOutputStream = new ObjectOutputStream(rawOutputStream);
+        this.objectOutputStream.flush();
+    }
+
+    @Override
+    public Object readObject() throws IOException, ClassNotFoundException {
+        return objectInputStream.readObject();
+    }
+
+    @Override
+    public void writeObject(Object object) throws IOException {
+        objectOutputStream.writeObject(object);
+        objectOutputStream.flush();
+    }
+
+    /**
+     * Envoie un objet déjà sérialisé sans en-tête de flux.
+     * Un TC_RESET est d'abord écrit pour que le lecteur reparte d'une table de références vide,
+     * comme celle qui a servi à encoder l'objet.
+     *
+     * @param payload les octets de l'objet, terminés par un TC_RESET
+     * @throws IOException s'il y a une erreur d'écriture
+     */
+    @Override
+    public void writeEncoded(byte[] payload) throws IOException {
+        objectOutputStream.reset();
+        objectOutputStream.flush();
+        rawOutputStream.write(payload);
+        rawOutputStream.flush();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return rawInputStream.getCount();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return rawOutputStream.getCount();
+    }
+
+    @Override
+    public WireFormat getFormat() {
+        return WireFormat.JAVA_SERIALIZATION;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            objectOutputStream.close();
+            objectInputStream.close();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return socket.toString();
+    }
+}
@@ -0,0 +1,294 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La classe RegistrationIndex garde en mémoire les matricules inscrits à chaque cours, par session et code de cours.
+ * L'index est reconstruit à partir de inscription.txt au démarrage, puis mis à jour à chaque inscription acceptée,
+ * ce qui permet de refuser un doublon ou une inscription à un cours complet en temps constant, sans relire le fichier.
+ * Les vérifications d'un même cours sont faites sous le verrou de ce cours seulement, donc deux inscriptions
+ * concurrentes à des cours différents ne s'attendent jamais.
+ * Les inscrits d'un cours sont des entiers dans un {@link MatriculeSet}, pas des chaînes: un million d'inscriptions
+ * tiennent en quelques mégaoctets. Les sessions et les codes de cours des clés passent par une table de chaînes,
+ * donc chaque valeur n'est gardée qu'une fois.
+ */
+public class RegistrationIndex {
+
+    /**
+     * Capacité qui signifie qu'un cours n'a pas de limite
+     */
+    public final static int UNLIMITED = 0;
+
+    /**
+     * Le résultat d'une demande de place dans un cours
+     */
+    public enum Result {
+        /**
+         * La place est réservée au matricule
+         */
+        ACCEPTED,
+        /**
+         * Le matricule est déjà inscrit à ce cours
+         */
+        DUPLICATE,
+        /**
+         * Le cours a atteint sa capacité
+         */
+        FULL
+    }
+
+    /**
+     * Identifie un cours d'une session
+     *
+     * @param session la session
+     * @param code    le code du cours
+     */
+    private record CourseKey(String session, String code) {
+    }
+
+    /**
+     * Les inscrits d'un cours et sa capacité (protégés par l'objet lui-même)
+     */
+    private static class CourseRegistrations {
+
+        final MatriculeSet matricules = new MatriculeSet();
+        int capacity;
+
+        CourseRegistrations(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Les inscrits de chaque cours
+     */
+    private final Map<CourseKey, CourseRegistrations> courses = new ConcurrentHashMap<>();
+    /**
+     * La capacité des cours qui n'ont pas de capacité propre
+     */
+    private final int defaultCapacity;
+    /**
+     * Les sessions et les codes des cours de l'index
+     */
+    private final StringTable courseStrings = new StringTable();
+    /**
+     * Les matricules qui ne sont pas de simples nombres
+     */
+    private final StringTable matriculeStrings = new StringTable();
+
+    /**
+     * Crée un index vide
+     *
+     * @param defaultCapacity la capacité des cours, {@link #UNLIMITED} pour aucune limite
+     */
+    public RegistrationIndex(int defaultCapacity) {
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    /**
+     * Reconstruit l'index à partir du fichier des inscriptions, s'il existe, avec {@link RegistrationLoader}.
+     * Chaque ligne contient la session, le code du cours et le matricule, suivis des autres champs du formulaire,
+     * séparés par une tabulation. Les capacités ne sont pas vérifiées pour les inscriptions déjà acceptées.
+     *
+     * @param file            le fichier des inscriptions
+     * @param defaultCapacity la capacité des cours, {@link #UNLIMITED} pour aucune limite
+     * @return l'index
+     * @throws IOException s'il y a une erreur de lecture
+     */
+    public static RegistrationIndex load(Path file, int defaultCapacity) throws IOException {
+        return new RegistrationLoader(file, null).load(defaultCapacity);
+    }
+
+    /**
+     * Ajoute une inscription déjà acceptée à l'index, sans vérifier la capacité
+     *
+     * @param session   la session
+     * @param code      le code du cours
+     * @param matricule le matricule de l'étudiant
+     * @return vrai si l'inscription n'était pas déjà dans l'index
+     */
+    boolean add(String session, String code, String matricule) {
+        CourseRegistrations course = course(session, code);
+        int value = MatriculeSet.encode(matricule, matriculeStrings, true);
+        synchronized (course) {
+            return course.matricules.add(value);
+        }
+    }
+
+    /**
+     * Reçoit les inscrits de chaque cours, par exemple pour écrire un point de reprise
+     */
+    @FunctionalInterface
+    interface CourseVisitor {
+        void visit(String session, String code, String[] matricules) throws IOException;
+    }
+
+    /**
+     * Parcourt les cours de l'index; les inscrits de chaque cours sont copiés sous le verrou du cours
+     *
+     * @param visitor reçoit les inscrits de chaque cours
+     * @throws IOException si le visiteur échoue
+     */
+    void forEachCourse(CourseVisitor visitor) throws IOException {
+        for (Map.Entry<CourseKey, CourseRegistrations> entry : courses.entrySet()) {
+            int[] values;
+            synchronized (entry.getValue()) {
+                values = entry.getValue().matricules.toArray();
+            }
+            String[] matricules = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                matricules[i] = MatriculeSet.decode(values[i], matriculeStrings);
+            }
+            visitor.visit(entry.getKey().session(), entry.getKey().code(), matricules);
+        }
+    }
+
+    /**
+     * Lit les capacités propres à certains cours, si le fichier existe.
+     * Chaque ligne contient le code du cours, la session et la capacité, séparés par une tabulation.
+     *
+     * @param file le fichier des capacités
+     * @throws IOException s'il y a une erreur de lecture
+     */
+    public void loadCapacities(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length == 3) {
+                    try {
+                        setCapacity(parts[1].trim(), parts[0].trim(), Integer.parseInt(parts[2].trim()));
+                    } catch (NumberFormatException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixe la capacité d'un cours
+     *
+     * @param session  la session
+     * @param code     le code du cours
+     * @param capacity la capacité, {@link #UNLIMITED} pour aucune limite
+     */
+    public void setCapacity(String session, String code, int capacity) {
+        CourseRegistrations course = course(session, code);
+        synchronized (course) {
+            course.capacity = capacity;
+        }
+    }
+
+    /**
+     * Réserve une place dans un cours pour un matricule, si le matricule n'y est pas déjà et que le cours n'est pas complet.
+     * Un matricule qui n'est pas un simple nombre n'est ajouté à la table des chaînes que si la place est réservée.
+     *
+     * @param session   la session
+     * @param code      le code du cours
+     * @param matricule le matricule de l'étudiant
+     * @return le résultat de la demande
+     */
+    public Result reserve(String session, String code, String matricule) {
+        CourseRegistrations course = course(session, code);
+        synchronized (course) {
+            // Une simple recherche: un matricule refusé ne doit pas faire grandir la table des chaînes
+            int value = MatriculeSet.encode(matricule, matriculeStrings, false);
+            if (course.matricules.contains(value)) {
+                return Result.DUPLICATE;
+            }
+            if (course.capacity != UNLIMITED && course.matricules.size() >= course.capacity) {
+                return Result.FULL;
+            }
+            if (value == MatriculeSet.ABSENT) {
+                value = MatriculeSet.encode(matricule, matriculeStrings, true);
+            }
+            course.matricules.add(value);
+            return Result.ACCEPTED;
+        }
+    }
+
+    /**
+     * Libère une place réservée qui n'a finalement pas pu être enregistrée
+     *
+     * @param session   la session
+     * @param code      le code du cours
+     * @param matricule le matricule de l'étudiant
+     */
+    public void release(String session, String code, String matricule) {
+        CourseRegistrations course = courses.get(new CourseKey(session, code));
+        if (course != null) {
+            int value = MatriculeSet.encode(matricule, matriculeStrings, false);
+            synchronized (course) {
+                course.matricules.remove(value);
+            }
+        }
+    }
+
+    /**
+     * @param session   la session
+     * @param code      le code du cours
+     * @param matricule le matricule de l'étudiant
+     * @return vrai si le matricule est inscrit au cours
+     */
+    public boolean isRegistered(String session, String code, String matricule) {
+        CourseRegistrations course = courses.get(new CourseKey(session, code));
+        if (course == null) {
+            return false;
+        }
+        int value = MatriculeSet.encode(matricule, matriculeStrings, false);
+        synchronized (course) {
+            return course.matricules.contains(value);
+        }
+    }
+
+    /**
+     * @param session la session
+     * @param code    le code du cours
+     * @return le nombre d'inscrits au cours
+     */
+    public int getRegistrationCount(String session, String code) {
+        CourseRegistrations course = courses.get(new CourseKey(session, code));
+        if (course == null) {
+            return 0;
+        }
+        synchronized (course) {
+            return course.matricules.size();
+        }
+    }
+
+    /**
+     * @return le nombre total d'inscriptions dans l'index
+     */
+    public long size() {
+        long size = 0;
+        for (CourseRegistrations course : courses.values()) {
+            synchronized (course) {
+                size += course.matricules.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return les inscrits d'un cours, créés au premier besoin avec la capacité par défaut
+     */
+    private CourseRegistrations course(String session, String code) {
+        CourseRegistrations course = courses.get(new CourseKey(session, code));
+        if (course != null) {
+            return course;
+        }
+        // La clé gardée par l'index pointe vers les copies uniques de la table, pas vers les chaînes de l'appelant
+        return courses.computeIfAbsent(new CourseKey(courseStrings.canonical(session), courseStrings.canonical(code)),
+                key -> new CourseRegistrations(defaultCapacity));
+    }
+}
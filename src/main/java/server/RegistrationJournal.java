@@ -0,0 +1,272 @@
+package server;
+
+import server.models.RegistrationForm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe RegistrationJournal ajoute les lignes d'inscription à la fin du fichier inscription.txt.
+ * Un seul thread écrit dans le fichier: il vide la file des lignes en attente, les écrit en une seule
+ * écriture puis force le lot sur le disque avec un seul appel à force() (group commit).
+ * Le futur retourné par {@link #append(String)} n'est complété qu'une fois le lot de la ligne durable.
+ * Une ligne incomplète à la fin du fichier, laissée par un arrêt pendant une écriture, est retirée à l'ouverture;
+ * un lot dont l'écriture ou le force() échoue est retiré du fichier avant que ses futurs soient mis en erreur,
+ * pour que la ligne suivante ne soit jamais collée à un morceau de ligne.
+ */
+public class RegistrationJournal implements RegistrationLog {
+
+    /**
+     * Nombre maximal de lignes par lot par défaut
+     */
+    public final static int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Une ligne en attente d'écriture
+     *
+     * @param line    la ligne à ajouter, fin de ligne comprise
+     * @param durable complété quand la ligne est sur le disque
+     */
+    private record Entry(String line, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * Le fichier, écrit à la fin par le seul thread d'écriture
+     */
+    private final FileChannel channel;
+    /**
+     * La taille du fichier à la fin du dernier lot forcé: tout ce qui suit n'a pas été confirmé
+     */
+    private long durableSize;
+    /**
+     * Les lignes en attente d'écriture
+     */
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    /**
+     * Nombre maximal de lignes écrites par lot
+     */
+    private final int maxBatchSize;
+    /**
+     * Temps maximal, en nanosecondes, pendant lequel un lot attend d'autres lignes avant d'être écrit
+     */
+    private final long maxLatencyNanos;
+    /**
+     * Le thread qui écrit les lots
+     */
+    private final Thread writer;
+    /**
+     * Vrai une fois que le journal n'accepte plus de lignes
+     */
+    private volatile boolean closed;
+    /**
+     * Rend la vérification de {@link #closed} et l'ajout à la file atomiques face à {@link #close()}: une ligne
+     * acceptée est toujours dans la file avant que le thread d'écriture puisse voir le journal fermé
+     */
+    private final Object appendLock = new Object();
+
+    /**
+     * Ouvre le journal avec la taille de lot par défaut, sans attente supplémentaire:
+     * les lignes arrivées pendant l'écriture du lot précédent forment le lot suivant
+     *
+     * @param file le fichier des inscriptions
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public RegistrationJournal(Path file) throws IOException {
+        this(file, DEFAULT_BATCH_SIZE, 0);
+    }
+
+    /**
+     * Ouvre le journal et retire une ligne incomplète à la fin du fichier
+     *
+     * @param file             le fichier des inscriptions
+     * @param maxBatchSize     le nombre maximal de lignes par lot
+     * @param maxLatencyMillis le temps maximal pendant lequel un lot attend d'autres lignes, 0 pour ne pas attendre
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public RegistrationJournal(Path file, int maxBatchSize, long maxLatencyMillis) throws IOException {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("La taille des lots doit être positive: " + maxBatchSize);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            durableSize = RegistrationLoader.lastLineEnd(channel, 0, size);
+            if (durableSize < size) {
+                System.out.println("Fichier des inscriptions tronqué de " + size + " à " + durableSize + " octets");
+                channel.truncate(durableSize);
+                channel.force(false);
+            }
+            channel.position(durableSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.writer = new Thread(this::writeLoop, "registration-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Ajoute une ligne au journal
+     *
+     * @param line la ligne à ajouter, fin de ligne comprise
+     * @return un futur complété quand la ligne est durable, ou en erreur si elle n'a pas pu être écrite
+     */
+    public CompletableFuture<Void> append(String line) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (appendLock) {
+            if (closed) {
+                durable.completeExceptionally(new IllegalStateException("Le journal des inscriptions est fermé"));
+            } else {
+                queue.add(new Entry(line, durable));
+            }
+        }
+        return durable;
+    }
+
+    /**
+     * Ajoute les lignes de plusieurs inscriptions au journal, en une seule écriture
+     *
+     * @param forms les formulaires acceptés
+     * @return un futur complété quand toutes les lignes sont durables, ou en erreur si elles n'ont pas pu être écrites
+     */
+    @Override
+    public CompletableFuture<Void> append(List<RegistrationForm> forms) {
+        StringBuilder lines = new StringBuilder(forms.size() * 64);
+        for (RegistrationForm form : forms) {
+            lines.append(line(form));
+        }
+        return append(lines.toString());
+    }
+
+    /**
+     * Construit la ligne de inscription.txt d'un formulaire: session, code du cours, matricule, prénom, nom et courriel
+     * séparés par une tabulation
+     *
+     * @param form le formulaire d'inscription
+     * @return la ligne, fin de ligne comprise
+     */
+    static String line(RegistrationForm form) {
+        return line(form.getCourse().getSession(), form.getCourse().getCode(), form.getMatricule(), form.getPrenom(), form.getNom(), form.getEmail());
+    }
+
+    /**
+     * Construit une ligne de inscription.txt à partir de ses champs
+     *
+     * @return la ligne, fin de ligne comprise
+     */
+    static String line(String session, String code, String matricule, String prenom, String nom, String email) {
+        return session + "\t" + code + "\t" + matricule + "\t" + prenom + "\t" + nom + "\t" + email + "\n";
+    }
+
+    /**
+     * Boucle du thread d'écriture: forme les lots et les rend durables jusqu'à la fermeture du journal
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                // la fermeture attend la fin de la boucle; on continue à vider la file
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Écrit un lot en une seule écriture, le force sur le disque puis complète les futurs des lignes
+     *
+     * @param batch les lignes du lot
+     */
+    private void commit(List<Entry> batch) {
+        StringBuilder lines = new StringBuilder(batch.size() * 64);
+        for (Entry entry : batch) {
+            lines.append(entry.line());
+        }
+        try {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            durableSize = channel.position();
+            for (Entry entry : batch) {
+                entry.durable().complete(null);
+            }
+        } catch (IOException e) {
+            discardUnconfirmed();
+            for (Entry entry : batch) {
+                entry.durable().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Retire du fichier ce qu'un lot en échec a pu y écrire: ses lignes ne sont pas confirmées, et la ligne suivante
+     * ne doit pas être collée à un morceau de ligne
+     */
+    private void discardUnconfirmed() {
+        try {
+            channel.truncate(durableSize);
+            channel.position(durableSize);
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Arrête d'accepter des lignes, écrit celles qui sont en attente puis ferme le fichier
+     *
+     * @throws IOException si le fichier ne peut pas être fermé
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Plus aucune ligne ne peut être ajoutée; il n'en reste que si l'attente du thread d'écriture a été interrompue
+        Entry late;
+        while ((late = queue.poll()) != null) {
+            late.durable().completeExceptionally(new IllegalStateException("Le journal des inscriptions est fermé"));
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,374 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * La classe RegistrationLoader reconstruit l'index des inscriptions à partir de inscription.txt.
+ * Le fichier est projeté en mémoire et découpé en morceaux qui finissent sur une fin de ligne; les morceaux sont
+ * analysés en parallèle, directement dans les octets projetés, sans créer de ligne ni de tableau de champs.
+ * Un point de reprise facultatif garde l'index et la position de la dernière ligne analysée: au redémarrage,
+ * seules les lignes ajoutées depuis sont analysées.
+ */
+public class RegistrationLoader {
+
+    /**
+     * Taille maximale, en octets, d'un morceau analysé par un thread
+     */
+    public final static int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    /**
+     * Identifie un fichier de point de reprise ("UDMI")
+     */
+    private final static int CHECKPOINT_MAGIC = 0x55444D49;
+    /**
+     * Version du format du point de reprise
+     */
+    private final static int CHECKPOINT_VERSION = 1;
+    /**
+     * Nombre d'octets, avant la position du point de reprise, qui doivent être identiques dans le fichier
+     */
+    private final static int CHECKPOINT_TAIL = 4096;
+
+    /**
+     * Le fichier des inscriptions
+     */
+    private final Path file;
+    /**
+     * Le fichier du point de reprise, null pour toujours tout analyser
+     */
+    private final Path checkpoint;
+    /**
+     * Taille maximale d'un morceau
+     */
+    private final int chunkSize;
+    /**
+     * Nombre de threads d'analyse
+     */
+    private final int threads;
+    /**
+     * Position de la fin de la dernière ligne complète analysée par {@link #load(int)}
+     */
+    private long loadedOffset;
+    /**
+     * Nombre d'octets analysés par {@link #load(int)} (ceux du point de reprise ne sont pas comptés)
+     */
+    private long parsedBytes;
+
+    /**
+     * @param file       le fichier des inscriptions
+     * @param checkpoint le fichier du point de reprise, null pour ne pas en utiliser
+     */
+    public RegistrationLoader(Path file, Path checkpoint) {
+        this(file, checkpoint, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param file       le fichier des inscriptions
+     * @param checkpoint le fichier du point de reprise, null pour ne pas en utiliser
+     * @param chunkSize  la taille maximale d'un morceau analysé par un thread
+     * @param threads    le nombre de threads d'analyse
+     */
+    public RegistrationLoader(Path file, Path checkpoint, int chunkSize, int threads) {
+        this.file = file;
+        this.checkpoint = checkpoint;
+        this.chunkSize = chunkSize;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Reconstruit l'index: reprend le point de reprise s'il correspond encore au fichier, puis analyse le reste
+     *
+     * @param defaultCapacity la capacité des cours, {@link RegistrationIndex#UNLIMITED} pour aucune limite
+     * @return l'index
+     * @throws IOException s'il y a une erreur de lecture
+     */
+    public RegistrationIndex load(int defaultCapacity) throws IOException {
+        RegistrationIndex index = new RegistrationIndex(defaultCapacity);
+        loadedOffset = 0;
+        parsedBytes = 0;
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = restoreCheckpoint(channel, size, index);
+            if (start < 0) {
+                // Point de reprise absent ou périmé: on repart d'un index vide
+                index = new RegistrationIndex(defaultCapacity);
+                start = 0;
+            }
+            loadedOffset = parse(channel, start, size, index);
+            parsedBytes = loadedOffset - start;
+        }
+        return index;
+    }
+
+    /**
+     * @return la position de la fin de la dernière ligne complète analysée par le dernier appel à {@link #load(int)}
+     */
+    public long getLoadedOffset() {
+        return loadedOffset;
+    }
+
+    /**
+     * @return le nombre d'octets du fichier analysés par le dernier appel à {@link #load(int)}
+     */
+    public long getParsedBytes() {
+        return parsedBytes;
+    }
+
+    /**
+     * Analyse les lignes complètes entre deux positions du fichier, en morceaux parallèles
+     *
+     * @return la position de la fin de la dernière ligne complète
+     */
+    private long parse(FileChannel channel, long start, long end, RegistrationIndex index) throws IOException {
+        end = lastLineEnd(channel, start, end);
+        if (end <= start) {
+            return start;
+        }
+        List<long[]> chunks = new ArrayList<>();
+        long chunkStart = start;
+        long target = Math.max(1, Math.min(chunkSize, (end - start + threads - 1) / threads));
+        while (chunkStart < end) {
+            long chunkEnd = chunkStart + target >= end ? end : nextLineStart(channel, chunkStart + target, end);
+            chunks.add(new long[]{chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        if (chunks.size() == 1 || threads == 1) {
+            for (long[] chunk : chunks) {
+                parseChunk(channel, chunk[0], chunk[1], index);
+            }
+            return end;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                tasks.add(() -> {
+                    parseChunk(channel, chunk[0], chunk[1], index);
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Chargement des inscriptions interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erreur de lecture des inscriptions", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return end;
+    }
+
+    /**
+     * Analyse un morceau projeté en mémoire. Chaque ligne contient la session, le code du cours et le matricule,
+     * suivis des autres champs du formulaire, séparés par une tabulation; seuls les trois premiers sont décodés.
+     */
+    private static void parseChunk(FileChannel channel, long start, long end, RegistrationIndex index) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+        byte[] scratch = new byte[256];
+        int[] tabs = new int[3];
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int fields = 0;
+            int i = lineStart;
+            byte b;
+            while (i < limit && (b = buffer.get(i)) != '\n') {
+                if (b == '\t' && fields < tabs.length) {
+                    tabs[fields++] = i;
+                }
+                i++;
+            }
+            if (fields >= 2) {
+                int matriculeEnd = fields == 3 ? tabs[2] : i;
+                String session = decode(buffer, lineStart, tabs[0], scratch);
+                String code = decode(buffer, tabs[0] + 1, tabs[1], scratch);
+                String matricule = decode(buffer, tabs[1] + 1, matriculeEnd, scratch);
+                index.add(session, code, matricule);
+            }
+            lineStart = i + 1;
+        }
+    }
+
+    /**
+     * Décode un champ UTF-8 sans ses espaces de début et de fin (retour de chariot compris)
+     */
+    private static String decode(ByteBuffer buffer, int from, int to, byte[] scratch) {
+        while (from < to && buffer.get(from) <= ' ' && buffer.get(from) >= 0) {
+            from++;
+        }
+        while (to > from && buffer.get(to - 1) <= ' ' && buffer.get(to - 1) >= 0) {
+            to--;
+        }
+        int length = to - from;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(from, bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return la position qui suit la première fin de ligne trouvée à partir d'une position, ou la fin si aucune
+     */
+    private static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        while (position < end) {
+            window.clear();
+            window.limit((int) Math.min(window.capacity(), end - position));
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * @return la position qui suit la dernière fin de ligne avant la fin, ou le début s'il n'y en a aucune
+     */
+    static long lastLineEnd(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long position = end;
+        while (position > start) {
+            int length = (int) Math.min(window.capacity(), position - start);
+            window.clear();
+            window.limit(length);
+            channel.read(window, position - length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (window.get(i) == '\n') {
+                    return position - length + i + 1;
+                }
+            }
+            position -= length;
+        }
+        return start;
+    }
+
+    /**
+     * Calcule l'empreinte des octets qui précèdent une position du fichier, pour reconnaître le même fichier
+     */
+    private static long fingerprint(FileChannel channel, long offset) throws IOException {
+        int length = (int) Math.min(CHECKPOINT_TAIL, offset);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, offset - length + tail.position()) < 0) {
+                throw new IOException("Fin du fichier des inscriptions inattendue");
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(tail.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Charge le point de reprise dans l'index s'il correspond encore au début du fichier
+     *
+     * @return la position à partir de laquelle analyser le fichier, ou -1 si le point de reprise n'est pas utilisable
+     */
+    private long restoreCheckpoint(FileChannel channel, long size, RegistrationIndex index) {
+        if (checkpoint == null || !Files.exists(checkpoint)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint), 1 << 16))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+                return -1;
+            }
+            long offset = in.readLong();
+            long crc = in.readLong();
+            if (offset > size || fingerprint(channel, offset) != crc) {
+                // Le fichier a été remplacé ou tronqué depuis le point de reprise
+                return -1;
+            }
+            while (in.readBoolean()) {
+                String session = in.readUTF();
+                String code = in.readUTF();
+                int count = in.readInt();
+                for (int m = 0; m < count; m++) {
+                    index.add(session, code, in.readUTF());
+                }
+            }
+            return offset;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Écrit le point de reprise: l'index et la position du fichier qu'il couvre.
+     * Le point de reprise est écrit à côté, forcé sur le disque puis renommé, donc un arrêt pendant l'écriture laisse
+     * l'ancien intact.
+     * Au redémarrage, l'index du point de reprise est cru tel quel: il doit contenir exactement les inscriptions du
+     * fichier. Une place réservée mais pas encore écrite, ou rendue après un échec du journal, y deviendrait une
+     * inscription fantôme (doublon refusé, place occupée). Le point de reprise doit donc être écrit quand aucune
+     * inscription n'est en cours: au démarrage avant d'accepter des connexions, ou à l'arrêt une fois les commandes
+     * terminées.
+     *
+     * @param index  l'index, qui contient exactement les inscriptions du fichier jusqu'à la position
+     * @param offset la fin de la dernière ligne complète couverte par l'index
+     * @throws IOException si le point de reprise ne peut pas être écrit
+     */
+    public void writeCheckpoint(RegistrationIndex index, long offset) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        long crc;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            crc = fingerprint(channel, offset);
+        }
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(offset);
+            out.writeLong(crc);
+            // Chaque cours est précédé de "vrai"; "faux" marque la fin
+            index.forEachCourse((session, code, matricules) -> {
+                out.writeBoolean(true);
+                out.writeUTF(session);
+                out.writeUTF(code);
+                out.writeInt(matricules.length);
+                for (String matricule : matricules) {
+                    out.writeUTF(matricule);
+                }
+            });
+            out.writeBoolean(false);
+            out.flush();
+            // Sur le disque avant le renommage: sinon un arrêt pourrait laisser un point de reprise vide ou incomplet
+            channel.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,31 @@
+package server;
+
+import server.models.RegistrationForm;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Un journal qui rend les inscriptions acceptées durables avant que le serveur ne les confirme:
+ * {@link RegistrationJournal} écrit directement les lignes de inscription.txt, {@link RegistrationWal} écrit
+ * un journal binaire qui est ensuite compacté dans inscription.txt.
+ */
+public interface RegistrationLog extends AutoCloseable {
+
+    /**
+     * Ajoute des inscriptions au journal
+     *
+     * @param forms les formulaires acceptés, écrits dans l'ordre
+     * @return un futur complété quand toutes les inscriptions sont durables, ou en erreur si elles n'ont pas pu être écrites
+     */
+    CompletableFuture<Void> append(List<RegistrationForm> forms);
+
+    /**
+     * Arrête d'accepter des inscriptions, écrit celles qui sont en attente puis ferme le journal
+     *
+     * @throws IOException si le journal ne peut pas être fermé
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,736 @@
+package server;
+
+import server.models.RegistrationForm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * La classe RegistrationWal est le journal binaire des inscriptions (write-ahead log).
+ * Chaque formulaire accepté devient un enregistrement: sa longueur, la somme CRC32 de son contenu, puis la session,
+ * le code du cours, le matricule, le prénom, le nom et le courriel. Les enregistrements sont ajoutés au segment actif
+ * du dossier du journal; une fois assez grand, il est fermé et un nouveau segment le remplace. Un seul thread écrit
+ * et force les enregistrements selon la {@link FsyncPolicy}, et le futur retourné par {@link #append(List)} n'est
+ * complété qu'une fois les enregistrements forcés sur le disque.
+ * <p>
+ * Les segments fermés sont compactés périodiquement dans l'instantané inscription.txt: leurs enregistrements y sont
+ * ajoutés en lignes, le fichier "compaction" retient le dernier segment compacté et la taille de l'instantané, puis
+ * les segments sont supprimés. Le fichier de compaction est écrit dès l'ouverture du journal et n'est jamais retiré
+ * par celui-ci: au démarrage, l'instantané est toujours ramené à la taille qu'il indique (une compaction interrompue
+ * est refaite au lieu d'être ajoutée une seconde fois), les segments restants sont relus dans l'index par
+ * {@link #recover(RegistrationIndex)}, et un enregistrement incomplet ou corrompu à la fin d'un segment est tronqué:
+ * il n'a jamais été confirmé. Un serveur qui écrit inscription.txt sans le journal binaire doit d'abord le détacher
+ * avec {@link #detach(Path)}.
+ */
+public class RegistrationWal implements RegistrationLog {
+
+    /**
+     * Taille d'un segment au-delà de laquelle il est remplacé par défaut
+     */
+    public final static long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    /**
+     * Taille maximale du contenu d'un enregistrement: une longueur plus grande vient d'un en-tête corrompu
+     */
+    private final static int MAX_RECORD_SIZE = 1 << 20;
+    /**
+     * Identifie un segment du journal ("WAL1")
+     */
+    private final static int SEGMENT_MAGIC = 0x57414C31;
+    private final static int SEGMENT_VERSION = 1;
+    /**
+     * Taille de l'en-tête d'un segment: identifiant et version
+     */
+    private final static int SEGMENT_HEADER = 8;
+    /**
+     * Taille de l'en-tête d'un enregistrement: longueur et somme CRC32 du contenu
+     */
+    private final static int RECORD_HEADER = 8;
+    /**
+     * Identifie le fichier de compaction ("WALC")
+     */
+    private final static int MANIFEST_MAGIC = 0x57414C43;
+    private final static String MANIFEST = "compaction";
+
+    /**
+     * Des enregistrements en attente d'écriture
+     *
+     * @param records les enregistrements encodés, en-têtes compris
+     * @param durable complété quand les enregistrements sont sur le disque
+     */
+    private record Entry(byte[][] records, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * Reçoit les champs de chaque enregistrement valide d'un segment
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(String session, String code, String matricule, String prenom, String nom, String email) throws IOException;
+    }
+
+    /**
+     * Le dossier des segments
+     */
+    private final Path directory;
+    /**
+     * L'instantané dans lequel les segments sont compactés (inscription.txt)
+     */
+    private final Path snapshot;
+    private final FsyncPolicy policy;
+    /**
+     * Nombre maximal d'entrées écrites par lot
+     */
+    private final int maxBatchSize;
+    /**
+     * Temps maximal, en nanosecondes, pendant lequel un lot attend d'autres entrées (politique GROUP)
+     */
+    private final long maxLatencyNanos;
+    /**
+     * Intervalle, en nanosecondes, entre deux appels à force() (politique INTERVAL)
+     */
+    private final long fsyncIntervalNanos;
+    private final long segmentSize;
+    private final long compactionIntervalMillis;
+    /**
+     * Les entrées en attente d'écriture
+     */
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    /**
+     * Réveille le thread de compaction à la fermeture
+     */
+    private final Object compactionSignal = new Object();
+    /**
+     * Le thread qui écrit les enregistrements, démarré par {@link #recover(RegistrationIndex)}
+     */
+    private Thread writer;
+    /**
+     * Le thread qui compacte les segments fermés, démarré par {@link #recover(RegistrationIndex)}
+     */
+    private Thread compactor;
+    /**
+     * Le segment actif, ouvert en écriture par le thread d'écriture
+     */
+    private FileChannel active;
+    /**
+     * Le numéro du segment actif: les segments de numéro inférieur sont fermés et peuvent être compactés
+     */
+    private volatile long activeSegment;
+    /**
+     * La taille écrite du segment actif
+     */
+    private long activeSize;
+    /**
+     * La taille du segment actif à la fin du dernier ajout forcé: tout ce qui suit n'a pas été confirmé
+     */
+    private long durableSize;
+    /**
+     * Le numéro du dernier segment compacté dans l'instantané
+     */
+    private long compactedSegment;
+    /**
+     * La taille de l'instantané après la dernière compaction
+     */
+    private long snapshotSize;
+    /**
+     * Vrai une fois que le journal n'accepte plus d'inscriptions
+     */
+    private volatile boolean closed;
+    /**
+     * Rend la vérification de {@link #closed} et l'ajout à la file atomiques face à {@link #close()}; distinct du
+     * moniteur de l'objet, que la compaction garde longtemps
+     */
+    private final Object appendLock = new Object();
+
+    /**
+     * Ouvre le dossier du journal et répare l'instantané: ce qu'une compaction interrompue y a ajouté, ou une ligne
+     * incomplète laissée par le journal texte, est retiré. Les segments ne sont relus que par
+     * {@link #recover(RegistrationIndex)}, après le chargement de l'instantané dans l'index.
+     *
+     * @param directory le dossier des segments, créé au besoin
+     * @param snapshot  l'instantané inscription.txt
+     * @param config    la politique de synchronisation, la taille des lots et des segments et l'intervalle de compaction
+     * @throws IOException si le dossier ou l'instantané ne peut pas être ouvert
+     */
+    public RegistrationWal(Path directory, Path snapshot, ServerConfig config) throws IOException {
+        if (config.getJournalBatchSize() < 1) {
+            throw new IllegalArgumentException("La taille des lots doit être positive: " + config.getJournalBatchSize());
+        }
+        if (config.getWalSegmentSize() <= SEGMENT_HEADER || config.getWalSegmentSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Taille de segment invalide: " + config.getWalSegmentSize());
+        }
+        this.directory = directory;
+        this.snapshot = snapshot;
+        this.policy = config.getFsyncPolicy();
+        this.maxBatchSize = config.getJournalBatchSize();
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getJournalMaxLatencyMillis());
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFsyncIntervalMillis());
+        this.segmentSize = config.getWalSegmentSize();
+        this.compactionIntervalMillis = config.getCompactionIntervalMillis();
+        Files.createDirectories(directory);
+        long manifestSize = readManifest();
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            // Sans fichier de compaction, l'instantané vient du journal texte: seule une ligne incomplète est retirée
+            snapshotSize = manifestSize >= 0 ? Math.min(manifestSize, size) : RegistrationLoader.lastLineEnd(channel, 0, size);
+            if (snapshotSize < size) {
+                System.out.println("Instantané des inscriptions tronqué de " + size + " à " + snapshotSize + " octets");
+                channel.truncate(snapshotSize);
+                channel.force(false);
+            }
+        }
+        if (manifestSize < 0) {
+            // Avant toute compaction: un arrêt pendant la première ne doit pas laisser ses lignes dans l'instantané
+            writeManifest(compactedSegment, snapshotSize);
+        }
+        for (long segment : segments()) {
+            if (segment <= compactedSegment) {
+                Files.delete(segmentFile(segment));
+            }
+        }
+    }
+
+    /**
+     * Relit les segments restants dans l'index, tronque un enregistrement incomplet ou corrompu, compacte les segments
+     * relus dans l'instantané puis ouvre un nouveau segment et démarre les threads d'écriture et de compaction.
+     * À appeler une fois, après avoir chargé l'instantané dans l'index et avant le premier {@link #append(List)}.
+     *
+     * @param index l'index des inscriptions de l'instantané
+     * @return le nombre d'enregistrements relus
+     * @throws IOException si un segment ne peut pas être lu, tronqué ou compacté
+     */
+    public long recover(RegistrationIndex index) throws IOException {
+        long[] recovered = {0};
+        long last = compactedSegment;
+        for (long segment : segments()) {
+            Path file = segmentFile(segment);
+            long end = readSegment(file, (session, code, matricule, prenom, nom, email) -> {
+                index.add(session, code, matricule);
+                recovered[0]++;
+            });
+            long size = Files.size(file);
+            if (end < SEGMENT_HEADER) {
+                // Arrêt pendant la création du segment: son en-tête n'a jamais été forcé et il ne contient aucun enregistrement
+                Files.delete(file);
+            } else if (end < size) {
+                System.out.println("Segment " + file.getFileName() + ": enregistrement incomplet tronqué à " + end + " octets sur " + size);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                    channel.force(false);
+                }
+            }
+            last = Math.max(last, segment);
+        }
+        compact(last);
+        activeSegment = last + 1;
+        openActiveSegment();
+        writer = new Thread(this::writeLoop, "registration-wal");
+        writer.setDaemon(true);
+        writer.start();
+        compactor = new Thread(this::compactLoop, "registration-wal-compaction");
+        compactor.setDaemon(true);
+        compactor.start();
+        return recovered[0];
+    }
+
+    /**
+     * Ajoute des inscriptions au journal, chacune dans son propre enregistrement. Les enregistrements sont encodés
+     * sur le thread de l'appelant; le thread d'écriture n'a plus qu'à les copier.
+     *
+     * @param forms les formulaires acceptés
+     * @return un futur complété quand tous les enregistrements sont durables, ou en erreur s'ils n'ont pas pu être écrits
+     */
+    @Override
+    public CompletableFuture<Void> append(List<RegistrationForm> forms) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        byte[][] records = new byte[forms.size()][];
+        try {
+            for (int i = 0; i < records.length; i++) {
+                records[i] = encode(forms.get(i));
+            }
+        } catch (IOException e) {
+            durable.completeExceptionally(e);
+            return durable;
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                durable.completeExceptionally(new IllegalStateException("Le journal des inscriptions est fermé"));
+            } else {
+                queue.add(new Entry(records, durable));
+            }
+        }
+        return durable;
+    }
+
+    /**
+     * Encode un formulaire en enregistrement: longueur, somme CRC32, puis les six champs de la ligne de inscription.txt
+     */
+    private static byte[] encode(RegistrationForm form) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0);
+        out.writeUTF(String.valueOf(form.getCourse().getSession()));
+        out.writeUTF(String.valueOf(form.getCourse().getCode()));
+        out.writeUTF(String.valueOf(form.getMatricule()));
+        out.writeUTF(String.valueOf(form.getPrenom()));
+        out.writeUTF(String.valueOf(form.getNom()));
+        out.writeUTF(String.valueOf(form.getEmail()));
+        byte[] record = bytes.toByteArray();
+        int length = record.length - RECORD_HEADER;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, length);
+        ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Boucle du thread d'écriture: forme les lots et les rend durables selon la politique jusqu'à la fermeture
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        // Politique INTERVAL: les entrées écrites qui attendent le prochain appel à force()
+        List<Entry> unsynced = new ArrayList<>();
+        long nextSync = System.nanoTime();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                long wait = unsynced.isEmpty() ? TimeUnit.MILLISECONDS.toNanos(100) : nextSync - System.nanoTime();
+                Entry first = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    collect(batch);
+                    switch (policy) {
+                        case EVERY_RECORD -> writeEachRecord(batch);
+                        case GROUP -> writeGroup(batch);
+                        case INTERVAL -> {
+                            unsynced.addAll(batch);
+                            try {
+                                write(batch);
+                            } catch (IOException e) {
+                                fail(unsynced, e);
+                                unsynced.clear();
+                            }
+                        }
+                    }
+                }
+                if (!unsynced.isEmpty() && System.nanoTime() - nextSync >= 0) {
+                    sync(unsynced);
+                    unsynced.clear();
+                    nextSync = System.nanoTime() + fsyncIntervalNanos;
+                }
+            } catch (InterruptedException e) {
+                // la fermeture attend la fin de la boucle; on continue à vider la file
+            } finally {
+                batch.clear();
+            }
+        }
+        if (!unsynced.isEmpty()) {
+            sync(unsynced);
+        }
+    }
+
+    /**
+     * Complète un lot avec les entrées en attente, en attendant au plus le délai des lots
+     */
+    private void collect(List<Entry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxLatencyNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Politique EVERY_RECORD: écrit et force chaque enregistrement séparément. Les enregistrements d'un même ajout
+     * restent dans le même segment, pour qu'un échec au milieu de l'ajout puisse tous les retirer.
+     */
+    private void writeEachRecord(List<Entry> batch) {
+        for (Entry entry : batch) {
+            try {
+                for (byte[] record : entry.records()) {
+                    write(record);
+                    active.force(false);
+                }
+            } catch (IOException e) {
+                fail(List.of(entry), e);
+                continue;
+            }
+            forced();
+            entry.durable().complete(null);
+        }
+    }
+
+    /**
+     * Politique GROUP: écrit le lot puis le force avec un seul appel à force()
+     */
+    private void writeGroup(List<Entry> batch) {
+        try {
+            write(batch);
+        } catch (IOException e) {
+            fail(batch, e);
+            return;
+        }
+        sync(batch);
+    }
+
+    /**
+     * Écrit les enregistrements d'un lot en une seule écriture, sans les forcer
+     */
+    private void write(List<Entry> batch) throws IOException {
+        int length = 0;
+        for (Entry entry : batch) {
+            for (byte[] record : entry.records()) {
+                length += record.length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Entry entry : batch) {
+            for (byte[] record : entry.records()) {
+                buffer.put(record);
+            }
+        }
+        write(buffer.flip());
+    }
+
+    private void write(byte[] record) throws IOException {
+        write(ByteBuffer.wrap(record));
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        activeSize += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+    }
+
+    /**
+     * Force les entrées écrites sur le disque puis complète leurs futurs
+     *
+     * @param entries les entrées écrites depuis le dernier appel à force()
+     */
+    private void sync(List<Entry> entries) {
+        try {
+            active.force(false);
+        } catch (IOException e) {
+            fail(entries, e);
+            return;
+        }
+        forced();
+        for (Entry entry : entries) {
+            entry.durable().complete(null);
+        }
+    }
+
+    /**
+     * Retient que tout ce qui a été écrit est forcé, puis remplace le segment actif s'il a atteint sa taille maximale.
+     * Un échec du remplacement ne touche pas les entrées déjà forcées: il sera signalé par l'écriture suivante.
+     */
+    private void forced() {
+        durableSize = activeSize;
+        if (activeSize >= segmentSize) {
+            try {
+                active.close();
+                activeSegment++;
+                openActiveSegment();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retire du segment actif ce qui a été écrit depuis le dernier ajout forcé, puis signale les entrées
+     * en erreur et passe à un nouveau segment. Les enregistrements complets d'une inscription signalée en erreur
+     * ne doivent pas être relus au démarrage: l'appelant a déjà rendu sa place. Si même la troncature échoue, le
+     * disque est inutilisable: l'erreur est affichée, et ces enregistrements pourraient être relus au démarrage.
+     *
+     * @param entries les entrées qui ne sont pas durables, toutes écrites après le dernier ajout forcé
+     */
+    private void fail(List<Entry> entries, IOException error) {
+        try {
+            active.truncate(durableSize);
+            active.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Entry entry : entries) {
+            entry.durable().completeExceptionally(error);
+        }
+        try {
+            active.close();
+            activeSegment++;
+            openActiveSegment();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Crée le segment actif et force son en-tête et son entrée dans le dossier
+     */
+    private void openActiveSegment() throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile(activeSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER).putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        syncDirectory();
+        active = channel;
+        activeSize = SEGMENT_HEADER;
+        durableSize = SEGMENT_HEADER;
+    }
+
+    /**
+     * Boucle du thread de compaction: compacte les segments fermés à chaque intervalle jusqu'à la fermeture
+     */
+    private void compactLoop() {
+        while (!closed) {
+            try {
+                synchronized (compactionSignal) {
+                    compactionSignal.wait(compactionIntervalMillis);
+                }
+                if (!closed) {
+                    compact(activeSegment - 1);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Ajoute les enregistrements des segments jusqu'au numéro donné à l'instantané, retient le dernier segment
+     * compacté et la nouvelle taille de l'instantané dans le fichier de compaction, puis supprime les segments.
+     * Un arrêt avant l'écriture du fichier de compaction laisse les segments intacts, et ce qui a été ajouté à
+     * l'instantané est retiré au prochain démarrage.
+     *
+     * @param last le numéro du dernier segment à compacter, qui doit être fermé
+     * @throws IOException si l'instantané ou le fichier de compaction ne peut pas être écrit
+     */
+    private synchronized void compact(long last) throws IOException {
+        List<Long> segments = segments().stream().filter(segment -> segment > compactedSegment && segment <= last).toList();
+        if (segments.isEmpty()) {
+            return;
+        }
+        long size;
+        try (FileChannel out = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            // Une compaction précédente a pu échouer au milieu de l'ajout
+            out.truncate(snapshotSize);
+            out.position(snapshotSize);
+            StringBuilder lines = new StringBuilder(1 << 16);
+            for (long segment : segments) {
+                readSegment(segmentFile(segment), (session, code, matricule, prenom, nom, email) -> {
+                    lines.append(RegistrationJournal.line(session, code, matricule, prenom, nom, email));
+                    if (lines.length() >= 1 << 16) {
+                        writeLines(out, lines);
+                    }
+                });
+            }
+            writeLines(out, lines);
+            out.force(false);
+            size = out.position();
+        }
+        writeManifest(segments.get(segments.size() - 1), size);
+        compactedSegment = segments.get(segments.size() - 1);
+        snapshotSize = size;
+        for (long segment : segments) {
+            Files.delete(segmentFile(segment));
+        }
+    }
+
+    private static void writeLines(FileChannel out, StringBuilder lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        lines.setLength(0);
+    }
+
+    /**
+     * Lit les enregistrements valides d'un segment, jusqu'au premier enregistrement incomplet ou dont la somme CRC32
+     * ne correspond pas
+     *
+     * @return la position qui suit le dernier enregistrement valide, ou 0 si l'en-tête du segment est incomplet
+     */
+    private static long readSegment(Path file, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SEGMENT_HEADER) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != SEGMENT_MAGIC || buffer.getInt() != SEGMENT_VERSION) {
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int expected = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+                    return start;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != expected) {
+                    return start;
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+                visitor.visit(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+            }
+            return buffer.position();
+        }
+    }
+
+    /**
+     * Lit le fichier de compaction
+     *
+     * @return la taille de l'instantané après la dernière compaction, ou -1 s'il n'y a pas de fichier de compaction
+     */
+    private long readManifest() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException(manifest + " n'est pas un fichier de compaction du journal");
+            }
+            compactedSegment = in.readLong();
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Écrit le fichier de compaction à côté puis le renomme, pour qu'un arrêt pendant l'écriture laisse l'ancien intact
+     */
+    private void writeManifest(long segment, long size) throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = ByteBuffer.allocate(20).putInt(MANIFEST_MAGIC).putLong(segment).putLong(size).flip();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * Force les entrées du dossier du journal (création, renommage) sur le disque, là où le système le permet
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // certains systèmes ne permettent pas d'ouvrir un dossier; le renommage reste atomique
+        }
+    }
+
+    /**
+     * @return les numéros des segments du dossier, en ordre croissant
+     */
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("segment-\\d+\\.wal"))
+                    .map(name -> Long.parseLong(name.substring("segment-".length(), name.length() - ".wal".length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("segment-%010d.wal", segment));
+    }
+
+    /**
+     * Retire le fichier de compaction d'un dossier de journal avant que inscription.txt soit écrit sans le journal
+     * binaire: les lignes ajoutées par le journal texte seraient sinon retirées au prochain démarrage avec le journal
+     * binaire. Le dossier ne doit plus contenir de segment, ce qui est le cas après un arrêt normal.
+     *
+     * @param directory le dossier des segments, qui peut ne pas exister
+     * @throws IOException si des segments n'ont pas encore été compactés dans l'instantané
+     */
+    public static void detach(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            if (files.anyMatch(file -> file.getFileName().toString().endsWith(".wal"))) {
+                throw new IOException("Le journal binaire " + directory + " contient des inscriptions qui ne sont pas dans "
+                        + "l'instantané: redémarrer avec le journal binaire pour les compacter");
+            }
+        }
+        Files.deleteIfExists(directory.resolve(MANIFEST));
+    }
+
+    /**
+     * Arrête d'accepter des inscriptions, écrit et force celles qui sont en attente, puis compacte tous les segments
+     * dans l'instantané. Le fichier de compaction reste: le prochain démarrage en a besoin pour réparer l'instantané.
+     *
+     * @throws IOException si le segment actif ne peut pas être fermé ou compacté
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        synchronized (compactionSignal) {
+            compactionSignal.notifyAll();
+        }
+        try {
+            if (compactor != null) {
+                compactor.join();
+            }
+            if (writer != null) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Plus aucune inscription ne peut être ajoutée; il en reste si le journal n'a jamais été ouvert par recover()
+        // ou si l'attente du thread d'écriture a été interrompue
+        Entry late;
+        while ((late = queue.poll()) != null) {
+            late.durable().completeExceptionally(new IllegalStateException("Le journal des inscriptions est fermé"));
+        }
+        if (active == null) {
+            return;
+        }
+        active.close();
+        compact(activeSegment);
+    }
+}
@@ -0,0 +1,62 @@
+package server;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RouterLauncher {
+
+    /**
+     * Démarre le routeur d'un déploiement réparti, sur le port habituel du serveur pour que les clients ne changent pas
+     * Options acceptées: --shards=hôte:port,hôte:port,... (obligatoire, un {@link ServerLauncher} par fragment avec son
+     * propre --port et --data-dir), --port=N (1337 par défaut), --admin-port=N (-1 par défaut), --idle-timeout=MS,
+     * --backlog=N, --max-in-flight=N, --rate=N, --burst=N et --shutdown-timeout=MS, comme pour le serveur
+     *
+     * @param args les options de lancement
+     */
+    public static void main(String[] args) {
+        ServerConfig config = new ServerConfig();
+        int port = ServerLauncher.PORT;
+        List<InetSocketAddress> shards = new ArrayList<>();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--shards=")) {
+                for (String shard : value.split(",")) {
+                    int colon = shard.lastIndexOf(':');
+                    shards.add(new InetSocketAddress(shard.substring(0, colon).trim(), Integer.parseInt(shard.substring(colon + 1).trim())));
+                }
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(value);
+            } else if (arg.startsWith("--admin-port=")) {
+                config.setAdminPort(Integer.parseInt(value));
+            } else if (arg.startsWith("--idle-timeout=")) {
+                config.setIdleTimeoutMillis(Integer.parseInt(value));
+            } else if (arg.startsWith("--backlog=")) {
+                config.setBacklog(Integer.parseInt(value));
+            } else if (arg.startsWith("--max-in-flight=")) {
+                config.setMaxInFlight(Integer.parseInt(value));
+            } else if (arg.startsWith("--rate=")) {
+                config.setRateLimit(Integer.parseInt(value));
+            } else if (arg.startsWith("--burst=")) {
+                config.setRateBurst(Integer.parseInt(value));
+            } else if (arg.startsWith("--shutdown-timeout=")) {
+                config.setShutdownTimeoutMillis(Long.parseLong(value));
+            } else {
+                System.out.println("Option inconnue: " + arg);
+                return;
+            }
+        }
+        if (shards.isEmpty()) {
+            System.out.println("Il faut au moins un fragment: --shards=hôte:port,...");
+            return;
+        }
+        try {
+            ShardRouter router = new ShardRouter(port, shards, config);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> router.stop(config.getShutdownTimeoutMillis()), "router-shutdown"));
+            System.out.println("Router is running (" + shards.size() + " fragments)...");
+            router.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,21 +3,33 @@
  */
 package server;
 
-import javafx.util.Pair;
+import server.metrics.MetricsEndpoint;
+import server.metrics.OperationMetrics;
+import server.metrics.ServerMetrics;
 import server.models.Course;
+import server.models.CoursePage;
 import server.models.RegistrationForm;
+import server.models.RegistrationResult;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * La classe Server implémente un serveur qui prend en compte deux commandes:
  * Le serveur attend et écoute le client lorsqu'il se connecte
- * Le client peut passer la commande "INSCRIRE" ou "CHARGER"
- * Une fois la commande entrée, la méthode handle() est appelée et chaque commande ci dessus est gérée par une méthode associée
+ * Le client peut passer la commande "INSCRIRE", "INSCRIRE_LOT" ou "CHARGER"
+ * Une fois la commande entrée, la méthode handleEvents() est appelée et chaque commande ci dessus est gérée par une méthode associée
  */
 
 public class Server {
@@ -27,200 +39,865 @@ public class Server {
      */
     public final static String REGISTER_COMMAND = "INSCRIRE";
 
+    /**
+     * "INSCRIRE_LOT" inscrit une liste d'étudiants reçue en un seul message et renvoie le résultat de chacun
+     */
+    public final static String BATCH_REGISTER_COMMAND = "INSCRIRE_LOT";
+
     /**
      * "CHARGER" permet de charger les cours de la session
      */
     public final static String LOAD_COMMAND = "CHARGER";
+
+    /**
+     * "CHARGER session IF-NOT version" ne renvoie les cours que si le client n'a pas déjà cette version de la session
+     */
+    public final static String IF_NOT_KEYWORD = "IF-NOT";
+
+    /**
+     * "CHARGER session PAGE début nombre" renvoie une seule page des cours de la session
+     */
+    public final static String PAGE_KEYWORD = "PAGE";
+
+    /**
+     * "CHARGER session FLUX taille" renvoie tous les cours de la session en pages successives
+     */
+    public final static String STREAM_KEYWORD = "FLUX";
+
+    /**
+     * Nombre maximal de cours dans une page
+     */
+    public final static int MAX_PAGE_SIZE = 10_000;
+
+    /**
+     * "CHERCHER" renvoie les cours dont le code ou le nom contient des mots qui commencent par ceux de la requête
+     */
+    public final static String SEARCH_COMMAND = "CHERCHER";
+
+    /**
+     * Nombre maximal de cours renvoyés par "CHERCHER"
+     */
+    public final static int SEARCH_RESULTS = 20;
+
+    /**
+     * "MAINTENIR" garde la connexion ouverte après chaque commande, jusqu'à "FERMER" ou l'expiration du délai d'inactivité
+     */
+    public final static String KEEP_ALIVE_COMMAND = "MAINTENIR";
+
+    /**
+     * "FERMER" termine une connexion maintenue ouverte
+     */
+    public final static String CLOSE_COMMAND = "FERMER";
+
+    /**
+     * Début de la réponse à une commande refusée par le contrôle d'admission: le client peut réessayer plus tard
+     */
+    public final static String BUSY_REPLY = "OCCUPE";
+    /**
+     * Taille par défaut de la file d'attente des connexions entrantes
+     */
+    public final static int DEFAULT_BACKLOG = 50;
     /**
-     * Le ServerSocket écoute s'il y a des connexions entrantes
+     * Propriété système permettant de choisir le dossier contenant cours.txt et inscription.txt
+     */
+    public final static String DATA_DIR_PROPERTY = "server.data.dir";
+    /**
+     * Fichier du dossier de données qui garde le point de reprise de l'index des inscriptions
+     */
+    public final static String REGISTRATION_CHECKPOINT = "inscription.index";
+    /**
+     * Dossier du dossier de données qui garde les segments du journal binaire des inscriptions
+     */
+    public final static String WAL_DIRECTORY = "journal";
+    /**
+     * Nom sous lequel les commandes inconnues sont mesurées
+     */
+    public final static String UNKNOWN_COMMAND_METRIC = "INCONNUE";
+    /**
+     * Le ServerSocket écoute s'il y a des connexions entrantes, null en mode NIO
      */
     private final ServerSocket server;
     /**
-     * La connexion en cours est représentée par Socket
+     * Le moteur non bloquant qui sert les connexions en mode NIO, null dans les autres modes
+     */
+    private final NioServerEngine nioEngine;
+    /**
+     * Exécuteur qui sert les connexions acceptées, null si elles sont servies sur le thread qui accepte
+     */
+    private final ExecutorService connectionExecutor;
+    /**
+     * Délai d'inactivité, en millisecondes, après lequel une connexion est fermée
+     */
+    private final int idleTimeoutMillis;
+    /**
+     * Catalogue des cours gardé en mémoire et rechargé quand cours.txt change
+     */
+    private final CourseCatalog catalog;
+    /**
+     * Réponses à CHARGER déjà sérialisées, par session
+     */
+    private final CourseResponseCache responseCache;
+    /**
+     * Les matricules inscrits à chaque cours, pour refuser les doublons et les cours complets sans lire le fichier
+     */
+    private final RegistrationIndex registrations;
+    /**
+     * Le fichier inscription.txt du dossier de données du serveur
+     */
+    private final Path registrationFile;
+    /**
+     * Journal qui rend les inscriptions durables: directement dans inscription.txt, ou dans le journal binaire
+     * compacté ensuite dans inscription.txt
+     */
+    private final RegistrationLog journal;
+    /**
+     * Les mesures du serveur: connexions, commandes et gestionnaires d'évènements
+     */
+    private final ServerMetrics metrics;
+    /**
+     * Le port d'administration qui affiche les mesures, null s'il est désactivé
+     */
+    private final MetricsEndpoint metricsEndpoint;
+    /**
+     * Les gestionnaires d'évènements enregistrés, alertés après chaque commande
+     */
+    private final EventDispatcher handlers;
+    /**
+     * Le contrôle d'admission, qui refuse les commandes quand le serveur est saturé ou qu'un client dépasse son débit
+     */
+    private final AdmissionControl admission;
+    /**
+     * Le chargeur qui a reconstruit l'index des inscriptions, gardé pour écrire le point de reprise à l'arrêt
+     */
+    private final RegistrationLoader registrationLoader;
+    /**
+     * Les sockets des connexions servies en mode bloquant, fermés à l'arrêt
      */
-    private Socket client;
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
     /**
-     * ObjectInputStream est le flux d'inputs permettant de traiter les objets à revoyer au client
+     * Le thread démarré par {@link #start()}, null si la boucle principale est appelée directement
      */
-    private ObjectInputStream objectInputStream;
+    private Thread acceptThread;
     /**
-     * ObjectOutputStream est le flux d'outputs permettant de traiter les objets à revoyer au client
+     * Vrai une fois {@link #stop(long)} appelé
      */
-    private ObjectOutputStream objectOutputStream;
+    private volatile boolean stopping;
     /**
-     * Array contenat tous les évènements enregistrés
+     * Le résultat de {@link #stop(long)}, pour un second appel
      */
-    private final ArrayList<EventHandler> handlers;
+    private boolean drained;
 
     /**
      * La  lasse Server a une nouvelle instance créée qui écoute les connexions au port spécifié
+     * Les connexions sont servies avec la configuration par défaut: un thread virtuel par connexion
      *
      * @param port ets le port où le serveur écoute les nouvelles connexions
      * @throws IOException se déclenche lorsqu'il y a un problème au niveau de la génération du nouveau socket
      */
     public Server(int port) throws IOException {
-        this.server = new ServerSocket(port, 1);
-        this.handlers = new ArrayList<EventHandler>();
-        this.addEventHandler(this::handleEvents);
+        this(port, new ServerConfig());
+    }
+
+    /**
+     * Crée un serveur qui écoute au port spécifié et fonctionne selon la configuration donnée
+     *
+     * @param port   le port où le serveur écoute les nouvelles connexions
+     * @param config les paramètres du serveur
+     * @throws IOException se déclenche lorsqu'il y a un problème au niveau de la génération du nouveau socket
+     *                     ou de l'ouverture du fichier des inscriptions
+     */
+    public Server(int port, ServerConfig config) throws IOException {
+        this.metrics = new ServerMetrics();
+        this.connectionExecutor = config.getMode().newExecutor(config.getPoolSize());
+        this.idleTimeoutMillis = config.getIdleTimeoutMillis();
+        if (config.getMode() == ConnectionMode.NIO) {
+            this.server = null;
+            this.nioEngine = new NioServerEngine(port, config, connectionExecutor);
+        } else {
+            this.server = new ServerSocket(port, config.getBacklog());
+            this.nioEngine = null;
+        }
+        this.registrationFile = Paths.get(dataFile(config, "inscription.txt"));
+        this.catalog = new CourseCatalog(Paths.get(dataFile(config, "cours.txt")));
+        this.responseCache = new CourseResponseCache(catalog);
+        long start = System.nanoTime();
+        // Le journal binaire répare inscription.txt avant qu'il soit chargé
+        RegistrationWal wal = config.isWriteAheadLog()
+                ? new RegistrationWal(Paths.get(dataFile(config, WAL_DIRECTORY)), registrationFile, config) : null;
+        if (wal == null) {
+            // Le journal texte ajoute à inscription.txt des lignes que le journal binaire ne connaît pas
+            RegistrationWal.detach(Paths.get(dataFile(config, WAL_DIRECTORY)));
+        }
+        RegistrationLoader loader = new RegistrationLoader(registrationFile, Paths.get(dataFile(config, REGISTRATION_CHECKPOINT)));
+        this.registrationLoader = loader;
+        this.registrations = loader.load(config.getCourseCapacity());
+        this.registrations.loadCapacities(Paths.get(dataFile(config, "capacites.txt")));
+        long replayed = wal != null ? wal.recover(registrations) : 0;
+        System.out.println("Index des inscriptions reconstruit: " + registrations.size() + " inscriptions en "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms (" + loader.getParsedBytes() + " octets analysés"
+                + (wal != null ? ", " + replayed + " enregistrements du journal relus" : "") + ")");
+        // Avant d'accepter des connexions: l'index ne contient encore que des inscriptions écrites dans le fichier
+        if (replayed > 0) {
+            // Les enregistrements relus ont été compactés à la fin de inscription.txt
+            writeCheckpoint(loader, Files.size(registrationFile));
+        } else if (loader.getParsedBytes() > 0) {
+            writeCheckpoint(loader, loader.getLoadedOffset());
+        }
+        this.journal = wal != null ? wal : new RegistrationJournal(registrationFile,
+                config.getJournalBatchSize(), config.getJournalMaxLatencyMillis());
+        this.handlers = new EventDispatcher(metrics, config.getHandlerThreads(), config.getHandlerQueueCapacity());
+        this.admission = new AdmissionControl(config.getMaxInFlight(), config.getRateLimit(), config.getRateBurst(), metrics);
+        this.metrics.registerMBeans(nioEngine != null ? nioEngine.getPort() : server.getLocalPort());
+        this.metricsEndpoint = config.getAdminPort() >= 0 ? new MetricsEndpoint(metrics, config.getAdminPort()) : null;
+    }
+
+    /**
+     * @return le port sur lequel le serveur écoute réellement (utile si le port 0 a été demandé)
+     */
+    public int getPort() {
+        return nioEngine != null ? nioEngine.getPort() : server.getLocalPort();
+    }
+
+    /**
+     * @return le catalogue des cours du serveur
+     */
+    public CourseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return le cache des réponses à CHARGER, avec ses compteurs de succès et d'échecs
+     */
+    public CourseResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Écrit le point de reprise de l'index des inscriptions, pour que le prochain démarrage n'analyse que les lignes
+     * ajoutées après la position donnée. Appelé au démarrage, avant que des connexions soient acceptées: l'index
+     * ne contient alors aucune place réservée qui ne soit pas dans le fichier.
+     *
+     * @param loader le chargeur qui a reconstruit l'index
+     * @param offset la fin de la dernière ligne de inscription.txt couverte par l'index
+     */
+    private void writeCheckpoint(RegistrationLoader loader, long offset) {
+        try {
+            loader.writeCheckpoint(registrations, offset);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return l'index des inscriptions du serveur
+     */
+    public RegistrationIndex getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * @return les mesures du serveur, aussi exposées par JMX et sur le port d'administration
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return le port d'administration, ou -1 s'il est désactivé
+     */
+    public int getAdminPort() {
+        return metricsEndpoint != null ? metricsEndpoint.getPort() : -1;
     }
 
     /**
      * addEventHandler ajoute les nouveaux évènements et les enregistre
+     * Les gestionnaires sont alertés après le traitement de la commande par le serveur, sur le thread de la connexion
+     * ou hors de celui-ci selon {@link EventHandler#isAsynchronous()}. Un gestionnaire peut être ajouté pendant que
+     * le serveur fonctionne. Ses mesures sont nommées "gestionnaire-" suivi de son ordre d'enregistrement; voir
+     * {@link #addEventHandler(String, EventHandler)} pour choisir le nom.
      *
      * @param h est le gestionnaire des évènements
      */
     public void addEventHandler(EventHandler h) {
-        this.handlers.add(h);
+        this.addEventHandler(this.handlers.nextUnnamed(), h);
+    }
+
+    /**
+     * Enregistre un gestionnaire d'évènements sous un nom, qui désigne ses mesures (JMX et port d'administration)
+     *
+     * @param name le nom du gestionnaire, unique parmi les gestionnaires enregistrés
+     * @param h    le gestionnaire des évènements
+     * @throws IllegalArgumentException si un gestionnaire enregistré porte déjà ce nom
+     */
+    public void addEventHandler(String name, EventHandler h) {
+        this.addEventHandler(name, h, h.isAsynchronous());
+    }
+
+    /**
+     * Enregistre un gestionnaire d'évènements sous un nom en choisissant comment il est appelé
+     * Un gestionnaire asynchrone reçoit les évènements dans l'ordre, un à la fois, sans ralentir les clients
+     * tant que sa file n'est pas pleine.
+     *
+     * @param name         le nom du gestionnaire, unique parmi les gestionnaires enregistrés
+     * @param h            le gestionnaire des évènements
+     * @param asynchronous vrai pour l'appeler hors du thread de la connexion
+     * @throws IllegalArgumentException si un gestionnaire enregistré porte déjà ce nom
+     */
+    public void addEventHandler(String name, EventHandler h, boolean asynchronous) {
+        this.handlers.add(name, h, asynchronous);
+    }
+
+    /**
+     * Retire un gestionnaire d'évènements
+     *
+     * @param h le gestionnaire des évènements
+     * @return vrai si le gestionnaire était enregistré
+     */
+    public boolean removeEventHandler(EventHandler h) {
+        return this.handlers.remove(h);
     }
 
     /**
      * la méthode alertHandlers alerte les gestionnaire d'events
+     * Le temps passé dans chaque gestionnaire est mesuré; une exception d'un gestionnaire est comptée comme une erreur
+     * et n'empêche pas les autres d'être alertés.
      *
      * @param cmd la commande donnée par le client
      * @param arg est l'argument de cetet commande
      */
     private void alertHandlers(String cmd, String arg) {
-        for (EventHandler h : this.handlers) {
-            h.handle(cmd, arg);
+        this.handlers.dispatch(cmd, arg);
+    }
+
+    /**
+     * Démarre la boucle principale du serveur sur son propre thread et retourne tout de suite
+     */
+    public synchronized void start() {
+        if (acceptThread != null || stopping) {
+            throw new IllegalStateException("Le serveur est déjà démarré ou arrêté");
+        }
+        acceptThread = new Thread(this::run, "server-accept");
+        acceptThread.start();
+    }
+
+    /**
+     * Arrête le serveur sans perdre d'inscription acceptée, en un temps borné:
+     * plus aucune connexion n'est acceptée et les commandes suivantes reçoivent "OCCUPE", les commandes en cours
+     * se terminent (une inscription attend son écriture durable), les connexions restantes sont fermées, le journal
+     * écrit ses dernières lignes et le point de reprise de l'index est écrit. Un second appel ne fait rien.
+     *
+     * @param timeoutMillis le temps maximal d'attente des commandes en cours et des gestionnaires d'évènements
+     * @return vrai si tout a été terminé avant le délai
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        if (stopping) {
+            return drained;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        stopping = true;
+        admission.close();
+        try {
+            if (nioEngine != null) {
+                nioEngine.stopAccepting();
+            } else {
+                server.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            drained = admission.awaitIdle(deadline);
+            // Les connexions restantes attendent une commande qui serait refusée
+            if (nioEngine != null) {
+                nioEngine.close();
+            } else {
+                for (Socket socket : openSockets) {
+                    closeQuietly(socket);
+                }
+            }
+            if (connectionExecutor != null) {
+                connectionExecutor.shutdown();
+                drained &= connectionExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            drained &= handlers.close(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        } finally {
+            closeJournal();
+            catalog.close();
+            if (metricsEndpoint != null) {
+                closeQuietly(metricsEndpoint);
+            }
+        }
+        System.out.println("Serveur arrêté" + (drained ? "" : " avant la fin de toutes les commandes"));
+        return drained;
+    }
+
+    /**
+     * Écrit les dernières lignes du journal puis, si toutes les commandes sont terminées, le point de reprise de
+     * l'index au bout du fichier des inscriptions: le prochain démarrage n'aura rien à analyser
+     */
+    private void closeJournal() {
+        try {
+            journal.close();
+            // Une commande encore en cours pourrait avoir réservé une place qui n'est pas dans le fichier
+            if (drained) {
+                registrationLoader.writeCheckpoint(registrations, Files.size(registrationFile));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ferme une ressource pendant l'arrêt, en affichant l'erreur éventuelle
+     */
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
     /**
      * La méthode run constitue la boucle principale du serveur
-     * Elle accepte d'abord les connexion du client et écoute les donées passées
-     * Elle appelle par la suite les méthodes necessaires
+     * Elle accepte d'abord les connexion du client puis les confie à l'exécuteur du serveur
+     * (ou les sert directement en mode SINGLE). En mode NIO, la boucle est celle du moteur non bloquant.
+     * Elle retourne une fois le serveur arrêté par {@link #stop(long)}.
      */
     public void run() {
-        while (true) {
+        if (nioEngine != null) {
+            nioEngine.run(this);
+            return;
+        }
+        while (!stopping) {
             try {
-                client = server.accept();
-                System.out.println("Connecté au client: " + client);
-                objectInputStream = new ObjectInputStream(client.getInputStream());
-                objectOutputStream = new ObjectOutputStream(client.getOutputStream());
-                listen();
-                disconnect();
-                System.out.println("Client déconnecté!");
+                Socket client = server.accept();
+                long acceptedAt = System.nanoTime();
+                if (connectionExecutor == null) {
+                    serve(client, acceptedAt);
+                } else {
+                    connectionExecutor.execute(() -> serve(client, acceptedAt));
+                }
             } catch (Exception e) {
+                if (!stopping) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sert un client accepté: ouvre ses flux, écoute ses commandes puis le déconnecte
+     *
+     * @param client     le socket du client
+     * @param acceptedAt le moment où la connexion a été acceptée, selon System.nanoTime()
+     */
+    private void serve(Socket client, long acceptedAt) {
+        // Ajouté avant de lire stopping: stop() ferme ce socket ou bien la connexion n'est pas servie
+        openSockets.add(client);
+        if (stopping) {
+            openSockets.remove(client);
+            closeQuietly(client);
+            return;
+        }
+        metrics.connectionOpened(System.nanoTime() - acceptedAt);
+        try {
+            client.setSoTimeout(idleTimeoutMillis);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try (Connection connection = Connection.open(client)) {
+            System.out.println("Connecté au client: " + connection);
+            listen(connection);
+        } catch (Exception e) {
+            if (!stopping) {
                 e.printStackTrace();
             }
+        } finally {
+            openSockets.remove(client);
+            metrics.connectionClosed();
         }
+        System.out.println("Client déconnecté!");
     }
 
     /**
      * La méthode listen() sert à gérer les commandes données par le client en y associant chaque méthode correspondante
+     * Par défaut, une seule commande est traitée par connexion. Si le client envoie "MAINTENIR", la connexion reste
+     * ouverte et les commandes suivantes sont lues sur les mêmes flux jusqu'à "FERMER", la fermeture du socket
+     * par le client ou l'expiration du délai d'inactivité.
      *
+     * @param connection la connexion du client
      * @throws IOException            de déclenche s'il y a une erreur de lecture de l'input
      * @throws ClassNotFoundException si la classe entrée est introuvable
      */
-    public void listen() throws IOException, ClassNotFoundException {
-        String line;
-        if ((line = this.objectInputStream.readObject().toString()) != null) {
-            Pair<String, String> parts = processCommandLine(line);
-            String cmd = parts.getKey();
-            String arg = parts.getValue();
-            this.alertHandlers(cmd, arg);
-        }
+    public void listen(Connection connection) throws IOException, ClassNotFoundException {
+        boolean keepAlive = false;
+        do {
+            String line;
+            try {
+                line = connection.readObject().toString();
+            } catch (EOFException | SocketTimeoutException e) {
+                // Le client a fermé la connexion ou est resté inactif trop longtemps
+                return;
+            } catch (IOException e) {
+                if (stopping) {
+                    // stop() a fermé le socket d'une connexion inactive
+                    return;
+                }
+                throw e;
+            }
+            keepAlive = dispatch(connection, line, keepAlive);
+        } while (keepAlive);
     }
 
     /**
-     * la méthode Pair traite de façon séparée la commande et les arguments qui lui ont été associés
+     * Traite une ligne de commande reçue sur une connexion: "MAINTENIR" et "FERMER" changent l'état de la connexion,
+     * les autres commandes passent le contrôle d'admission, sont gérées par handleEvents() puis signalées aux gestionnaires
+     * enregistrés; une commande refusée reçoit "OCCUPE", voir {@link #reject}.
+     * La durée de handleEvents() et les octets échangés pour la commande sont ajoutés aux mesures de la commande.
      *
-     * @param line ligne de la commande à séparer
-     * @return une Pair avec la commande + les arguments sous le format d'une String
+     * @param connection la connexion du client
+     * @param line       la ligne de commande
+     * @param keepAlive  vrai si la connexion est maintenue ouverte
+     * @return vrai si la connexion doit rester ouverte pour d'autres commandes
      */
-    public Pair<String, String> processCommandLine(String line) {
-        String[] parts = line.split(" ");
-        String cmd = parts[0];
-        String args = String.join(" ", Arrays.asList(parts).subList(1, parts.length));
-        return new Pair<>(cmd, args);
+    boolean dispatch(Connection connection, String line, boolean keepAlive) {
+        Command command = CommandParser.parse(line);
+        if (command == Command.KEEP_ALIVE || command == Command.CLOSE) {
+            // Ces octets ne font partie d'aucune commande mesurée
+            connection.takeBytesRead();
+            connection.takeBytesWritten();
+            return command == Command.KEEP_ALIVE;
+        }
+        AdmissionControl.Decision decision = admission.tryAdmit(connection.getRemoteAddress());
+        if (decision != AdmissionControl.Decision.ADMITTED) {
+            // Pendant l'arrêt, la connexion est fermée après le refus
+            return reject(connection, command, decision) && keepAlive && decision != AdmissionControl.Decision.CLOSED;
+        }
+        String arg = CommandParser.argument(line, command);
+        try {
+            long start = System.nanoTime();
+            boolean success = this.handleEvents(connection, command, arg);
+            long elapsed = System.nanoTime() - start;
+            OperationMetrics commandMetrics = metrics.command(command == Command.UNKNOWN ? UNKNOWN_COMMAND_METRIC : command.getKeyword());
+            commandMetrics.record(elapsed, connection.takeBytesRead(), connection.takeBytesWritten(), success);
+            // Alertés avant la fin de la commande, pour que stop() attende aussi les gestionnaires
+            this.alertHandlers(command == Command.UNKNOWN ? CommandParser.name(line) : command.getKeyword(), arg);
+        } finally {
+            admission.release();
+        }
+        return keepAlive && !stopping;
     }
 
     /**
-     * La méthode disconnect ferme les flux d'entrée et sortie du socket
-     * Elle met fin à la connexion entre le client et son serveur
+     * Refuse une commande sans la traiter ni alerter les gestionnaires: le formulaire qui suit une inscription est lu
+     * et ignoré pour que la connexion reste utilisable, puis le client reçoit "OCCUPE" suivi de la raison.
+     * Une commande inconnue n'a pas de réponse, donc rien n'est envoyé.
      *
-     * @throws IOException s'il y a un problème au niveau des fermetures
+     * @param connection la connexion du client
+     * @param command    la commande refusée
+     * @param decision   la raison du refus
+     * @return faux si la connexion n'est plus utilisable
      */
-    public void disconnect() throws IOException {
-        objectOutputStream.close();
-        objectInputStream.close();
-        client.close();
+    static boolean reject(Connection connection, Command command, AdmissionControl.Decision decision) {
+        try {
+            if (command == Command.REGISTER || command == Command.BATCH_REGISTER) {
+                connection.readObject();
+            }
+            if (command != Command.UNKNOWN) {
+                connection.writeObject(BUSY_REPLY + ": " + switch (decision) {
+                    case THROTTLED -> "trop de requêtes de votre adresse, réessayez plus tard";
+                    case CLOSED -> "le serveur s'arrête, réessayez plus tard";
+                    default -> "le serveur est saturé, réessayez plus tard";
+                });
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            // Ces octets ne font partie d'aucune commande mesurée
+            connection.takeBytesRead();
+            connection.takeBytesWritten();
+        }
     }
 
     /**
      * La méthode handleEvents gère les évènements
      *
-     * @param cmd la commande de l'évènement
-     * @param arg les arguments de la commande de l'évènemenement
+     * @param connection la connexion du client qui a envoyé la commande
+     * @param command    la commande de l'évènement
+     * @param arg        les arguments de la commande de l'évènemenement
+     * @return faux si la commande a échoué
      */
-    public void handleEvents(String cmd, String arg) {
-        if (cmd.equals(REGISTER_COMMAND)) {
-            handleRegistration();
-        } else if (cmd.equals(LOAD_COMMAND)) {
-            handleLoadCourses(arg);
+    public boolean handleEvents(Connection connection, Command command, String arg) {
+        switch (command) {
+            case REGISTER:
+                return handleRegistration(connection);
+            case BATCH_REGISTER:
+                return handleBatchRegistration(connection);
+            case LOAD:
+                return handleLoadCourses(connection, arg);
+            case SEARCH:
+                return handleSearch(connection, arg);
+            default:
+                return true;
         }
     }
 
     /**
-     * Lire un fichier texte contenant des informations sur les cours et les transformer en liste d'objets 'Course'.
-     * La méthode filtre les cours par la session spécifiée en argument.
-     * Ensuite, elle renvoie la liste des cours pour une session au client en utilisant l'objet 'objectOutputStream'.
-     * La méthode gère les exceptions si une erreur se produit lors de la lecture du fichier ou de l'écriture de l'objet dans le flux.
+     * Trouve un fichier du dossier de données du serveur
+     * Par défaut, le dossier data se trouve à côté du fichier jar (ou du fichier java),
+     * mais la propriété système server.data.dir permet d'en choisir un autre
      *
-     * @param arg la session pour laquelle on veut récupérer la liste des cours
+     * @param name le nom du fichier
+     * @return le chemin du fichier
+     * @throws IOException si l'emplacement du jar ne peut pas être résolu
      */
-    public void handleLoadCourses(String arg) {
-        try {
-            // Créer une liste pour stocker les cours qui correspondent à la session demandée
-            ArrayList<Course> courses = new ArrayList<Course>();
+    public static String dataFile(String name) throws IOException {
+        String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (dataDir == null) {
             // Trouve l'emplacement du fichier jar (ou du fichier java)
             File jarFile = new File(Server.class.getProtectionDomain().getCodeSource().getLocation().getPath());
-            String jarPath = jarFile.getParentFile().getCanonicalPath();
-            BufferedReader reader = new BufferedReader(new FileReader(jarPath + File.separator + "data" + File.separator + "cours.txt"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Séparer chaque ligne en utilisant une tabulation comme séparateur
-                String[] parts = line.split("\t");
-                // Vérifier si la ligne contient les informations du cours et si la session correspond à celle demandée
-                if (parts.length == 3 && parts[2].trim().equals(arg)) {
-                    String code = parts[0].trim();
-                    String name = parts[1].trim();
-                    // Créer un objet Course avec les informations lues
-                    Course course = new Course(name, code, arg);
-                    // Ajouter le cours à la liste
-                    courses.add(course);
-                }
+            dataDir = jarFile.getParentFile().getCanonicalPath() + File.separator + "data";
+        }
+        return dataDir + File.separator + name;
+    }
+
+    /**
+     * Trouve un fichier du dossier de données choisi par la configuration, ou du dossier par défaut
+     * (voir {@link #dataFile(String)}) si elle n'en choisit pas
+     *
+     * @param config la configuration du serveur
+     * @param name   le nom du fichier
+     * @return le chemin du fichier
+     * @throws IOException si l'emplacement du jar ne peut pas être résolu
+     */
+    private static String dataFile(ServerConfig config, String name) throws IOException {
+        return config.getDataDir() != null ? config.getDataDir() + File.separator + name : dataFile(name);
+    }
+
+    /**
+     * Renvoie au client la liste des cours offerts pendant la session spécifiée en argument.
+     * Les cours viennent du catalogue en mémoire, donc aucun fichier n'est lu pendant la requête,
+     * et la réponse déjà sérialisée est prise dans le cache des réponses.
+     * Avec "session IF-NOT version", le client reçoit un {@link server.models.CourseList}: la liste et sa version, ou seulement
+     * "non modifié" s'il a déjà la version courante des cours de la session.
+     * Avec "PAGE début nombre" ou "FLUX taille", les cours sont envoyés en {@link CoursePage}, voir {@link #writePages}.
+     * Un argument mal formé reçoit un message d'échec.
+     * La méthode gère les exceptions si une erreur se produit lors de l'écriture de l'objet dans le flux.
+     *
+     * @param connection la connexion du client
+     * @param arg        la session pour laquelle on veut récupérer la liste des cours, suivie au besoin de
+     *                   "IF-NOT version" puis de "PAGE début nombre" ou "FLUX taille"
+     * @return faux si la liste n'a pas pu être envoyée
+     */
+    public boolean handleLoadCourses(Connection connection, String arg) {
+        try {
+            LoadRequest request;
+            try {
+                request = LoadRequest.parse(arg);
+            } catch (IllegalArgumentException e) {
+                connection.writeObject("Échec: " + e.getMessage());
+                return false;
+            }
+            if (request.mode() != LoadRequest.Mode.ALL) {
+                writePages(connection, request);
+            } else if (request.knownVersion() != null) {
+                connection.writeEncoded(responseCache.getCourses(request.session(), request.knownVersion(), connection.getFormat()));
+            } else {
+                // La liste est encodée une seule fois par session, par format et par version du catalogue
+                connection.writeEncoded(responseCache.getCourses(request.session(), connection.getFormat()));
             }
-            reader.close();
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Envoie les cours d'une session page par page: une seule page pour PAGE, toutes les pages pour FLUX.
+     * Toutes les pages viennent du même instantané du catalogue et chaque page est encodée et écrite avant
+     * de construire la suivante, donc ni le serveur ni le client n'ont à garder toute la liste encodée en mémoire,
+     * et le client reçoit les premiers cours sans attendre les derniers.
+     * Si le client a déjà la version courante (IF-NOT), il reçoit une seule page "non modifié", sans cours.
+     *
+     * @param connection la connexion du client
+     * @param request    la demande du client
+     * @throws IOException s'il y a une erreur d'écriture
+     */
+    private void writePages(Connection connection, LoadRequest request) throws IOException {
+        CourseCatalog.SessionCourses sessionCourses = catalog.getSessionCourses(request.session());
+        List<Course> courses = sessionCourses.courses();
+        int total = courses.size();
+        if (sessionCourses.version().equals(request.knownVersion())) {
+            connection.writeObject(new CoursePage(request.session(), sessionCourses.version(), 0, total, null));
+            return;
+        }
+        int offset = Math.min(request.offset(), total);
+        do {
+            int end = (int) Math.min((long) offset + request.limit(), total);
+            CoursePage page = new CoursePage(request.session(), sessionCourses.version(), offset, total,
+                    new ArrayList<>(courses.subList(offset, end)));
+            // Chaque page est un message indépendant: en sérialisation Java, le flux ne garde aucune référence aux cours envoyés
+            connection.writeEncoded(connection.getFormat().encode(page));
+            offset = end;
+        } while (request.mode() == LoadRequest.Mode.STREAM && offset < total);
+    }
 
-            // Envoyer la liste des cours au client en utilisant le flux de sortie de l'objet
-            objectOutputStream.writeObject(courses);
+    /**
+     * Renvoie au client les cours de toutes les sessions dont le code ou le nom contient des mots qui commencent
+     * par ceux de la requête ("IFT1", "programmation"), sans tenir compte des majuscules ni des accents,
+     * au plus {@value #SEARCH_RESULTS}. La recherche utilise l'index construit avec le catalogue en mémoire.
+     *
+     * @param connection la connexion du client
+     * @param arg        les mots cherchés
+     * @return faux si les cours trouvés n'ont pas pu être envoyés
+     */
+    public boolean handleSearch(Connection connection, String arg) {
+        try {
+            connection.writeObject(catalog.search(arg, SEARCH_RESULTS));
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     /**
-     * Récupérer l'objet 'RegistrationForm' envoyé par le client en utilisant 'objectInputStream', l'enregistrer dans un fichier texte
-     * et renvoyer un message de confirmation au client.
+     * Récupérer l'objet 'RegistrationForm' envoyé par le client en utilisant sa connexion, l'enregistrer dans un fichier texte
+     * par le journal des inscriptions et renvoyer au client un {@link RegistrationResult} une fois l'inscription durable.
+     * Le serveur vérifie lui-même que le cours est offert pendant la session selon le catalogue en mémoire, donc le client
+     * n'a plus à charger la liste des cours avant d'inscrire. Un formulaire incomplet, un cours inconnu, une inscription
+     * en double ou à un cours complet sont refusés avec un résultat d'échec.
      * La méthode gére les exceptions si une erreur se produit lors de la lecture de l'objet, l'écriture dans un fichier ou dans le flux de sortie.
+     *
+     * @param connection la connexion du client
+     * @return faux si l'inscription n'a pas pu être enregistrée ou confirmée
      */
-    public void handleRegistration() {
+    public boolean handleRegistration(Connection connection) {
         try {
             // Lire l'objet RegistrationForm envoyé par le client en utilisant le flux d'entrée de l'objet
-            RegistrationForm registrationForm = (RegistrationForm) objectInputStream.readObject();
-            // Trouve l'emplacement du fichier jar (ou du fichier java)
-            File jarFile = new File(Server.class.getProtectionDomain().getCodeSource().getLocation().getPath());
-            String jarPath = jarFile.getParentFile().getCanonicalPath();
-            // Enregistrer les informations de l'inscription dans le fichier inscription.txt
-            BufferedWriter writer = new BufferedWriter(new FileWriter(jarPath + File.separator + "data" + File.separator + "inscription.txt", true));
-            String line = registrationForm.getCourse().getSession() + "\t" + registrationForm.getCourse().getCode() + "\t" + registrationForm.getMatricule() + "\t" + registrationForm.getPrenom() + "\t" + registrationForm.getNom() + "\t" + registrationForm.getEmail() + "\n";
-            writer.write(line);
-            writer.close();
-            // Envoyer un message de confirmation au client en utilisant le flux de sortie de l'objet
-            objectOutputStream.writeObject(String.format("Félicitations! Inscription réussie de %s au cours %s", registrationForm.getPrenom(), registrationForm.getCourse().getCode()));
+            Object message = connection.readObject();
+            // Vérifier le formulaire et réserver la place dans l'index avant d'écrire, sans lire aucun fichier
+            RegistrationResult result = reserve(message);
+            boolean durable = true;
+            if (result.isAccepted()) {
+                RegistrationForm registrationForm = (RegistrationForm) message;
+                // Enregistrer les informations de l'inscription dans le fichier inscription.txt et attendre qu'elles soient durables
+                try {
+                    journal.append(List.of(registrationForm)).join();
+                } catch (RuntimeException e) {
+                    // L'inscription n'est pas durable: la place est rendue
+                    e.printStackTrace();
+                    durable = false;
+                    registrations.release(registrationForm.getCourse().getSession().trim(), registrationForm.getCourse().getCode().trim(), result.getMatricule());
+                    result.setStatus(RegistrationResult.Status.ERROR);
+                    result.setMessage("Échec: l'inscription n'a pas pu être enregistrée");
+                }
+            }
+            // Envoyer le résultat au client en utilisant le flux de sortie de l'objet
+            connection.writeObject(result);
+            return durable;
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Récupère la liste de formulaires envoyée avec "INSCRIRE_LOT" et renvoie au client une liste de résultats,
+     * un par formulaire et dans le même ordre. Chaque formulaire est vérifié (champs présents, cours offert pendant
+     * la session selon le catalogue), puis sa place est réservée dans l'index. Toutes les inscriptions acceptées sont
+     * ajoutées au journal en une seule écriture durable; si elle échoue, les places sont rendues et chaque inscription
+     * acceptée est signalée en erreur.
+     *
+     * @param connection la connexion du client
+     * @return faux si les inscriptions n'ont pas pu être enregistrées ou si les résultats n'ont pas pu être envoyés
+     */
+    public boolean handleBatchRegistration(Connection connection) {
+        try {
+            Object message = connection.readObject();
+            if (!(message instanceof List<?> forms)) {
+                connection.writeObject(new ArrayList<RegistrationResult>());
+                return false;
+            }
+            ArrayList<RegistrationResult> results = new ArrayList<>(forms.size());
+            List<RegistrationForm> accepted = new ArrayList<>();
+            for (Object element : forms) {
+                RegistrationResult result = reserve(element);
+                results.add(result);
+                if (result.isAccepted()) {
+                    RegistrationForm form = (RegistrationForm) element;
+                    accepted.add(form);
+                }
+            }
+            boolean durable = true;
+            if (!accepted.isEmpty()) {
+                try {
+                    journal.append(accepted).join();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    durable = false;
+                    for (RegistrationForm form : accepted) {
+                        registrations.release(form.getCourse().getSession().trim(), form.getCourse().getCode().trim(), form.getMatricule().trim());
+                    }
+                    for (RegistrationResult result : results) {
+                        if (result.isAccepted()) {
+                            result.setStatus(RegistrationResult.Status.ERROR);
+                            result.setMessage("Échec: l'inscription n'a pas pu être enregistrée");
+                        }
+                    }
+                }
+            }
+            connection.writeObject(results);
+            return durable;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Vérifie un formulaire (champs présents, cours offert pendant la session selon le catalogue)
+     * et réserve sa place dans l'index s'il est valide
+     *
+     * @param element le formulaire reçu, seul ou dans un lot
+     * @return le résultat de l'inscription, ACCEPTED si la place est réservée
+     */
+    private RegistrationResult reserve(Object element) {
+        if (!(element instanceof RegistrationForm form) || form.getCourse() == null
+                || isBlank(form.getMatricule()) || isBlank(form.getCourse().getSession()) || isBlank(form.getCourse().getCode())) {
+            return new RegistrationResult(null, null, RegistrationResult.Status.INVALID, "Échec: formulaire d'inscription incomplet");
+        }
+        String session = form.getCourse().getSession().trim();
+        String code = form.getCourse().getCode().trim();
+        String matricule = form.getMatricule().trim();
+        if (catalog.findCourse(session, code) == null) {
+            return new RegistrationResult(matricule, code, RegistrationResult.Status.INVALID,
+                    String.format("Échec: le cours %s n'est pas offert à la session %s", code, session));
+        }
+        switch (registrations.reserve(session, code, matricule)) {
+            case DUPLICATE:
+                return new RegistrationResult(matricule, code, RegistrationResult.Status.DUPLICATE,
+                        String.format("Échec: le matricule %s est déjà inscrit au cours %s", matricule, code));
+            case FULL:
+                return new RegistrationResult(matricule, code, RegistrationResult.Status.FULL,
+                        String.format("Échec: le cours %s est complet", code));
+            default:
+                return new RegistrationResult(matricule, code, RegistrationResult.Status.ACCEPTED,
+                        String.format("Félicitations! Inscription réussie de %s au cours %s", form.getPrenom(), code));
+        }
+    }
+
+    /**
+     * @return vrai si la chaîne est absente ou ne contient que des espaces
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,284 @@
+package server;
+
+/**
+ * La classe ServerConfig regroupe les paramètres de fonctionnement du serveur.
+ * Chaque méthode de configuration retourne la configuration elle-même pour pouvoir enchaîner les appels.
+ */
+public class ServerConfig {
+
+    /**
+     * La taille de la file d'attente des connexions pas encore acceptées
+     */
+    private int backlog = Server.DEFAULT_BACKLOG;
+    /**
+     * La façon de servir les connexions acceptées: un thread virtuel par connexion, pour qu'un client qui garde
+     * sa connexion ouverte ("MAINTENIR") n'empêche pas les autres d'être servis
+     */
+    private ConnectionMode mode = ConnectionMode.VIRTUAL;
+    /**
+     * Le nombre de threads en mode POOL
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+    /**
+     * Le nombre maximal d'inscriptions écrites par lot dans inscription.txt
+     */
+    private int journalBatchSize = RegistrationJournal.DEFAULT_BATCH_SIZE;
+    /**
+     * Le temps maximal pendant lequel un lot d'inscriptions attend d'autres inscriptions
+     */
+    private long journalMaxLatencyMillis = 0;
+    /**
+     * Vrai pour écrire les inscriptions dans le journal binaire, compacté ensuite dans inscription.txt
+     */
+    private boolean writeAheadLog = false;
+    /**
+     * Les moments où le journal binaire force ses écritures sur le disque
+     */
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUP;
+    /**
+     * L'intervalle entre deux appels à force() du journal binaire avec la politique INTERVAL
+     */
+    private long fsyncIntervalMillis = 10;
+    /**
+     * La taille d'un segment du journal binaire au-delà de laquelle il est remplacé par un nouveau segment
+     */
+    private long walSegmentSize = RegistrationWal.DEFAULT_SEGMENT_SIZE;
+    /**
+     * L'intervalle entre deux compactions des segments fermés du journal binaire dans inscription.txt
+     */
+    private long compactionIntervalMillis = 60_000;
+    /**
+     * Le délai d'inactivité, en millisecondes, après lequel une connexion est fermée (0 pour aucun délai)
+     */
+    private int idleTimeoutMillis = 30_000;
+    /**
+     * Le nombre de threads de sélection en mode NIO
+     */
+    private int selectorThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * Le port d'administration local qui affiche les mesures du serveur (-1 pour le désactiver, 0 pour un port libre)
+     */
+    private int adminPort = -1;
+    /**
+     * Le nombre de threads partagés par les gestionnaires d'évènements asynchrones
+     */
+    private int handlerThreads = 2;
+    /**
+     * Le nombre d'évènements qu'un gestionnaire asynchrone peut avoir en attente avant de ralentir les clients
+     */
+    private int handlerQueueCapacity = 1024;
+    /**
+     * Le nombre maximal d'inscrits par cours, sauf capacité propre dans capacites.txt (0 pour aucune limite)
+     */
+    private int courseCapacity = RegistrationIndex.UNLIMITED;
+    /**
+     * Le nombre maximal de commandes traitées en même temps, au-delà duquel le serveur répond "occupé" (0 pour aucune limite)
+     */
+    private int maxInFlight = 1024;
+    /**
+     * Le débit moyen permis à chaque adresse IP, en commandes par seconde (0 pour aucune limite)
+     */
+    private int rateLimit = AdmissionControl.UNLIMITED;
+    /**
+     * Le nombre de commandes qu'une adresse IP peut envoyer d'un coup (0 pour une seconde de débit)
+     */
+    private int rateBurst = 0;
+    /**
+     * Le temps maximal, en millisecondes, laissé aux commandes en cours quand le serveur s'arrête
+     */
+    private long shutdownTimeoutMillis = 10_000;
+    /**
+     * Le dossier contenant cours.txt et inscription.txt (null pour celui de la propriété server.data.dir ou le dossier
+     * par défaut); chaque fragment d'un déploiement réparti a le sien
+     */
+    private String dataDir;
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public ServerConfig setBacklog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    public ConnectionMode getMode() {
+        return mode;
+    }
+
+    public ServerConfig setMode(ConnectionMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public ServerConfig setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    public int getJournalBatchSize() {
+        return journalBatchSize;
+    }
+
+    public ServerConfig setJournalBatchSize(int journalBatchSize) {
+        this.journalBatchSize = journalBatchSize;
+        return this;
+    }
+
+    public long getJournalMaxLatencyMillis() {
+        return journalMaxLatencyMillis;
+    }
+
+    public ServerConfig setJournalMaxLatencyMillis(long journalMaxLatencyMillis) {
+        this.journalMaxLatencyMillis = journalMaxLatencyMillis;
+        return this;
+    }
+
+    public boolean isWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    public ServerConfig setWriteAheadLog(boolean writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        return this;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public ServerConfig setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+        return this;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    public ServerConfig setFsyncIntervalMillis(long fsyncIntervalMillis) {
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        return this;
+    }
+
+    public long getWalSegmentSize() {
+        return walSegmentSize;
+    }
+
+    public ServerConfig setWalSegmentSize(long walSegmentSize) {
+        this.walSegmentSize = walSegmentSize;
+        return this;
+    }
+
+    public long getCompactionIntervalMillis() {
+        return compactionIntervalMillis;
+    }
+
+    public ServerConfig setCompactionIntervalMillis(long compactionIntervalMillis) {
+        this.compactionIntervalMillis = compactionIntervalMillis;
+        return this;
+    }
+
+    public int getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public ServerConfig setIdleTimeoutMillis(int idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public ServerConfig setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+        return this;
+    }
+
+    public int getAdminPort() {
+        return adminPort;
+    }
+
+    public ServerConfig setAdminPort(int adminPort) {
+        this.adminPort = adminPort;
+        return this;
+    }
+
+    public int getHandlerThreads() {
+        return handlerThreads;
+    }
+
+    public ServerConfig setHandlerThreads(int handlerThreads) {
+        this.handlerThreads = handlerThreads;
+        return this;
+    }
+
+    public int getHandlerQueueCapacity() {
+        return handlerQueueCapacity;
+    }
+
+    public ServerConfig setHandlerQueueCapacity(int handlerQueueCapacity) {
+        this.handlerQueueCapacity = handlerQueueCapacity;
+        return this;
+    }
+
+    public int getCourseCapacity() {
+        return courseCapacity;
+    }
+
+    public ServerConfig setCourseCapacity(int courseCapacity) {
+        this.courseCapacity = courseCapacity;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ServerConfig setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public ServerConfig setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    public ServerConfig setRateBurst(int rateBurst) {
+        this.rateBurst = rateBurst;
+        return this;
+    }
+
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public ServerConfig setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        return this;
+    }
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public ServerConfig setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+        return this;
+    }
+}
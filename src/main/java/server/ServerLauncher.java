@@ -2,15 +2,88 @@ package server;
 
 public class ServerLauncher {
     public final static int PORT = 1337;
+    /**
+     * Port d'administration par défaut, qui affiche les mesures du serveur
+     */
+    public final static int ADMIN_PORT = 1338;
 
+    /**
+     * Démarre le serveur
+     * Options acceptées: --port=N (1337 par défaut), --data-dir=DOSSIER, --mode=single|pool|virtual|nio (virtual par défaut), --threads=N (mode pool), --selectors=N (mode nio), --backlog=N,
+     * --batch=N (inscriptions par lot), --batch-latency=MS (attente maximale d'un lot),
+     * --wal (journal binaire compacté dans inscription.txt), --fsync=every_record|group|interval, --fsync-interval=MS,
+     * --wal-segment=OCTETS, --compaction-interval=MS (politique de synchronisation, segments et compaction du journal binaire),
+     * --idle-timeout=MS (délai d'inactivité des connexions), --admin-port=N (port des mesures, -1 pour le désactiver),
+     * --handler-threads=N, --handler-queue=N (threads et taille des files des gestionnaires asynchrones)
+     * --capacity=N (nombre maximal d'inscrits par cours, 0 pour aucune limite),
+     * --max-in-flight=N (commandes traitées en même temps avant de répondre "occupé", 0 pour aucune limite)
+     * --rate=N, --burst=N (débit moyen et rafale permis à chaque adresse IP, 0 pour aucune limite)
+     * et --shutdown-timeout=MS (attente maximale des commandes en cours à l'arrêt).
+     * Le serveur s'arrête proprement quand le processus reçoit un signal d'arrêt (Ctrl-C, kill)
+     *
+     * @param args les options de lancement
+     */
     public static void main(String[] args) {
-        Server server;
+        ServerConfig config = new ServerConfig().setAdminPort(ADMIN_PORT);
+        int port = PORT;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(value);
+            } else if (arg.startsWith("--data-dir=")) {
+                config.setDataDir(value);
+            } else if (arg.startsWith("--mode=")) {
+                config.setMode(ConnectionMode.valueOf(value.toUpperCase()));
+            } else if (arg.startsWith("--threads=")) {
+                config.setPoolSize(Integer.parseInt(value));
+            } else if (arg.startsWith("--backlog=")) {
+                config.setBacklog(Integer.parseInt(value));
+            } else if (arg.startsWith("--batch=")) {
+                config.setJournalBatchSize(Integer.parseInt(value));
+            } else if (arg.startsWith("--batch-latency=")) {
+                config.setJournalMaxLatencyMillis(Long.parseLong(value));
+            } else if (arg.equals("--wal")) {
+                config.setWriteAheadLog(true);
+            } else if (arg.startsWith("--fsync=")) {
+                config.setFsyncPolicy(FsyncPolicy.valueOf(value.toUpperCase()));
+            } else if (arg.startsWith("--fsync-interval=")) {
+                config.setFsyncIntervalMillis(Long.parseLong(value));
+            } else if (arg.startsWith("--wal-segment=")) {
+                config.setWalSegmentSize(Long.parseLong(value));
+            } else if (arg.startsWith("--compaction-interval=")) {
+                config.setCompactionIntervalMillis(Long.parseLong(value));
+            } else if (arg.startsWith("--idle-timeout=")) {
+                config.setIdleTimeoutMillis(Integer.parseInt(value));
+            } else if (arg.startsWith("--selectors=")) {
+                config.setSelectorThreads(Integer.parseInt(value));
+            } else if (arg.startsWith("--admin-port=")) {
+                config.setAdminPort(Integer.parseInt(value));
+            } else if (arg.startsWith("--handler-threads=")) {
+                config.setHandlerThreads(Integer.parseInt(value));
+            } else if (arg.startsWith("--handler-queue=")) {
+                config.setHandlerQueueCapacity(Integer.parseInt(value));
+            } else if (arg.startsWith("--capacity=")) {
+                config.setCourseCapacity(Integer.parseInt(value));
+            } else if (arg.startsWith("--max-in-flight=")) {
+                config.setMaxInFlight(Integer.parseInt(value));
+            } else if (arg.startsWith("--rate=")) {
+                config.setRateLimit(Integer.parseInt(value));
+            } else if (arg.startsWith("--burst=")) {
+                config.setRateBurst(Integer.parseInt(value));
+            } else if (arg.startsWith("--shutdown-timeout=")) {
+                config.setShutdownTimeoutMillis(Long.parseLong(value));
+            } else {
+                System.out.println("Option inconnue: " + arg);
+                return;
+            }
+        }
         try {
-            server = new Server(PORT);
-            System.out.println("Server is running...");
-            server.run();
+            Server server = new Server(port, config);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(config.getShutdownTimeoutMillis()), "server-shutdown"));
+            server.start();
+            System.out.println("Server is running (" + config.getMode() + ")...");
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
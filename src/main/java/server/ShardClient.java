@@ -0,0 +1,199 @@
+package server;
+
+import server.protocol.BinaryCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe ShardClient garde des connexions persistantes vers un fragment d'un déploiement réparti, pour
+ * le routeur. Chaque connexion parle le format binaire et est annoncée avec "MAINTENIR"; une connexion libre est
+ * reprise par la commande suivante au lieu d'en ouvrir une nouvelle. Une connexion restée libre trop longtemps
+ * est fermée plutôt que réutilisée, car le fragment l'a peut-être déjà fermée (délai d'inactivité).
+ */
+class ShardClient implements AutoCloseable {
+
+    /**
+     * Temps après lequel une connexion libre n'est plus réutilisée, bien en deçà du délai d'inactivité par défaut
+     * des serveurs
+     */
+    private final static long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Une connexion persistante vers le fragment
+     */
+    static final class Backend implements AutoCloseable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        /**
+         * Le moment où la connexion a été rendue pour la dernière fois, selon System.nanoTime()
+         */
+        private long releasedAt;
+
+        private Backend(InetSocketAddress address) throws IOException {
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            try {
+                socket.setTcpNoDelay(true);
+                this.in = new BufferedInputStream(socket.getInputStream());
+                this.out = new BufferedOutputStream(socket.getOutputStream());
+                out.write(BinaryCodec.MAGIC);
+                out.flush();
+                if (!Arrays.equals(in.readNBytes(BinaryCodec.MAGIC.length), BinaryCodec.MAGIC)) {
+                    throw new StreamCorruptedException("Le fragment " + address + " ne supporte pas le format binaire");
+                }
+                send(Server.KEEP_ALIVE_COMMAND);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Écrit un message sans vider le tampon
+         */
+        void send(Object message) throws IOException {
+            BinaryCodec.writeMessage(out, message);
+        }
+
+        /**
+         * Vide le tampon de sortie vers le fragment
+         */
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * @return le message suivant du fragment
+         */
+        Object receive() throws IOException {
+            return BinaryCodec.readMessage(in);
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // la connexion est déjà inutilisable
+            }
+        }
+    }
+
+    /**
+     * L'adresse du fragment
+     */
+    private final InetSocketAddress address;
+    /**
+     * Les connexions libres, la plus récemment rendue en dernier: elle est reprise la première, et les plus anciennes
+     * finissent par expirer
+     */
+    private final Deque<Backend> idle = new ConcurrentLinkedDeque<>();
+    /**
+     * Vrai une fois le client fermé: les connexions rendues sont fermées
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param address l'adresse du fragment
+     */
+    ShardClient(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * @return le nom du fragment, "hôte:port", qui fixe sa place sur l'anneau de hachage
+     */
+    String getName() {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Prend une connexion libre, ou en ouvre une nouvelle
+     *
+     * @return une connexion réservée à l'appelant jusqu'à {@link #release(Backend)}
+     * @throws IOException si la connexion au fragment échoue
+     */
+    Backend borrow() throws IOException {
+        long now = System.nanoTime();
+        Backend backend;
+        while ((backend = idle.pollLast()) != null) {
+            if (now - backend.releasedAt < MAX_IDLE_NANOS) {
+                return backend;
+            }
+            backend.close();
+        }
+        return new Backend(address);
+    }
+
+    /**
+     * Rend une connexion dont la dernière réponse a été lue en entier (une connexion en erreur est fermée à la place),
+     * et ferme au passage la plus ancienne si elle a expiré
+     *
+     * @param backend la connexion
+     */
+    void release(Backend backend) {
+        backend.releasedAt = System.nanoTime();
+        idle.addLast(backend);
+        Backend oldest = idle.peekFirst();
+        if (oldest != null && backend.releasedAt - oldest.releasedAt >= MAX_IDLE_NANOS && idle.remove(oldest)) {
+            oldest.close();
+        }
+        if (closed) {
+            close();
+        }
+    }
+
+    /**
+     * Envoie une commande, suivie de ses objets, et lit la réponse du fragment
+     *
+     * @param command la ligne de commande
+     * @param objects les objets qui accompagnent la commande
+     * @return la réponse du fragment
+     * @throws IOException si la connexion échoue; la connexion est alors fermée
+     */
+    Object request(String command, Object... objects) throws IOException {
+        Backend backend = borrow();
+        try {
+            backend.send(command);
+            for (Object object : objects) {
+                backend.send(object);
+            }
+            backend.flush();
+            Object reply = backend.receive();
+            release(backend);
+            return reply;
+        } catch (IOException | RuntimeException e) {
+            backend.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ferme les connexions libres; celles en cours d'utilisation sont fermées quand elles sont rendues
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Backend backend;
+        while ((backend = idle.poll()) != null) {
+            backend.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
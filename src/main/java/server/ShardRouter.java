@@ -0,0 +1,481 @@
+package server;
+
+import server.metrics.MetricsEndpoint;
+import server.metrics.ServerMetrics;
+import server.models.CoursePage;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * La classe ShardRouter est le point d'entrée d'un déploiement réparti: les clients s'y connectent comme à un serveur
+ * ordinaire, et le routeur relaie leurs commandes à plusieurs serveurs, les fragments.
+ * <p>
+ * Chaque fragment est un {@link Server} avec son propre dossier de données et le même cours.txt. Les inscriptions
+ * d'un cours (session et code) appartiennent toujours au même fragment, choisi par hachage cohérent
+ * ({@link ConsistentHashRing}): c'est lui qui refuse les doublons et les cours complets, et qui écrit l'inscription
+ * dans son inscription.txt. "INSCRIRE_LOT" est découpé par fragment, les morceaux sont envoyés en parallèle et
+ * les résultats sont remis dans l'ordre des formulaires. "CHARGER" et "CHERCHER" ne lisent que le catalogue, commun
+ * à tous les fragments: ils sont envoyés à tour de rôle à chacun, et au suivant si l'un ne répond pas.
+ * <p>
+ * Le routeur ne garde aucune donnée: chaque client est servi sur un thread virtuel, et les connexions vers les fragments
+ * sont persistantes et partagées ({@link ShardClient}). Les messages sont décodés puis réencodés, donc un client
+ * en sérialisation Java peut passer par le routeur, qui parle le format binaire aux fragments. Le contrôle d'admission
+ * et les mesures sont les mêmes que ceux d'un serveur.
+ */
+public class ShardRouter {
+
+    /**
+     * Le ServerSocket qui accepte les clients
+     */
+    private final ServerSocket server;
+    /**
+     * Les fragments, dans l'ordre de la configuration
+     */
+    private final List<ShardClient> shards;
+    /**
+     * L'anneau qui associe chaque cours à son fragment
+     */
+    private final ConsistentHashRing<ShardClient> ring;
+    /**
+     * Les threads virtuels qui servent les clients et envoient les morceaux de lots
+     */
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("router-", 0).factory());
+    /**
+     * Le prochain fragment interrogé pour une lecture
+     */
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    /**
+     * Délai d'inactivité, en millisecondes, après lequel une connexion de client est fermée
+     */
+    private final int idleTimeoutMillis;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final AdmissionControl admission;
+    /**
+     * Le port d'administration qui affiche les mesures, null s'il est désactivé
+     */
+    private final MetricsEndpoint metricsEndpoint;
+    /**
+     * Les sockets des clients connectés, fermés à l'arrêt
+     */
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    /**
+     * Vrai une fois {@link #stop(long)} appelé
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Crée un routeur qui écoute au port spécifié
+     *
+     * @param port   le port où les clients se connectent
+     * @param shards les adresses des fragments
+     * @param config les paramètres du routeur: file d'attente, délai d'inactivité, contrôle d'admission, port d'administration
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public ShardRouter(int port, List<InetSocketAddress> shards, ServerConfig config) throws IOException {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Le routeur a besoin d'au moins un fragment");
+        }
+        this.shards = shards.stream().map(ShardClient::new).toList();
+        Map<String, ShardClient> named = new LinkedHashMap<>();
+        for (ShardClient shard : this.shards) {
+            named.put(shard.getName(), shard);
+        }
+        this.ring = new ConsistentHashRing<>(named);
+        this.idleTimeoutMillis = config.getIdleTimeoutMillis();
+        this.admission = new AdmissionControl(config.getMaxInFlight(), config.getRateLimit(), config.getRateBurst(), metrics);
+        this.server = new ServerSocket(port, config.getBacklog());
+        this.metrics.registerMBeans(server.getLocalPort());
+        this.metricsEndpoint = config.getAdminPort() >= 0 ? new MetricsEndpoint(metrics, config.getAdminPort()) : null;
+    }
+
+    /**
+     * @return le port sur lequel le routeur écoute réellement (utile si le port 0 a été demandé)
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return les mesures du routeur, aussi exposées par JMX et sur le port d'administration
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param session la session du cours
+     * @param code    le code du cours
+     * @return la position, dans la liste donnée au constructeur, du fragment qui possède les inscriptions du cours
+     */
+    public int getShardIndex(String session, String code) {
+        return shards.indexOf(ring.get(shardKey(session, code)));
+    }
+
+    /**
+     * Accepte les clients et sert chacun sur son propre thread virtuel, jusqu'à {@link #stop(long)}
+     */
+    public void run() {
+        while (!stopping) {
+            try {
+                Socket client = server.accept();
+                long acceptedAt = System.nanoTime();
+                executor.execute(() -> serve(client, acceptedAt));
+            } catch (Exception e) {
+                if (!stopping) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Arrête le routeur: plus aucun client n'est accepté, les commandes en cours reçoivent la réponse de leur fragment,
+     * puis les connexions des clients et celles vers les fragments sont fermées
+     *
+     * @param timeoutMillis le temps maximal d'attente des commandes en cours
+     * @return vrai si toutes les commandes en cours ont terminé avant le délai
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        if (stopping) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        stopping = true;
+        admission.close();
+        boolean drained = false;
+        try {
+            server.close();
+            drained = admission.awaitIdle(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // le client est déjà déconnecté
+            }
+        }
+        executor.shutdown();
+        shards.forEach(ShardClient::close);
+        try {
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return drained;
+    }
+
+    /**
+     * Sert un client: ouvre sa connexion dans le format qu'il a choisi et relaie ses commandes
+     *
+     * @param client     le socket du client
+     * @param acceptedAt le moment où la connexion a été acceptée, selon System.nanoTime()
+     */
+    private void serve(Socket client, long acceptedAt) {
+        openSockets.add(client);
+        if (stopping) {
+            openSockets.remove(client);
+            try {
+                client.close();
+            } catch (IOException e) {
+                // le client est déjà déconnecté
+            }
+            return;
+        }
+        metrics.connectionOpened(System.nanoTime() - acceptedAt);
+        try {
+            client.setSoTimeout(idleTimeoutMillis);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try (Connection connection = Connection.open(client)) {
+            boolean keepAlive = false;
+            do {
+                String line;
+                try {
+                    line = connection.readObject().toString();
+                } catch (EOFException | SocketTimeoutException e) {
+                    // Le client a fermé la connexion ou est resté inactif trop longtemps
+                    break;
+                }
+                keepAlive = route(connection, line, keepAlive);
+            } while (keepAlive);
+        } catch (Exception e) {
+            if (!stopping) {
+                e.printStackTrace();
+            }
+        } finally {
+            openSockets.remove(client);
+            metrics.connectionClosed();
+        }
+    }
+
+    /**
+     * Relaie une ligne de commande d'un client au fragment qui doit la traiter, puis lui renvoie la réponse.
+     * Comme pour un serveur, la commande passe d'abord le contrôle d'admission et est mesurée.
+     *
+     * @param connection la connexion du client
+     * @param line       la ligne de commande
+     * @param keepAlive  vrai si la connexion est maintenue ouverte
+     * @return vrai si la connexion doit rester ouverte pour d'autres commandes
+     * @throws IOException            si la connexion du client échoue
+     * @throws ClassNotFoundException si le client envoie un objet d'une classe inconnue
+     */
+    boolean route(Connection connection, String line, boolean keepAlive) throws IOException, ClassNotFoundException {
+        Command command = CommandParser.parse(line);
+        if (command == Command.KEEP_ALIVE || command == Command.CLOSE) {
+            connection.takeBytesRead();
+            connection.takeBytesWritten();
+            return command == Command.KEEP_ALIVE;
+        }
+        AdmissionControl.Decision decision = admission.tryAdmit(connection.getRemoteAddress());
+        if (decision != AdmissionControl.Decision.ADMITTED) {
+            return Server.reject(connection, command, decision) && keepAlive && decision != AdmissionControl.Decision.CLOSED;
+        }
+        try {
+            long start = System.nanoTime();
+            boolean success = true;
+            switch (command) {
+                case REGISTER:
+                    success = routeRegistration(connection);
+                    break;
+                case BATCH_REGISTER:
+                    success = routeBatchRegistration(connection);
+                    break;
+                case LOAD:
+                case SEARCH:
+                    success = routeRead(connection, line, command, CommandParser.argument(line, command));
+                    break;
+                default:
+                    success = routeEvent(line);
+            }
+            long elapsed = System.nanoTime() - start;
+            metrics.command(command == Command.UNKNOWN ? Server.UNKNOWN_COMMAND_METRIC : command.getKeyword())
+                    .record(elapsed, connection.takeBytesRead(), connection.takeBytesWritten(), success);
+        } finally {
+            admission.release();
+        }
+        return keepAlive && !stopping;
+    }
+
+    /**
+     * Relaie "CHARGER" ou "CHERCHER" à un fragment, à tour de rôle, et au suivant s'il ne répond pas.
+     * Pour "CHARGER ... FLUX", les pages suivantes sont relayées au client à mesure qu'elles arrivent.
+     *
+     * @return faux si aucun fragment n'a répondu ou si le fragment a refusé la commande
+     */
+    private boolean routeRead(Connection connection, String line, Command command, String arg) throws IOException {
+        boolean stream = false;
+        if (command == Command.LOAD) {
+            try {
+                stream = LoadRequest.parse(arg).mode() == LoadRequest.Mode.STREAM;
+            } catch (IllegalArgumentException e) {
+                // le fragment répondra par un message d'échec
+            }
+        }
+        int first = nextReplica.getAndIncrement();
+        for (int attempt = 0; attempt < shards.size(); attempt++) {
+            ShardClient shard = shards.get(Math.floorMod(first + attempt, shards.size()));
+            ShardClient.Backend backend = null;
+            Object reply;
+            try {
+                backend = shard.borrow();
+                backend.send(line);
+                backend.flush();
+                reply = backend.receive();
+            } catch (IOException e) {
+                // La connexion vers ce fragment est dans un état inconnu: elle est fermée, pas rendue
+                if (backend != null) {
+                    backend.close();
+                }
+                // Rien n'a encore été envoyé au client: un autre fragment a le même catalogue
+                continue;
+            }
+            try {
+                connection.writeObject(reply);
+                while (stream && reply instanceof CoursePage page && page.isModified() && !page.isLast()) {
+                    reply = backend.receive();
+                    connection.writeObject(reply);
+                }
+            } catch (IOException e) {
+                // Le client ou le fragment a coupé le flux au milieu: aucune des deux connexions n'est réutilisable
+                backend.close();
+                throw e;
+            }
+            shard.release(backend);
+            return !(reply instanceof String);
+        }
+        connection.writeObject("Échec: aucun serveur ne répond, réessayez plus tard");
+        return false;
+    }
+
+    /**
+     * Relaie une commande inconnue à un fragment, pour ses gestionnaires d'évènements; elle n'a pas de réponse
+     *
+     * @return faux si le fragment n'a pas pu la recevoir
+     */
+    private boolean routeEvent(String line) {
+        ShardClient shard = nextReplica();
+        ShardClient.Backend backend = null;
+        try {
+            backend = shard.borrow();
+            backend.send(line);
+            backend.flush();
+            shard.release(backend);
+            return true;
+        } catch (IOException e) {
+            if (backend != null) {
+                backend.close();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Relaie "INSCRIRE" au fragment qui possède le cours du formulaire
+     *
+     * @return faux si l'inscription n'a pas été acceptée
+     */
+    private boolean routeRegistration(Connection connection) throws IOException, ClassNotFoundException {
+        Object form = connection.readObject();
+        ShardClient shard = shardOf(form);
+        Object reply;
+        try {
+            reply = shard.request(Server.REGISTER_COMMAND, form);
+        } catch (IOException e) {
+            e.printStackTrace();
+            reply = unavailable(form);
+        }
+        connection.writeObject(reply);
+        return reply instanceof RegistrationResult result && result.isAccepted();
+    }
+
+    /**
+     * Découpe "INSCRIRE_LOT" par fragment, envoie les morceaux en parallèle et renvoie les résultats dans l'ordre
+     * des formulaires. Les formulaires d'un fragment qui ne répond pas, ou qui refuse le morceau, sont refusés avec
+     * la raison.
+     *
+     * @return faux si le lot n'était pas une liste ou si un fragment n'a pas traité son morceau
+     */
+    private boolean routeBatchRegistration(Connection connection) throws IOException, ClassNotFoundException {
+        Object batch = connection.readObject();
+        if (!(batch instanceof List<?> forms)) {
+            // Le fragment répond lui-même au message mal formé
+            Object reply;
+            try {
+                reply = nextReplica().request(Server.BATCH_REGISTER_COMMAND, batch);
+            } catch (IOException e) {
+                reply = "Échec: aucun serveur ne répond, réessayez plus tard";
+            }
+            connection.writeObject(reply);
+            return false;
+        }
+        // Les positions des formulaires de chaque fragment, dans l'ordre du lot
+        Map<ShardClient, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < forms.size(); i++) {
+            positions.computeIfAbsent(shardOf(forms.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        Map<ShardClient, Future<Object>> replies = new LinkedHashMap<>();
+        for (Map.Entry<ShardClient, List<Integer>> entry : positions.entrySet()) {
+            ArrayList<Object> part = new ArrayList<>(entry.getValue().size());
+            for (int i : entry.getValue()) {
+                part.add(forms.get(i));
+            }
+            replies.put(entry.getKey(), executor.submit(() -> entry.getKey().request(Server.BATCH_REGISTER_COMMAND, part)));
+        }
+        RegistrationResult[] results = new RegistrationResult[forms.size()];
+        boolean success = true;
+        for (Map.Entry<ShardClient, List<Integer>> entry : positions.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            Object reply;
+            try {
+                reply = replies.get(entry.getKey()).get();
+            } catch (Exception e) {
+                e.printStackTrace();
+                reply = null;
+            }
+            if (reply instanceof List<?> partResults && partResults.size() == indexes.size()) {
+                for (int i = 0; i < indexes.size(); i++) {
+                    // Un fragment d'une autre version pourrait répondre autre chose qu'un résultat
+                    if (partResults.get(i) instanceof RegistrationResult result) {
+                        results[indexes.get(i)] = result;
+                    } else {
+                        results[indexes.get(i)] = unavailable(forms.get(indexes.get(i)));
+                        success = false;
+                    }
+                }
+                continue;
+            }
+            success = false;
+            for (int i : indexes) {
+                results[i] = reply instanceof String message
+                        ? new RegistrationResult(null, null, RegistrationResult.Status.ERROR, message)
+                        : unavailable(forms.get(i));
+            }
+        }
+        connection.writeObject(new ArrayList<>(List.of(results)));
+        return success;
+    }
+
+    /**
+     * @param form le formulaire reçu du client
+     * @return le fragment qui possède le cours du formulaire, ou un fragment quelconque si le formulaire est incomplet
+     * (il le refusera)
+     */
+    private ShardClient shardOf(Object form) {
+        if (form instanceof RegistrationForm registration && registration.getCourse() != null
+                && registration.getCourse().getSession() != null && registration.getCourse().getCode() != null) {
+            return ring.get(shardKey(registration.getCourse().getSession(), registration.getCourse().getCode()));
+        }
+        return shards.get(0);
+    }
+
+    /**
+     * @return la clé de hachage d'un cours, comparée comme le fait le serveur (sans les espaces autour)
+     */
+    private static String shardKey(String session, String code) {
+        return session.trim() + "\t" + code.trim();
+    }
+
+    /**
+     * @return le prochain fragment à interroger pour une lecture
+     */
+    private ShardClient nextReplica() {
+        return shards.get(Math.floorMod(nextReplica.getAndIncrement(), shards.size()));
+    }
+
+    /**
+     * @param form le formulaire dont le fragment ne répond pas
+     * @return le résultat d'échec de l'inscription
+     */
+    private static RegistrationResult unavailable(Object form) {
+        String matricule = form instanceof RegistrationForm registration ? registration.getMatricule() : null;
+        String code = form instanceof RegistrationForm registration && registration.getCourse() != null
+                ? registration.getCourse().getCode() : null;
+        return new RegistrationResult(matricule, code, RegistrationResult.Status.ERROR,
+                "Échec: le serveur de ce cours ne répond pas, réessayez plus tard");
+    }
+}
@@ -0,0 +1,84 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La classe StringTable associe chaque chaîne distincte à un numéro, dans l'ordre de leur première apparition.
+ * Les structures qui gardent beaucoup de valeurs répétées (sessions, codes de cours, matricules) gardent le numéro,
+ * un simple int, au lieu d'une référence vers une copie de la chaîne; {@link #canonical(String)} remplace aussi une
+ * chaîne lue d'un fichier par la copie unique de la table.
+ * La table est sûre entre threads: les lectures ne prennent aucun verrou, seul l'ajout d'une nouvelle chaîne en prend un.
+ */
+public class StringTable {
+
+    /**
+     * Le numéro de chaque chaîne
+     */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * Les chaînes, par numéro; le tableau est remplacé par un plus grand quand il est plein
+     */
+    private volatile String[] values = new String[16];
+    /**
+     * Le nombre de chaînes de la table (protégé par la table elle-même)
+     */
+    private int size;
+
+    /**
+     * @param value la chaîne
+     * @return le numéro de la chaîne, ajoutée à la table si elle n'y était pas
+     */
+    public int intern(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            // La chaîne est rangée avant que son numéro soit visible des autres threads
+            values[size] = value;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param value la chaîne
+     * @return le numéro de la chaîne, ou -1 si elle n'est pas dans la table
+     */
+    public int find(String value) {
+        Integer id = ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id un numéro retourné par {@link #intern(String)}
+     * @return la chaîne de ce numéro
+     */
+    public String get(int id) {
+        return values[id];
+    }
+
+    /**
+     * @param value la chaîne
+     * @return la copie de la chaîne gardée par la table, ajoutée si elle n'y était pas
+     */
+    public String canonical(String value) {
+        return get(intern(value));
+    }
+
+    /**
+     * @return le nombre de chaînes distinctes de la table
+     */
+    public int size() {
+        return ids.size();
+    }
+}
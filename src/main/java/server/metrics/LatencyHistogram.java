@@ -0,0 +1,135 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de latences à précision relative constante, dans l'esprit de HdrHistogram.
+ * Chaque puissance de deux est découpée en {@value #SUB_BUCKETS} intervalles égaux, ce qui garde une erreur
+ * d'au plus 1/{@value #SUB_BUCKETS} (environ 3 %) sur toute la plage des valeurs, de la nanoseconde aux heures,
+ * dans un tableau de taille fixe. L'enregistrement n'alloue rien et peut être appelé par plusieurs threads à la fois.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Nombre de bits de précision de chaque puissance de deux
+     */
+    private final static int SUB_BUCKET_BITS = 5;
+    /**
+     * Nombre d'intervalles par puissance de deux
+     */
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Nombre total d'intervalles, assez pour toutes les valeurs positives d'un long
+     */
+    private final static int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Le nombre de valeurs de chaque intervalle
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /**
+     * La somme des valeurs enregistrées
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * La plus grande valeur enregistrée
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Enregistre une valeur
+     *
+     * @param value la valeur, en nanosecondes (une valeur négative compte comme 0)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        total.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @param value une valeur positive
+     * @return l'intervalle qui contient la valeur
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            // Les petites valeurs sont exactes
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @param index un intervalle
+     * @return la plus grande valeur que contient l'intervalle
+     */
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @return le nombre de valeurs enregistrées
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return la plus grande valeur enregistrée, 0 si aucune
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return la moyenne des valeurs enregistrées, 0 si aucune
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) total.get() / count;
+    }
+
+    /**
+     * Retourne la valeur sous laquelle se trouve la proportion demandée des valeurs enregistrées
+     *
+     * @param quantile la proportion, entre 0 et 1 (par exemple 0.99 pour le 99e centile)
+     * @return la valeur du centile, à la précision de l'histogramme près, 0 si aucune valeur n'est enregistrée
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, quantile)) * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+}
@@ -0,0 +1,73 @@
+package server.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Port d'administration local: chaque connexion reçoit le texte de {@link ServerMetrics#dump()} puis est fermée.
+ * Le port n'écoute que sur l'adresse de bouclage, par exemple pour "nc localhost 1338".
+ */
+public class MetricsEndpoint implements AutoCloseable {
+
+    /**
+     * Les mesures affichées
+     */
+    private final ServerMetrics metrics;
+    /**
+     * Le socket d'écoute du port d'administration
+     */
+    private final ServerSocket socket;
+
+    /**
+     * Ouvre le port d'administration et commence à répondre, sur un thread démon
+     *
+     * @param metrics les mesures à afficher
+     * @param port    le port d'administration
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public MetricsEndpoint(ServerMetrics metrics, int port) throws IOException {
+        this.metrics = metrics;
+        this.socket = new ServerSocket(port, 5, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(this::serve, "metrics-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return le port d'administration
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Répond aux connexions jusqu'à la fermeture du port
+     */
+    private void serve() {
+        while (!socket.isClosed()) {
+            try (Socket client = socket.accept()) {
+                OutputStream out = client.getOutputStream();
+                out.write(metrics.dump().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ferme le port d'administration
+     *
+     * @throws IOException si le socket ne peut pas être fermé
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
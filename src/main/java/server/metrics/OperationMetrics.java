@@ -0,0 +1,112 @@
+package server.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Les mesures d'une opération du serveur (une commande ou un gestionnaire d'évènements):
+ * nombre d'appels, nombre d'erreurs, octets reçus et envoyés et histogramme des latences
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    /**
+     * Le nom de l'opération
+     */
+    private final String name;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    /**
+     * Les latences, en nanosecondes
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param name le nom de l'opération
+     */
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Enregistre un appel de l'opération
+     *
+     * @param nanos    la durée de l'appel, en nanosecondes
+     * @param bytesIn  les octets reçus du client pour cet appel
+     * @param bytesOut les octets envoyés au client pour cet appel
+     * @param success  faux si l'appel a échoué
+     */
+    public void record(long nanos, long bytesIn, long bytesOut, boolean success) {
+        requests.increment();
+        if (!success) {
+            errors.increment();
+        }
+        if (bytesIn > 0) {
+            this.bytesIn.add(bytesIn);
+        }
+        if (bytesOut > 0) {
+            this.bytesOut.add(bytesOut);
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * @return le nom de l'opération
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return l'histogramme des latences, en nanosecondes
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.999));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getMax());
+    }
+}
@@ -0,0 +1,26 @@
+package server.metrics;
+
+/**
+ * Les mesures d'une commande ou d'un gestionnaire d'évènements, telles qu'exposées par JMX.
+ * Les latences sont en microsecondes.
+ */
+public interface OperationMetricsMXBean {
+
+    long getRequests();
+
+    long getErrors();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+}
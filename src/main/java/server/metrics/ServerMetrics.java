@@ -0,0 +1,245 @@
+package server.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * La classe ServerMetrics regroupe les mesures du serveur: les connexions actives et acceptées, l'attente des
+ * connexions acceptées avant d'être servies, les décisions du contrôle d'admission, et les mesures de chaque commande
+ * et de chaque gestionnaire d'évènements.
+ * Les mesures sont exposées par JMX une fois {@link #registerMBeans(int)} appelé, et en texte par {@link #dump()}.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    /**
+     * Le domaine JMX des mesures du serveur
+     */
+    public final static String JMX_DOMAIN = "server";
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder acceptedConnections = new LongAdder();
+    /**
+     * Le temps, en nanosecondes, entre l'acceptation d'une connexion et le début de son service
+     */
+    private final LatencyHistogram acceptWait = new LatencyHistogram();
+    private final LongAdder admittedRequests = new LongAdder();
+    private final LongAdder throttledRequests = new LongAdder();
+    private final LongAdder shedRequests = new LongAdder();
+    /**
+     * Donne le nombre de commandes en cours de traitement, tenu par le contrôle d'admission
+     */
+    private volatile IntSupplier inFlightSource = () -> 0;
+    /**
+     * Les mesures de chaque commande, par nom
+     */
+    private final Map<String, OperationMetrics> commands = new ConcurrentHashMap<>();
+    /**
+     * Les mesures de chaque gestionnaire d'évènements, par nom
+     */
+    private final Map<String, OperationMetrics> handlers = new ConcurrentHashMap<>();
+    /**
+     * Le port du serveur dans les noms JMX, -1 tant que les mesures ne sont pas exposées par JMX
+     */
+    private volatile int jmxPort = -1;
+
+    /**
+     * @param name le nom de la commande
+     * @return les mesures de la commande, créées au premier appel
+     */
+    public OperationMetrics command(String name) {
+        return commands.computeIfAbsent(name, n -> register(new OperationMetrics(n), "Command"));
+    }
+
+    /**
+     * @param name le nom du gestionnaire d'évènements
+     * @return les mesures du gestionnaire, créées au premier appel
+     */
+    public OperationMetrics handler(String name) {
+        return handlers.computeIfAbsent(name, n -> register(new OperationMetrics(n), "EventHandler"));
+    }
+
+    /**
+     * Signale qu'une connexion acceptée commence à être servie
+     *
+     * @param acceptWaitNanos le temps passé par la connexion entre son acceptation et le début de son service
+     */
+    public void connectionOpened(long acceptWaitNanos) {
+        acceptedConnections.increment();
+        activeConnections.incrementAndGet();
+        acceptWait.record(acceptWaitNanos);
+    }
+
+    /**
+     * Signale qu'une connexion est fermée
+     */
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * Signale qu'une commande est admise par le contrôle d'admission
+     */
+    public void requestAdmitted() {
+        admittedRequests.increment();
+    }
+
+    /**
+     * Signale qu'une commande est refusée parce que l'adresse du client a dépassé son débit
+     */
+    public void requestThrottled() {
+        throttledRequests.increment();
+    }
+
+    /**
+     * Signale qu'une commande est refusée parce que le serveur est saturé
+     */
+    public void requestShed() {
+        shedRequests.increment();
+    }
+
+    /**
+     * @param source donne le nombre de commandes en cours de traitement
+     */
+    public void setInFlightSource(IntSupplier source) {
+        this.inFlightSource = source;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    @Override
+    public long getAcceptWaitP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(acceptWait.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public long getAcceptWaitP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(acceptWait.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public long getAcceptWaitMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(acceptWait.getMax());
+    }
+
+    @Override
+    public long getAdmittedRequests() {
+        return admittedRequests.sum();
+    }
+
+    @Override
+    public long getThrottledRequests() {
+        return throttledRequests.sum();
+    }
+
+    @Override
+    public long getShedRequests() {
+        return shedRequests.sum();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlightSource.getAsInt();
+    }
+
+    /**
+     * Expose les mesures par JMX, sous le domaine {@value #JMX_DOMAIN}
+     *
+     * @param port le port du serveur, qui distingue les serveurs d'une même JVM
+     */
+    public void registerMBeans(int port) {
+        jmxPort = port;
+        register(this, "Server", "port=" + port);
+        commands.values().forEach(metrics -> register(metrics, "Command"));
+        handlers.values().forEach(metrics -> register(metrics, "EventHandler"));
+    }
+
+    /**
+     * Expose les mesures d'une opération par JMX, si les mesures du serveur le sont déjà
+     *
+     * @param metrics les mesures de l'opération
+     * @param type    le type de l'opération dans le nom JMX
+     * @return les mesures de l'opération
+     */
+    private OperationMetrics register(OperationMetrics metrics, String type) {
+        int port = jmxPort;
+        if (port >= 0) {
+            register(metrics, type, "port=" + port + ",name=" + ObjectName.quote(metrics.getName()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Enregistre un MXBean, en remplaçant celui d'un serveur précédent qui aurait utilisé le même port
+     */
+    private static void register(Object bean, String type, String properties) {
+        try {
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=" + type + "," + properties);
+            try {
+                mbeans.registerMBean(bean, name);
+            } catch (InstanceAlreadyExistsException e) {
+                mbeans.unregisterMBean(name);
+                mbeans.registerMBean(bean, name);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Retourne toutes les mesures en texte, une ligne par mesure, les latences en microsecondes
+     *
+     * @return les mesures
+     */
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("connexions.actives ").append(getActiveConnections()).append('\n');
+        out.append("connexions.acceptees ").append(getAcceptedConnections()).append('\n');
+        out.append("connexions.attente p50=").append(getAcceptWaitP50Micros())
+                .append(" p99=").append(getAcceptWaitP99Micros())
+                .append(" max=").append(getAcceptWaitMaxMicros()).append('\n');
+        out.append("admission en.cours=").append(getInFlightRequests())
+                .append(" admises=").append(getAdmittedRequests())
+                .append(" limitees=").append(getThrottledRequests())
+                .append(" occupe=").append(getShedRequests()).append('\n');
+        dump(out, "commande", commands);
+        dump(out, "gestionnaire", handlers);
+        return out.toString();
+    }
+
+    /**
+     * Ajoute les mesures d'un groupe d'opérations, triées par nom
+     */
+    private static void dump(StringBuilder out, String prefix, Map<String, OperationMetrics> operations) {
+        for (OperationMetrics metrics : new TreeMap<>(operations).values()) {
+            out.append(prefix).append(' ').append(metrics.getName())
+                    .append(" requetes=").append(metrics.getRequests())
+                    .append(" erreurs=").append(metrics.getErrors())
+                    .append(" octets.recus=").append(metrics.getBytesIn())
+                    .append(" octets.envoyes=").append(metrics.getBytesOut())
+                    .append(" moyenne=").append(String.format("%.1f", metrics.getMeanMicros()))
+                    .append(" p50=").append(metrics.getP50Micros())
+                    .append(" p99=").append(metrics.getP99Micros())
+                    .append(" p999=").append(metrics.getP999Micros())
+                    .append(" max=").append(metrics.getMaxMicros()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package server.metrics;
+
+/**
+ * Les mesures globales du serveur, telles qu'exposées par JMX. Les latences sont en microsecondes.
+ * Chaque commande et chaque gestionnaire d'évènements a aussi son propre {@link OperationMetricsMXBean}.
+ */
+public interface ServerMetricsMXBean {
+
+    int getActiveConnections();
+
+    long getAcceptedConnections();
+
+    long getAcceptWaitP50Micros();
+
+    long getAcceptWaitP99Micros();
+
+    long getAcceptWaitMaxMicros();
+
+    /**
+     * @return le nombre de commandes en cours de traitement
+     */
+    int getInFlightRequests();
+
+    /**
+     * @return le nombre de commandes admises par le contrôle d'admission
+     */
+    long getAdmittedRequests();
+
+    /**
+     * @return le nombre de commandes refusées parce que l'adresse du client a dépassé son débit
+     */
+    long getThrottledRequests();
+
+    /**
+     * @return le nombre de commandes refusées parce que le serveur était saturé
+     */
+    long getShedRequests();
+
+    /**
+     * @return toutes les mesures, en texte
+     */
+    String dump();
+}
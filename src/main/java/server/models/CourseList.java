@@ -0,0 +1,61 @@
+package server.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Réponse à "CHARGER session IF-NOT version": les cours d'une session avec la version du catalogue de cette session.
+ * Si le client a déjà cette version, la liste est absente et la réponse signifie seulement "non modifié".
+ */
+public class CourseList implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Version envoyée par un client qui n'a encore aucune liste en cache
+     */
+    public final static String NO_VERSION = "-";
+
+    private String session;
+    private String version;
+    private ArrayList<Course> courses;
+
+    public CourseList(String session, String version, ArrayList<Course> courses) {
+        this.session = session;
+        this.version = version;
+        this.courses = courses;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public void setSession(String session) {
+        this.session = session;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public ArrayList<Course> getCourses() {
+        return courses;
+    }
+
+    public void setCourses(ArrayList<Course> courses) {
+        this.courses = courses;
+    }
+
+    public boolean isModified() {
+        return courses != null;
+    }
+
+    @Override
+    public String toString() {
+        return "CourseList{" + "session='" + session + '\'' + ", version='" + version + '\'' + ", courses=" + (courses == null ? "non modifiés" : courses.size()) + '}';
+    }
+}
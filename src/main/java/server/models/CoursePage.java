@@ -0,0 +1,91 @@
+package server.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Une page des cours d'une session, réponse à "CHARGER session PAGE début nombre" ou un des morceaux de
+ * "CHARGER session FLUX taille". La position de la page suivante est {@link #getNextOffset()}; la version permet
+ * de savoir si le catalogue a changé entre deux pages. Une page sans liste signifie "non modifié" (avec IF-NOT).
+ */
+public class CoursePage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String session;
+    private String version;
+    private int offset;
+    private int total;
+    private ArrayList<Course> courses;
+
+    public CoursePage(String session, String version, int offset, int total, ArrayList<Course> courses) {
+        this.session = session;
+        this.version = version;
+        this.offset = offset;
+        this.total = total;
+        this.courses = courses;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public void setSession(String session) {
+        this.session = session;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public ArrayList<Course> getCourses() {
+        return courses;
+    }
+
+    public void setCourses(ArrayList<Course> courses) {
+        this.courses = courses;
+    }
+
+    public boolean isModified() {
+        return courses != null;
+    }
+
+    /**
+     * @return la position du premier cours de la page suivante
+     */
+    public int getNextOffset() {
+        return offset + (courses == null ? 0 : courses.size());
+    }
+
+    /**
+     * @return vrai s'il n'y a plus de cours après cette page
+     */
+    public boolean isLast() {
+        return courses == null || getNextOffset() >= total;
+    }
+
+    @Override
+    public String toString() {
+        return "CoursePage{" + "session='" + session + '\'' + ", version='" + version + '\'' + ", offset=" + offset + ", total=" + total + ", courses=" + (courses == null ? "non modifiés" : courses.size()) + '}';
+    }
+}
@@ -0,0 +1,73 @@
+package server.models;
+
+import java.io.Serializable;
+
+public class RegistrationResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Les issues possibles d'une demande d'inscription
+     * Les nouvelles valeurs sont ajoutées à la fin: le format binaire transmet leur position.
+     */
+    public enum Status {
+        ACCEPTED,
+        DUPLICATE,
+        FULL,
+        INVALID,
+        ERROR
+    }
+
+    private String matricule;
+    private String courseCode;
+    private Status status;
+    private String message;
+
+    public RegistrationResult(String matricule, String courseCode, Status status, String message) {
+        this.matricule = matricule;
+        this.courseCode = courseCode;
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getMatricule() {
+        return matricule;
+    }
+
+    public void setMatricule(String matricule) {
+        this.matricule = matricule;
+    }
+
+    public String getCourseCode() {
+        return courseCode;
+    }
+
+    public void setCourseCode(String courseCode) {
+        this.courseCode = courseCode;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistrationResult{" + "matricule='" + matricule + '\'' + ", courseCode='" + courseCode + '\'' + ", status=" + status + ", message='" + message + '\'' + '}';
+    }
+}
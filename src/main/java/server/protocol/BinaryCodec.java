@@ -0,0 +1,417 @@
+package server.protocol;
+
+import server.models.Course;
+import server.models.CourseList;
+import server.models.CoursePage;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * La classe BinaryCodec encode les messages du protocole dans un format binaire compact, sans réflexion
+ * ni descripteurs de classes, et sans le risque de désérialiser des classes arbitraires.
+ * <p>
+ * Un message est sa longueur en varint suivie de son corps. Le corps est une valeur étiquetée:
+ * une étiquette d'un octet puis le contenu de la valeur. Les chaînes sont écrites en UTF-8, précédées
+ * de leur longueur + 1 en varint (0 représente null). Seuls les types du protocole sont acceptés:
+ * String, Course, RegistrationForm, RegistrationResult, CourseList, CoursePage et les listes de ces types.
+ */
+public final class BinaryCodec {
+
+    /**
+     * Octets envoyés par le client à l'ouverture de la connexion pour demander le format binaire,
+     * puis renvoyés par le serveur pour l'accepter. Le premier octet ne peut pas être confondu
+     * avec l'en-tête d'un flux d'objets Java (0xACED).
+     */
+    public final static byte[] MAGIC = {'U', 'D', 'M', 1};
+
+    /**
+     * Taille maximale d'un message, pour refuser une longueur corrompue ou malveillante
+     */
+    public final static int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+
+    private final static byte TAG_NULL = 0;
+    private final static byte TAG_STRING = 1;
+    private final static byte TAG_COURSE = 2;
+    private final static byte TAG_REGISTRATION_FORM = 3;
+    private final static byte TAG_LIST = 4;
+    private final static byte TAG_REGISTRATION_RESULT = 5;
+    private final static byte TAG_COURSE_LIST = 6;
+    private final static byte TAG_COURSE_PAGE = 7;
+
+    /**
+     * Les statuts d'inscription, dans l'ordre de leur position transmise
+     */
+    private final static RegistrationResult.Status[] STATUSES = RegistrationResult.Status.values();
+
+    /**
+     * Profondeur maximale d'imbrication des valeurs (listes, formulaires)
+     */
+    private final static int MAX_DEPTH = 8;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Encode un message complet: sa longueur en varint suivie de son corps
+     *
+     * @param message le message
+     * @return les octets du message
+     * @throws IllegalArgumentException si le message contient un type qui ne fait pas partie du protocole
+     */
+    public static byte[] frame(Object message) {
+        Writer body = new Writer(64);
+        body.writeValue(message);
+        Writer framed = new Writer(body.pos + 5);
+        framed.writeVarInt(body.pos);
+        framed.writeBytes(body.buf, 0, body.pos);
+        return framed.toByteArray();
+    }
+
+    /**
+     * Encode seulement le corps d'un message
+     *
+     * @param message le message
+     * @return les octets du corps
+     */
+    public static byte[] encode(Object message) {
+        Writer body = new Writer(64);
+        body.writeValue(message);
+        return body.toByteArray();
+    }
+
+    /**
+     * Décode le corps d'un message
+     *
+     * @param body   les octets
+     * @param offset la position du corps dans le tableau
+     * @param length la longueur du corps
+     * @return le message décodé
+     * @throws IOException si les octets ne forment pas un message valide
+     */
+    public static Object decode(byte[] body, int offset, int length) throws IOException {
+        Reader reader = new Reader(body, offset, offset + length);
+        Object value = reader.readValue();
+        if (reader.pos != reader.limit) {
+            throw new StreamCorruptedException("Octets en trop à la fin du message");
+        }
+        return value;
+    }
+
+    /**
+     * Écrit un message complet dans un flux
+     *
+     * @param out     le flux
+     * @param message le message
+     * @throws IOException s'il y a une erreur d'écriture
+     */
+    public static void writeMessage(OutputStream out, Object message) throws IOException {
+        out.write(frame(message));
+    }
+
+    /**
+     * Lit un message complet dans un flux
+     *
+     * @param in le flux
+     * @return le message décodé
+     * @throws EOFException si le flux se termine avant le début du message
+     * @throws IOException  si le message est tronqué ou invalide
+     */
+    public static Object readMessage(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    throw new EOFException();
+                }
+                throw new StreamCorruptedException("Longueur de message tronquée");
+            }
+            if (shift > 28) {
+                throw new StreamCorruptedException("Longueur de message invalide");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+            throw new StreamCorruptedException("Message trop long: " + length);
+        }
+        byte[] body = in.readNBytes(length);
+        if (body.length != length) {
+            throw new EOFException("Message tronqué");
+        }
+        return decode(body, 0, length);
+    }
+
+    /**
+     * Tampon d'écriture qui grandit au besoin
+     */
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buf, pos, length);
+            pos += length;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            int length = s.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = s.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                // Cas courant: un caractère par octet, sans tableau intermédiaire
+                writeVarInt(length + 1);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buf[pos++] = (byte) s.charAt(i);
+                }
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length + 1);
+                writeBytes(bytes, 0, bytes.length);
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof String s) {
+                writeByte(TAG_STRING);
+                writeString(s);
+            } else if (value instanceof Course course) {
+                writeByte(TAG_COURSE);
+                writeString(course.getName());
+                writeString(course.getCode());
+                writeString(course.getSession());
+            } else if (value instanceof RegistrationForm form) {
+                writeByte(TAG_REGISTRATION_FORM);
+                writeString(form.getPrenom());
+                writeString(form.getNom());
+                writeString(form.getEmail());
+                writeString(form.getMatricule());
+                writeValue(form.getCourse());
+            } else if (value instanceof RegistrationResult result) {
+                writeByte(TAG_REGISTRATION_RESULT);
+                writeString(result.getMatricule());
+                writeString(result.getCourseCode());
+                // 0 pour un statut absent, sinon sa position + 1
+                writeVarInt(result.getStatus() == null ? 0 : result.getStatus().ordinal() + 1);
+                writeString(result.getMessage());
+            } else if (value instanceof CourseList courses) {
+                writeByte(TAG_COURSE_LIST);
+                writeString(courses.getSession());
+                writeString(courses.getVersion());
+                // Une liste absente (TAG_NULL) signifie "non modifié"
+                writeValue(courses.getCourses());
+            } else if (value instanceof CoursePage page) {
+                writeByte(TAG_COURSE_PAGE);
+                writeString(page.getSession());
+                writeString(page.getVersion());
+                writeVarInt(page.getOffset());
+                writeVarInt(page.getTotal());
+                writeValue(page.getCourses());
+            } else if (value instanceof List<?> list) {
+                writeByte(TAG_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else {
+                throw new IllegalArgumentException("Type non supporté par le protocole binaire: " + value.getClass().getName());
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    /**
+     * Lecteur d'un message en mémoire, qui vérifie chaque longueur avant de l'utiliser
+     */
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private final int limit;
+        private int depth;
+
+        Reader(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        int readByte() throws IOException {
+            if (pos >= limit) {
+                throw new EOFException("Message tronqué");
+            }
+            return buf[pos++];
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift <= 28; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint invalide");
+        }
+
+        String readString() throws IOException {
+            int n = readVarInt();
+            if (n == 0) {
+                return null;
+            }
+            int length = n - 1;
+            if (length > limit - pos) {
+                throw new EOFException("Chaîne tronquée");
+            }
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        Object readValue() throws IOException {
+            if (++depth > MAX_DEPTH) {
+                throw new StreamCorruptedException("Valeurs trop imbriquées");
+            }
+            try {
+                return readTaggedValue(readByte());
+            } finally {
+                depth--;
+            }
+        }
+
+        /**
+         * Lit une liste de cours, ou null
+         */
+        private ArrayList<Course> readCourses() throws IOException {
+            Object courses = readValue();
+            if (courses == null) {
+                return null;
+            }
+            if (!(courses instanceof List<?> list)) {
+                throw new StreamCorruptedException("Liste de cours attendue");
+            }
+            ArrayList<Course> checked = new ArrayList<>(list.size());
+            for (Object course : list) {
+                if (!(course instanceof Course)) {
+                    throw new StreamCorruptedException("Cours attendu dans la liste de cours");
+                }
+                checked.add((Course) course);
+            }
+            return checked;
+        }
+
+        private Object readTaggedValue(int tag) throws IOException {
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_COURSE: {
+                    String name = readString();
+                    String code = readString();
+                    String session = readString();
+                    return new Course(name, code, session);
+                }
+                case TAG_REGISTRATION_FORM: {
+                    String prenom = readString();
+                    String nom = readString();
+                    String email = readString();
+                    String matricule = readString();
+                    Object course = readValue();
+                    if (course != null && !(course instanceof Course)) {
+                        throw new StreamCorruptedException("Cours attendu dans le formulaire d'inscription");
+                    }
+                    return new RegistrationForm(prenom, nom, email, matricule, (Course) course);
+                }
+                case TAG_REGISTRATION_RESULT: {
+                    String matricule = readString();
+                    String courseCode = readString();
+                    int status = readVarInt();
+                    if (status > STATUSES.length) {
+                        throw new StreamCorruptedException("Statut d'inscription inconnu: " + status);
+                    }
+                    String message = readString();
+                    return new RegistrationResult(matricule, courseCode, status == 0 ? null : STATUSES[status - 1], message);
+                }
+                case TAG_COURSE_LIST: {
+                    String session = readString();
+                    String version = readString();
+                    return new CourseList(session, version, readCourses());
+                }
+                case TAG_COURSE_PAGE: {
+                    String session = readString();
+                    String version = readString();
+                    int offset = readVarInt();
+                    int total = readVarInt();
+                    return new CoursePage(session, version, offset, total, readCourses());
+                }
+                case TAG_LIST: {
+                    int size = readVarInt();
+                    // Chaque élément occupe au moins un octet: une taille plus grande est forcément corrompue
+                    if (size > limit - pos) {
+                        throw new StreamCorruptedException("Taille de liste invalide: " + size);
+                    }
+                    ArrayList<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                default:
+                    throw new StreamCorruptedException("Étiquette inconnue: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package server.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Les formats dans lesquels le client et le serveur peuvent échanger leurs messages.
+ * Le format est choisi par le client à l'ouverture de la connexion: un flux qui commence par
+ * l'en-tête de la sérialisation Java utilise JAVA_SERIALIZATION, un flux qui commence par
+ * {@link BinaryCodec#MAGIC} utilise BINARY.
+ */
+public enum WireFormat {
+
+    /**
+     * Les objets Serializable de Java, transmis par ObjectOutputStream (format d'origine)
+     */
+    JAVA_SERIALIZATION {
+        @Override
+        public byte[] encode(Object message) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(message);
+                // Le TC_RESET final vide la table des références du lecteur, pour qu'elle corresponde
+                // de nouveau à celle de l'ObjectOutputStream de la connexion
+                out.reset();
+                out.flush();
+                byte[] stream = bytes.toByteArray();
+                return Arrays.copyOfRange(stream, STREAM_HEADER_LENGTH, stream.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+
+    /**
+     * Le format binaire compact de {@link BinaryCodec}: longueurs en varint et chaînes en UTF-8
+     */
+    BINARY {
+        @Override
+        public byte[] encode(Object message) {
+            return BinaryCodec.frame(message);
+        }
+    };
+
+    /**
+     * Taille de l'en-tête (STREAM_MAGIC et STREAM_VERSION) écrit par le constructeur d'ObjectOutputStream
+     */
+    private final static int STREAM_HEADER_LENGTH = 4;
+
+    /**
+     * Encode un message une fois pour toutes, pour l'écrire tel quel sur une connexion de ce format
+     * Pour JAVA_SERIALIZATION, les octets n'ont pas d'en-tête de flux et se terminent par un TC_RESET;
+     * pour BINARY, ils forment un message complet, longueur comprise.
+     *
+     * @param message le message à encoder
+     * @return les octets du message
+     */
+    public abstract byte[] encode(Object message);
+}
@@ -0,0 +1,173 @@
+package server;
+
+import org.junit.Test;
+import server.metrics.ServerMetrics;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests du contrôle d'admission: seau à jetons par adresse (GCRA) et limite des commandes en cours
+ */
+public class AdmissionControlTest {
+
+    private static InetSocketAddress client(String ip, int port) throws UnknownHostException {
+        return new InetSocketAddress(InetAddress.getByName(ip), port);
+    }
+
+    @Test
+    public void burstIsAdmittedThenThrottled() throws UnknownHostException {
+        ServerMetrics metrics = new ServerMetrics();
+        // Une commande par seconde en moyenne: le seau ne se remplit pas pendant le test
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 1, 3, metrics);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.1", 5000 + i)));
+            admission.release();
+        }
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.0.1", 6000)));
+        assertEquals(3, metrics.getAdmittedRequests());
+        assertEquals(1, metrics.getThrottledRequests());
+    }
+
+    @Test
+    public void eachAddressHasItsOwnBucket() throws UnknownHostException {
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 1, 1, new ServerMetrics());
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.1", 5000)));
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.0.1", 5000)));
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.2", 5000)));
+    }
+
+    @Test
+    public void defaultBurstIsOneSecondOfRate() throws UnknownHostException {
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 5, 0, new ServerMetrics());
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (admission.tryAdmit(client("10.0.0.3", 5000)) == AdmissionControl.Decision.ADMITTED) {
+                admission.release();
+                admitted++;
+            }
+        }
+        // Au plus une commande de plus si un intervalle de 200 ms s'est écoulé pendant la boucle
+        assertTrue("Admises: " + admitted, admitted == 5 || admitted == 6);
+    }
+
+    @Test
+    public void bucketRefillsAtTheRate() throws Exception {
+        // 20 commandes par seconde, sans rafale: un jeton toutes les 50 ms
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 20, 1, new ServerMetrics());
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.4", 5000)));
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.0.4", 5000)));
+        Thread.sleep(120);
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.4", 5000)));
+    }
+
+    @Test
+    public void unlimitedRateNeverThrottles() throws UnknownHostException {
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, AdmissionControl.UNLIMITED, 0, new ServerMetrics());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.5", 5000)));
+            admission.release();
+        }
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void commandsBeyondMaxInFlightAreShed() throws UnknownHostException {
+        ServerMetrics metrics = new ServerMetrics();
+        AdmissionControl admission = new AdmissionControl(2, AdmissionControl.UNLIMITED, 0, metrics);
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.6", 5000)));
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.7", 5000)));
+        assertEquals(AdmissionControl.Decision.BUSY, admission.tryAdmit(client("10.0.0.8", 5000)));
+        // Un refus ne compte pas parmi les commandes en cours
+        assertEquals(2, admission.getInFlight());
+        assertEquals(2, metrics.getInFlightRequests());
+        assertEquals(1, metrics.getShedRequests());
+
+        admission.release();
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.8", 5000)));
+    }
+
+    @Test
+    public void throttledCommandsDoNotTakeAnInFlightSlot() throws UnknownHostException {
+        AdmissionControl admission = new AdmissionControl(1, 1, 1, new ServerMetrics());
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.9", 5000)));
+        admission.release();
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.0.9", 5000)));
+        assertEquals(0, admission.getInFlight());
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.10", 5000)));
+    }
+
+    @Test
+    public void closeRefusesNewCommandsAndWaitsForAdmittedOnes() throws Exception {
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, AdmissionControl.UNLIMITED, 0, new ServerMetrics());
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.0.11", 5000)));
+        admission.close();
+        assertEquals(AdmissionControl.Decision.CLOSED, admission.tryAdmit(client("10.0.0.11", 5000)));
+        assertEquals(1, admission.getInFlight());
+
+        // La commande admise n'est pas terminée: le délai expire
+        assertFalse(admission.awaitIdle(System.nanoTime() + 20_000_000L));
+        admission.release();
+        assertTrue(admission.awaitIdle(System.nanoTime() + 20_000_000L));
+    }
+
+    @Test
+    public void fullTableForgetsTheOldestBucket() throws UnknownHostException {
+        // Une commande par seconde, sans rafale: aucun seau ne se remplit pendant le test
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 1, 1, new ServerMetrics(), 4);
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.1." + i, 5000)));
+        }
+        assertEquals(4, admission.getTrackedAddresses());
+
+        // Table pleine: le nettoyage oublie le seau de la première adresse pour faire place à la nouvelle
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.1.5", 5000)));
+        assertEquals(4, admission.getTrackedAddresses());
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.1.2", 5000)));
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.1.5", 5000)));
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.1.1", 5000)));
+    }
+
+    @Test
+    public void addressesBeyondTheTableBetweenSweepsAreTreatedAsNew() throws Exception {
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 1, 1, new ServerMetrics(), 4);
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.2." + i, 5000)));
+        }
+        // Le nettoyage vient d'avoir lieu: les adresses suivantes ne sont pas suivies et la table reste bornée
+        for (int i = 6; i <= 200; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.2." + i, 5000)));
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.2." + i, 5000)));
+        }
+        assertEquals(4, admission.getTrackedAddresses());
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.2.5", 5000)));
+
+        // Après l'intervalle, un nouveau nettoyage fait de nouveau de la place
+        Thread.sleep(150);
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.2.201", 5000)));
+        assertEquals(AdmissionControl.Decision.THROTTLED, admission.tryAdmit(client("10.0.2.201", 5000)));
+        assertTrue(admission.getTrackedAddresses() <= 4);
+    }
+
+    @Test
+    public void fullBucketsAreForgottenFirst() throws Exception {
+        // 20 commandes par seconde, sans rafale: un seau est de nouveau plein 50 ms après sa commande
+        AdmissionControl admission = new AdmissionControl(AdmissionControl.UNLIMITED, 20, 1, new ServerMetrics(), 4);
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.3." + i, 5000)));
+        }
+        Thread.sleep(150);
+        assertEquals(AdmissionControl.Decision.ADMITTED, admission.tryAdmit(client("10.0.3.5", 5000)));
+        assertEquals(1, admission.getTrackedAddresses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLimitsAreRefused() {
+        new AdmissionControl(-1, 0, 0, new ServerMetrics());
+    }
+}
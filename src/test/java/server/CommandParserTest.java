@@ -0,0 +1,79 @@
+package server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests du découpage d'une ligne de commande, comparé à l'ancien découpage par split(" ") puis join(" ")
+ */
+public class CommandParserTest {
+
+    /**
+     * L'argument tel que le calculait l'ancien découpage
+     */
+    private static String splitArgument(String line) {
+        String[] parts = line.split(" ");
+        String[] rest = new String[Math.max(0, parts.length - 1)];
+        System.arraycopy(parts, 1, rest, 0, rest.length);
+        return String.join(" ", rest);
+    }
+
+    @Test
+    public void knownCommandsAreRecognized() {
+        assertSame(Command.LOAD, CommandParser.parse("CHARGER Automne"));
+        assertSame(Command.SEARCH, CommandParser.parse("CHERCHER prog"));
+        assertSame(Command.REGISTER, CommandParser.parse("INSCRIRE"));
+        assertSame(Command.BATCH_REGISTER, CommandParser.parse("INSCRIRE_LOT"));
+        assertSame(Command.KEEP_ALIVE, CommandParser.parse("MAINTENIR"));
+        assertSame(Command.CLOSE, CommandParser.parse("FERMER"));
+    }
+
+    @Test
+    public void prefixesAndLongerWordsAreUnknown() {
+        // INSCRIRE est un préfixe de INSCRIRE_LOT: seul le mot entier compte
+        assertSame(Command.UNKNOWN, CommandParser.parse("INSCRIR"));
+        assertSame(Command.UNKNOWN, CommandParser.parse("INSCRIRE_"));
+        assertSame(Command.UNKNOWN, CommandParser.parse("CHARGERS Automne"));
+        assertSame(Command.UNKNOWN, CommandParser.parse("charger Automne"));
+        assertSame(Command.UNKNOWN, CommandParser.parse(""));
+        assertSame(Command.UNKNOWN, CommandParser.parse(" CHARGER Automne"));
+    }
+
+    @Test
+    public void nameOfKnownCommandIsTheKeywordConstant() {
+        assertSame(Server.LOAD_COMMAND, CommandParser.name("CHARGER Hiver"));
+        assertSame(Server.CLOSE_COMMAND, CommandParser.name("FERMER"));
+        assertEquals("AIDE", CommandParser.name("AIDE moi"));
+        assertEquals("", CommandParser.name(" rien"));
+    }
+
+    @Test
+    public void argumentIsEverythingAfterTheFirstSpace() {
+        assertEquals("Automne", CommandParser.argument("CHARGER Automne"));
+        assertEquals("génie logiciel", CommandParser.argument("CHERCHER génie logiciel"));
+        assertEquals("", CommandParser.argument("CHARGER"));
+        assertEquals("", CommandParser.argument("CHARGER "));
+        assertEquals("x", CommandParser.argument("AIDE x"));
+    }
+
+    @Test
+    public void argumentMatchesTheOldSplitAndJoin() {
+        String[] lines = {
+                "CHARGER Automne", "CHARGER", "CHARGER ", "CHARGER   ", "CHARGER Automne  ",
+                "CHERCHER prog  1", "CHERCHER a b c", "INSCRIRE_LOT", "AIDE x y ", "AIDE", "X"
+        };
+        for (String line : lines) {
+            assertEquals("Argument de \"" + line + "\"", splitArgument(line), CommandParser.argument(line));
+        }
+    }
+
+    @Test
+    public void argumentOfAParsedLineIsTheSame() {
+        String line = "CHERCHER ift  ";
+        Command command = CommandParser.parse(line);
+        assertEquals(CommandParser.argument(line), CommandParser.argument(line, command));
+        assertEquals("y", CommandParser.argument("INCONNUE y", Command.UNKNOWN));
+    }
+}
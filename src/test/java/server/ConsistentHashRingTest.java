@@ -0,0 +1,87 @@
+package server;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests de l'anneau de hachage cohérent: répartition des clés entre les fragments et clés déplacées par l'ajout
+ * d'un fragment
+ */
+public class ConsistentHashRingTest {
+
+    private final static int KEYS = 30_000;
+
+    private static ConsistentHashRing<String> ring(String... names) {
+        Map<String, String> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            shards.put(name, name);
+        }
+        return new ConsistentHashRing<>(shards);
+    }
+
+    private static String key(int i) {
+        return "Automne\tIFT" + (1000 + i);
+    }
+
+    @Test
+    public void keysAreSpreadOverEveryShard() {
+        ConsistentHashRing<String> ring = ring("hote1:1337", "hote2:1337", "hote3:1337");
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.get(key(i)), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            // Un tiers chacun, à quelques points près
+            double share = count.getValue() / (double) KEYS;
+            assertTrue(count.getKey() + ": " + share, share > 0.25 && share < 0.42);
+        }
+    }
+
+    @Test
+    public void addingAShardOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> before = ring("hote1:1337", "hote2:1337", "hote3:1337");
+        ConsistentHashRing<String> after = ring("hote1:1337", "hote2:1337", "hote3:1337", "hote4:1337");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.get(key(i));
+            if (!owner.equals(before.get(key(i)))) {
+                assertEquals("hote4:1337", owner);
+                moved++;
+            }
+        }
+        // Environ le quart des clés passe au nouveau fragment, et aucune autre ne bouge
+        double share = moved / (double) KEYS;
+        assertTrue("Déplacées: " + share, share > 0.15 && share < 0.35);
+    }
+
+    @Test
+    public void ownerDoesNotDependOnTheOrderOfTheShards() {
+        ConsistentHashRing<String> ring = ring("hote1:1337", "hote2:1337", "hote3:1337");
+        ConsistentHashRing<String> reversed = ring("hote3:1337", "hote2:1337", "hote1:1337");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.get(key(i)), reversed.get(key(i)));
+        }
+    }
+
+    @Test
+    public void singleShardOwnsEveryKey() {
+        ConsistentHashRing<String> ring = ring("hote1:1337");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("hote1:1337", ring.get(key(i)));
+        }
+        assertEquals(List.of("hote1:1337"), ring.getShards());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRingIsRefused() {
+        new ConsistentHashRing<String>(new HashMap<>());
+    }
+}
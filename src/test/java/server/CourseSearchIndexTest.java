@@ -0,0 +1,105 @@
+package server;
+
+import org.junit.Test;
+import server.models.Course;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests de l'index de recherche des cours: majuscules et accents, requêtes de plusieurs mots, préfixes et limite
+ */
+public class CourseSearchIndexTest {
+
+    private static CourseSearchIndex index() {
+        Map<String, List<Course>> sessions = new LinkedHashMap<>();
+        sessions.put("Automne", List.of(
+                new Course("Programmation 1", "IFT1015", "Automne"),
+                new Course("Programmation 2", "IFT1025", "Automne"),
+                new Course("Introduction aux systèmes informatiques", "IFT1215", "Automne"),
+                new Course("Génie logiciel", "IFT2255", "Automne")));
+        sessions.put("Hiver", List.of(
+                new Course("Programmation 2", "IFT1025", "Hiver"),
+                new Course("Qualité du logiciel et métriques", "IFT3913", "Hiver"),
+                new Course("Calculabilité", "IFT3700", "Hiver"),
+                new Course("Calcul 1", "MAT1400", "Hiver")));
+        return new CourseSearchIndex(sessions);
+    }
+
+    /**
+     * @return "session code" de chaque cours, dans l'ordre des résultats
+     */
+    private static List<String> keys(List<Course> courses) {
+        List<String> keys = new ArrayList<>();
+        for (Course course : courses) {
+            keys.add(course.getSession() + " " + course.getCode());
+        }
+        return keys;
+    }
+
+    @Test
+    public void caseAndAccentsAreIgnored() {
+        CourseSearchIndex index = index();
+        for (String query : new String[]{"genie", "GÉNIE", "Génie", "gÉnIe"}) {
+            assertEquals(query, List.of("Automne IFT2255"), keys(index.search(query, 10)));
+        }
+        assertEquals(List.of("Hiver IFT3913"), keys(index.search("QUALITE", 10)));
+        assertEquals(List.of("Automne IFT1215"), keys(index.search("systemes", 10)));
+        assertEquals(List.of("Automne IFT1025", "Hiver IFT1025"), keys(index.search("ift1025", 10)));
+    }
+
+    @Test
+    public void everyWordOfTheQueryMustMatch() {
+        CourseSearchIndex index = index();
+        assertEquals(List.of("Automne IFT2255", "Hiver IFT3913"), keys(index.search("logiciel", 10)));
+        assertEquals(List.of("Automne IFT2255"), keys(index.search("logiciel genie", 10)));
+        assertEquals(List.of("Automne IFT1025", "Hiver IFT1025"), keys(index.search("prog 2", 10)));
+        // Un mot peut venir du code et l'autre du nom
+        assertEquals(List.of("Hiver IFT3913"), keys(index.search("metriques IFT39", 10)));
+        assertEquals(List.of("Automne IFT1015"), keys(index.search("ift1 programmation 1", 10)));
+        assertTrue(index.search("logiciel calcul", 10).isEmpty());
+    }
+
+    @Test
+    public void wordsArePrefixes() {
+        CourseSearchIndex index = index();
+        assertEquals(List.of("Automne IFT1015", "Automne IFT1025", "Hiver IFT1025", "Automne IFT1215"),
+                keys(index.search("ift1", 10)));
+        assertEquals(List.of("Automne IFT1015", "Automne IFT1025", "Hiver IFT1025"), keys(index.search("prog", 10)));
+        // Le mot exact passe avant les mots plus longs qui commencent par lui
+        assertEquals(List.of("Hiver MAT1400", "Hiver IFT3700"), keys(index.search("calcul", 10)));
+        // Un préfixe doit commencer un mot: "giciel" ne trouve pas "logiciel"
+        assertTrue(index.search("giciel", 10).isEmpty());
+        assertTrue(index.search("xyz", 10).isEmpty());
+    }
+
+    @Test
+    public void limitStopsTheSearch() {
+        CourseSearchIndex index = index();
+        assertEquals(7, index.search("ift", 100).size());
+        assertEquals(List.of("Automne IFT1015", "Automne IFT1025"), keys(index.search("ift", 2)));
+        assertEquals(1, index.search("ift", 1).size());
+        assertTrue(index.search("ift", 0).isEmpty());
+    }
+
+    @Test
+    public void queryWithoutWordsFindsNothing() {
+        CourseSearchIndex index = index();
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("  -- ", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    public void textIsSplitIntoFoldedWords() {
+        assertEquals(List.of("genie", "logiciel"), CourseSearchIndex.tokenize("Génie_Logiciel"));
+        assertEquals(List.of("ift1015", "programmation", "1"), CourseSearchIndex.tokenize(" IFT1015 - Programmation (1)"));
+        assertTrue(CourseSearchIndex.tokenize(null).isEmpty());
+        assertEquals(8, index().getCourseCount());
+    }
+}
@@ -0,0 +1,111 @@
+package server;
+
+import org.junit.Test;
+import server.metrics.ServerMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests du répartiteur d'évènements: noms des gestionnaires, ordre des évènements asynchrones et fermeture
+ */
+public class EventDispatcherTest {
+
+    @Test
+    public void metricsAreKeptUnderTheHandlerName() throws InterruptedException {
+        ServerMetrics metrics = new ServerMetrics();
+        EventDispatcher dispatcher = new EventDispatcher(metrics, 1, 16);
+        // Deux lambdas de la même méthode, deux noms: chacun a ses mesures
+        dispatcher.add("audit", (cmd, arg) -> {
+        }, false);
+        dispatcher.add("courriels", (cmd, arg) -> {
+            throw new IllegalStateException("serveur de courriels injoignable");
+        }, false);
+        dispatcher.dispatch("INSCRIRE", "");
+        dispatcher.dispatch("INSCRIRE", "");
+        assertEquals(2, metrics.handler("audit").getRequests());
+        assertEquals(0, metrics.handler("audit").getErrors());
+        assertEquals(2, metrics.handler("courriels").getErrors());
+        assertTrue(dispatcher.close(System.nanoTime() + 1_000_000_000L));
+    }
+
+    @Test
+    public void aNameCanOnlyBeRegisteredOnce() throws InterruptedException {
+        EventDispatcher dispatcher = new EventDispatcher(new ServerMetrics(), 1, 16);
+        EventHandler handler = (cmd, arg) -> {
+        };
+        dispatcher.add("audit", handler, false);
+        try {
+            dispatcher.add("audit", (cmd, arg) -> {
+            }, true);
+            fail("Deux gestionnaires enregistrés ne peuvent pas avoir le même nom");
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+        // Une fois retiré, le nom peut resservir
+        assertTrue(dispatcher.remove(handler));
+        dispatcher.add("audit", handler, false);
+        assertTrue(dispatcher.close(System.nanoTime() + 1_000_000_000L));
+    }
+
+    @Test
+    public void unnamedHandlersGetDistinctNames() throws InterruptedException {
+        EventDispatcher dispatcher = new EventDispatcher(new ServerMetrics(), 1, 16);
+        String first = dispatcher.nextUnnamed();
+        String second = dispatcher.nextUnnamed();
+        assertEquals("gestionnaire-1", first);
+        assertEquals("gestionnaire-2", second);
+        assertTrue(dispatcher.close(System.nanoTime() + 1_000_000_000L));
+    }
+
+    @Test
+    public void asynchronousEventsArriveInOrderBeforeClose() throws InterruptedException {
+        EventDispatcher dispatcher = new EventDispatcher(new ServerMetrics(), 2, 8);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.add("lent", (cmd, arg) -> received.add(arg), true);
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sent.add(String.valueOf(i));
+            dispatcher.dispatch("INSCRIRE", String.valueOf(i));
+        }
+        assertTrue(dispatcher.close(System.nanoTime() + 5_000_000_000L));
+        assertEquals(sent, received);
+    }
+
+    @Test
+    public void closeDrainsQueuesLongerThanOneRun() throws InterruptedException {
+        EventDispatcher dispatcher = new EventDispatcher(new ServerMetrics(), 1, 1000);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.add("lent", (cmd, arg) -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(arg);
+        }, true);
+        // Plusieurs fois le nombre d'évènements traités d'un coup: la file se vide pendant la fermeture
+        for (int i = 0; i < 300; i++) {
+            dispatcher.dispatch("INSCRIRE", String.valueOf(i));
+        }
+        assertTrue(dispatcher.close(System.nanoTime() + 10_000_000_000L));
+        assertEquals(300, received.size());
+        assertEquals("299", received.get(299));
+    }
+
+    @Test
+    public void eventsAfterCloseAreDroppedWithoutError() throws InterruptedException {
+        EventDispatcher dispatcher = new EventDispatcher(new ServerMetrics(), 1, 16);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.add("lent", (cmd, arg) -> received.add(arg), true);
+        assertTrue(dispatcher.close(System.nanoTime() + 1_000_000_000L));
+        // Le pool est arrêté: l'évènement n'est pas traité, mais la connexion qui le signale ne reçoit pas d'erreur
+        dispatcher.dispatch("INSCRIRE", "tard");
+        assertTrue(received.isEmpty());
+    }
+}
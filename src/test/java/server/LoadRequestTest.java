@@ -0,0 +1,90 @@
+package server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests du découpage de l'argument de CHARGER: session seule, version connue, page, flux et arguments refusés
+ */
+public class LoadRequestTest {
+
+    @Test
+    public void sessionAloneLoadsEverything() {
+        LoadRequest request = LoadRequest.parse("Automne");
+        assertEquals("Automne", request.session());
+        assertNull(request.knownVersion());
+        assertEquals(LoadRequest.Mode.ALL, request.mode());
+        // Sans mot-clé, tout l'argument est la session, espaces compris
+        assertEquals("Automne 2024", LoadRequest.parse("Automne 2024").session());
+    }
+
+    @Test
+    public void knownVersionIsRead() {
+        LoadRequest request = LoadRequest.parse("Automne IF-NOT 1a2b3c");
+        assertEquals("Automne", request.session());
+        assertEquals("1a2b3c", request.knownVersion());
+        assertEquals(LoadRequest.Mode.ALL, request.mode());
+    }
+
+    @Test
+    public void pageGivesOffsetAndLimit() {
+        LoadRequest request = LoadRequest.parse("Automne PAGE 20 50");
+        assertEquals("Automne", request.session());
+        assertEquals(LoadRequest.Mode.PAGE, request.mode());
+        assertEquals(20, request.offset());
+        assertEquals(50, request.limit());
+    }
+
+    @Test
+    public void streamGivesThePageSize() {
+        LoadRequest request = LoadRequest.parse("Automne FLUX 100");
+        assertEquals(LoadRequest.Mode.STREAM, request.mode());
+        assertEquals(0, request.offset());
+        assertEquals(100, request.limit());
+    }
+
+    @Test
+    public void keywordsCanBeCombined() {
+        LoadRequest request = LoadRequest.parse("Automne 2024  IF-NOT v1 PAGE 10 5");
+        assertEquals("Automne 2024", request.session());
+        assertEquals("v1", request.knownVersion());
+        assertEquals(LoadRequest.Mode.PAGE, request.mode());
+        assertEquals(10, request.offset());
+        assertEquals(5, request.limit());
+    }
+
+    @Test
+    public void pageSizeIsKeptWithinBounds() {
+        assertEquals(Server.MAX_PAGE_SIZE, LoadRequest.parse("Automne PAGE 0 999999").limit());
+        assertEquals(Server.MAX_PAGE_SIZE, LoadRequest.parse("Automne FLUX 999999").limit());
+        assertEquals(1, LoadRequest.parse("Automne FLUX 0").limit());
+        assertEquals(1, LoadRequest.parse("Automne PAGE 3 0").limit());
+    }
+
+    @Test
+    public void malformedArgumentsAreRefused() {
+        String[] malformed = {
+                "Automne PAGE",
+                "Automne PAGE 10",
+                "Automne PAGE a 10",
+                "Automne PAGE 10 -1",
+                "Automne FLUX",
+                "Automne FLUX -5",
+                "Automne FLUX beaucoup",
+                "Automne IF-NOT",
+                "Automne FLUX 10 AUTRE",
+                "Automne PAGE 0 10 20"
+        };
+        for (String arg : malformed) {
+            try {
+                LoadRequest.parse(arg);
+                fail("Accepté: " + arg);
+            } catch (IllegalArgumentException e) {
+                // attendu (NumberFormatException compris)
+            }
+        }
+    }
+}
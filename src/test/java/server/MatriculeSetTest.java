@@ -0,0 +1,107 @@
+package server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests de l'ensemble de matricules: encodage des matricules numériques ou non, ajout, recherche et retrait
+ */
+public class MatriculeSetTest {
+
+    @Test
+    public void numericMatriculesAreKeptAsIs() {
+        StringTable table = new StringTable();
+        assertEquals(20241234, MatriculeSet.encode("20241234", table, true));
+        assertEquals(0, MatriculeSet.encode("0", table, true));
+        assertEquals(999_999_999, MatriculeSet.encode("999999999", table, true));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void otherMatriculesGoThroughTheTable() {
+        StringTable table = new StringTable();
+        // Zéro en tête, plus de 9 chiffres, lettres, chaîne vide: chacun doit retrouver sa chaîne d'origine
+        String[] matricules = {"00123", "1234567890", "p1234567", "", "-5", "12 34"};
+        for (String matricule : matricules) {
+            int value = MatriculeSet.encode(matricule, table, true);
+            assertTrue(matricule, value < 0 && value != MatriculeSet.ABSENT);
+            assertEquals(matricule, MatriculeSet.decode(value, table));
+        }
+        assertEquals(matricules.length, table.size());
+        assertEquals(MatriculeSet.encode("00123", table, false), MatriculeSet.encode("00123", table, true));
+    }
+
+    @Test
+    public void lookupOfAnUnknownMatriculeDoesNotIntern() {
+        StringTable table = new StringTable();
+        assertEquals(MatriculeSet.ABSENT, MatriculeSet.encode("p1234567", table, false));
+        assertEquals(0, table.size());
+        assertFalse(new MatriculeSet().contains(MatriculeSet.ABSENT));
+    }
+
+    @Test
+    public void addContainsAndRemove() {
+        MatriculeSet set = new MatriculeSet();
+        assertTrue(set.add(20241234));
+        assertFalse(set.add(20241234));
+        assertTrue(set.add(-1));
+        assertTrue(set.contains(20241234));
+        assertTrue(set.contains(-1));
+        assertFalse(set.contains(20241235));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(20241234));
+        assertFalse(set.remove(20241234));
+        assertFalse(set.contains(20241234));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void consecutiveMatriculesSurviveGrowth() {
+        MatriculeSet set = new MatriculeSet();
+        for (int matricule = 20240000; matricule < 20250000; matricule++) {
+            assertTrue(set.add(matricule));
+        }
+        assertEquals(10_000, set.size());
+        for (int matricule = 20240000; matricule < 20250000; matricule++) {
+            assertTrue(set.contains(matricule));
+        }
+        int[] values = set.toArray();
+        Arrays.sort(values);
+        assertEquals(20240000, values[0]);
+        assertEquals(20249999, values[values.length - 1]);
+    }
+
+    @Test
+    public void randomOperationsMatchAHashSet() {
+        // Peu de valeurs distinctes pour de longues suites de cases occupées, où le recul des retraits est en jeu
+        Random random = new Random(42);
+        MatriculeSet set = new MatriculeSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(512) - 256;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            if (i % 1000 == 0) {
+                for (int v = -256; v < 256; v++) {
+                    assertEquals(expected.contains(v), set.contains(v));
+                }
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int v = -256; v < 256; v++) {
+            assertEquals(expected.contains(v), set.contains(v));
+        }
+    }
+}
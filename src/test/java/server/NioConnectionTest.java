@@ -0,0 +1,128 @@
+package server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import server.protocol.BinaryCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests des connexions du mode NIO: commandes envoyées d'un coup au-delà de la file d'une connexion,
+ * et message reçu en plusieurs morceaux
+ */
+public class NioConnectionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Server server;
+
+    @Before
+    public void startServer() throws IOException {
+        Path dataDir = folder.getRoot().toPath();
+        Files.writeString(dataDir.resolve("cours.txt"),
+                "IFT1015\tProgrammation1\tAutomne\nIFT1025\tProgrammation2\tHiver\n", StandardCharsets.UTF_8);
+        server = new Server(0, new ServerConfig().setMode(ConnectionMode.NIO).setSelectorThreads(1)
+                .setDataDir(dataDir.toString()));
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(5000);
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(10_000);
+        socket.getOutputStream().write(BinaryCodec.MAGIC);
+        byte[] magic = new byte[BinaryCodec.MAGIC.length];
+        new DataInputStream(socket.getInputStream()).readFully(magic);
+        assertArrayEquals(BinaryCodec.MAGIC, magic);
+        return socket;
+    }
+
+    /**
+     * Envoie des commandes en une seule écriture puis lit une réponse par commande
+     */
+    private static void pipeline(Socket socket, int count) throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            frames.writeBytes(BinaryCodec.frame("CHARGER Automne"));
+        }
+        socket.getOutputStream().write(frames.toByteArray());
+        InputStream in = socket.getInputStream();
+        for (int i = 0; i < count; i++) {
+            assertTrue(BinaryCodec.readMessage(in) instanceof List);
+        }
+    }
+
+    @Test
+    public void pipelinedCommandsBeyondTheQueueAreAllAnswered() throws IOException {
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(BinaryCodec.frame(Server.KEEP_ALIVE_COMMAND));
+            // Bien plus de messages que la file d'une connexion: la lecture est suspendue puis reprise
+            pipeline(socket, 500);
+            // La lecture a repris: des commandes envoyées ensuite sont encore traitées
+            pipeline(socket, 500);
+        }
+    }
+
+    @Test
+    public void largeMessageSentInPiecesIsReceived() throws IOException, InterruptedException {
+        char[] query = new char[200_000];
+        Arrays.fill(query, 'x');
+        byte[] frame = BinaryCodec.frame("CHERCHER " + new String(query));
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            for (int offset = 0; offset < frame.length; offset += 8192) {
+                out.write(frame, offset, Math.min(8192, frame.length - offset));
+                out.flush();
+                Thread.sleep(1);
+            }
+            Object reply = BinaryCodec.readMessage(socket.getInputStream());
+            assertTrue(reply instanceof List);
+            assertEquals(0, ((List<?>) reply).size());
+        }
+    }
+
+    @Test
+    public void announcedLengthAloneDoesNotBreakOtherClients() throws IOException {
+        // Des clients n'envoient que la longueur d'un message de 16 Mio; les autres sont toujours servis
+        Socket[] idle = new Socket[20];
+        int length = BinaryCodec.MAX_MESSAGE_LENGTH;
+        byte[] header = {(byte) (length & 0x7F | 0x80), (byte) (length >>> 7 & 0x7F | 0x80), (byte) (length >>> 14 & 0x7F | 0x80), (byte) (length >>> 21)};
+        try {
+            for (int i = 0; i < idle.length; i++) {
+                idle[i] = connect();
+                idle[i].getOutputStream().write(header);
+            }
+            try (Socket socket = connect()) {
+                pipeline(socket, 1);
+            }
+        } finally {
+            for (Socket socket : idle) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests de l'index des inscriptions: doublons, cours complets et place rendue quand l'inscription n'a pas pu être
+ * enregistrée
+ */
+public class RegistrationIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void duplicateIsRefused() {
+        RegistrationIndex index = new RegistrationIndex(RegistrationIndex.UNLIMITED);
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "20241234"));
+        assertEquals(RegistrationIndex.Result.DUPLICATE, index.reserve("Automne", "IFT1015", "20241234"));
+        // Même matricule, autre cours ou autre session: ce n'est pas un doublon
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1025", "20241234"));
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Hiver", "IFT1015", "20241234"));
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "p1234567"));
+        assertEquals(RegistrationIndex.Result.DUPLICATE, index.reserve("Automne", "IFT1015", "p1234567"));
+        assertEquals(2, index.getRegistrationCount("Automne", "IFT1015"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void fullCourseIsRefused() {
+        RegistrationIndex index = new RegistrationIndex(2);
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "111"));
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "222"));
+        assertEquals(RegistrationIndex.Result.FULL, index.reserve("Automne", "IFT1015", "333"));
+        // Un inscrit qui revient est un doublon, même dans un cours complet
+        assertEquals(RegistrationIndex.Result.DUPLICATE, index.reserve("Automne", "IFT1015", "111"));
+        assertFalse(index.isRegistered("Automne", "IFT1015", "333"));
+        assertEquals(2, index.getRegistrationCount("Automne", "IFT1015"));
+    }
+
+    @Test
+    public void courseCapacityOverridesTheDefault() throws IOException {
+        RegistrationIndex index = new RegistrationIndex(1);
+        Path capacities = folder.getRoot().toPath().resolve("capacites.txt");
+        Files.writeString(capacities, "IFT1015\tAutomne\t3\n", StandardCharsets.UTF_8);
+        index.loadCapacities(capacities);
+        index.setCapacity("Hiver", "IFT1015", RegistrationIndex.UNLIMITED);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "10" + i));
+        }
+        assertEquals(RegistrationIndex.Result.FULL, index.reserve("Automne", "IFT1015", "103"));
+        // Les autres cours gardent la capacité par défaut
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1025", "100"));
+        assertEquals(RegistrationIndex.Result.FULL, index.reserve("Automne", "IFT1025", "101"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Hiver", "IFT1015", "10" + i));
+        }
+    }
+
+    @Test
+    public void releaseAfterAFailedAppendFreesThePlace() {
+        RegistrationIndex index = new RegistrationIndex(1);
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "p1234567"));
+        assertEquals(RegistrationIndex.Result.FULL, index.reserve("Automne", "IFT1015", "20241234"));
+
+        // L'écriture au journal a échoué: le serveur rend la place
+        index.release("Automne", "IFT1015", "p1234567");
+        assertFalse(index.isRegistered("Automne", "IFT1015", "p1234567"));
+        assertEquals(0, index.getRegistrationCount("Automne", "IFT1015"));
+        assertEquals(0, index.size());
+
+        // La place est de nouveau libre, et l'étudiant peut réessayer plus tard
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "20241234"));
+        index.release("Automne", "IFT1015", "20241234");
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "p1234567"));
+        assertTrue(index.isRegistered("Automne", "IFT1015", "p1234567"));
+    }
+
+    @Test
+    public void releaseOfAnUnknownRegistrationChangesNothing() {
+        RegistrationIndex index = new RegistrationIndex(RegistrationIndex.UNLIMITED);
+        index.release("Automne", "IFT1015", "111");
+        assertEquals(RegistrationIndex.Result.ACCEPTED, index.reserve("Automne", "IFT1015", "111"));
+        index.release("Automne", "IFT1015", "222");
+        index.release("Automne", "IFT1015", "inconnu");
+        assertTrue(index.isRegistered("Automne", "IFT1015", "111"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void concurrentReservationsNeverExceedTheCapacity() throws InterruptedException {
+        RegistrationIndex index = new RegistrationIndex(50);
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int first = t * 100;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = first; i < first + 100; i++) {
+                    if (index.reserve("Automne", "IFT1015", String.valueOf(20240000 + i)) == RegistrationIndex.Result.ACCEPTED) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(50, accepted.get());
+        assertEquals(50, index.getRegistrationCount("Automne", "IFT1015"));
+    }
+}
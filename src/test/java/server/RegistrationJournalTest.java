@@ -0,0 +1,89 @@
+package server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import server.models.Course;
+import server.models.RegistrationForm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests du journal texte: lignes ajoutées en lots et ligne incomplète laissée par un arrêt pendant une écriture
+ */
+public class RegistrationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static RegistrationForm form(String matricule, String code) {
+        return new RegistrationForm("Jean", "D", "j@d", matricule, new Course("Cours", code, "Automne"));
+    }
+
+    private static RegistrationIndex reload(Path file) throws IOException {
+        return new RegistrationLoader(file, null).load(RegistrationIndex.UNLIMITED);
+    }
+
+    @Test
+    public void linesAreAppendedInOrder() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        RegistrationJournal journal = new RegistrationJournal(file);
+        journal.append(List.of(form("111", "IFT1015"), form("222", "IFT1025"))).join();
+        journal.append(List.of(form("333", "IFT1015"))).join();
+        journal.close();
+        assertEquals(List.of(
+                "Automne\tIFT1015\t111\tJean\tD\tj@d",
+                "Automne\tIFT1025\t222\tJean\tD\tj@d",
+                "Automne\tIFT1015\t333\tJean\tD\tj@d"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void tornTailIsRemovedBeforeTheNextAppend() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        // Arrêt pendant l'écriture d'une ligne: seul son début est sur le disque
+        Files.writeString(file, "Automne\tIFT1015\t111\tJean\tD\tj@d\nAutomne\tIFT10", StandardCharsets.UTF_8);
+
+        RegistrationJournal journal = new RegistrationJournal(file);
+        assertEquals("Automne\tIFT1015\t111\tJean\tD\tj@d\n".length(), Files.size(file));
+        journal.append(List.of(form("222", "IFT1025"))).join();
+        journal.close();
+
+        assertEquals(List.of(
+                "Automne\tIFT1015\t111\tJean\tD\tj@d",
+                "Automne\tIFT1025\t222\tJean\tD\tj@d"), Files.readAllLines(file, StandardCharsets.UTF_8));
+        RegistrationIndex index = reload(file);
+        assertTrue(index.isRegistered("Automne", "IFT1025", "222"));
+        assertFalse(index.isRegistered("Automne", "IFT10Automne", "IFT1025"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void fileWithoutCompleteLineIsEmptied() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Files.writeString(file, "Automne\tIFT", StandardCharsets.UTF_8);
+        RegistrationJournal journal = new RegistrationJournal(file);
+        journal.append(List.of(form("111", "IFT1015"))).join();
+        journal.close();
+        assertEquals(List.of("Automne\tIFT1015\t111\tJean\tD\tj@d"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reopeningACompleteFileKeepsEveryLine() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        RegistrationJournal journal = new RegistrationJournal(file);
+        journal.append(List.of(form("111", "IFT1015"))).join();
+        journal.close();
+        journal = new RegistrationJournal(file);
+        journal.append(List.of(form("222", "IFT1015"))).join();
+        journal.close();
+        assertEquals(2, reload(file).size());
+    }
+}
@@ -0,0 +1,153 @@
+package server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests du chargement de inscription.txt: morceaux analysés en parallèle, ligne incomplète à la fin du fichier
+ * et point de reprise valide, périmé ou corrompu
+ */
+public class RegistrationLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String line(int i) {
+        // Des longueurs variées, des matricules qui ne sont pas de simples nombres et quelques fins de ligne Windows
+        String matricule = i % 7 == 0 ? "p" + i : String.valueOf(20240000 + i);
+        return "Automne\tIFT" + (1000 + i % 37) + "\t" + matricule + "\tPrénom" + "x".repeat(i % 13) + "\tNom\te@mail"
+                + (i % 11 == 0 ? "\r\n" : "\n");
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder content = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            content.append(line(i));
+        }
+        return content.toString();
+    }
+
+    private static void assertContainsLines(RegistrationIndex index, int from, int to) {
+        for (int i = from; i < to; i++) {
+            String matricule = i % 7 == 0 ? "p" + i : String.valueOf(20240000 + i);
+            assertTrue("Ligne " + i, index.isRegistered("Automne", "IFT" + (1000 + i % 37), matricule));
+        }
+    }
+
+    @Test
+    public void parallelChunksGiveTheSameIndexAsASingleThread() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Files.writeString(file, lines(0, 3000), StandardCharsets.UTF_8);
+
+        // Des morceaux de quelques dizaines d'octets: presque chaque limite tombe au milieu d'une ligne
+        for (int chunkSize : new int[]{1, 37, 100, 4096}) {
+            RegistrationLoader loader = new RegistrationLoader(file, null, chunkSize, 4);
+            RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+            assertEquals("Morceaux de " + chunkSize, 3000, index.size());
+            assertContainsLines(index, 0, 3000);
+            assertEquals(Files.size(file), loader.getLoadedOffset());
+        }
+        RegistrationIndex single = new RegistrationLoader(file, null, RegistrationLoader.DEFAULT_CHUNK_SIZE, 1)
+                .load(RegistrationIndex.UNLIMITED);
+        assertEquals(3000, single.size());
+        assertEquals(3000 / 37 + 1, single.getRegistrationCount("Automne", "IFT1000"));
+    }
+
+    @Test
+    public void trailingPartialLineIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        String complete = lines(0, 10);
+        // Arrêt pendant l'écriture: la session, le code et le matricule sont là, mais pas la fin de ligne
+        Files.writeString(file, complete + "Automne\tIFT2035\t99999999\tJe", StandardCharsets.UTF_8);
+
+        RegistrationLoader loader = new RegistrationLoader(file, null, 16, 2);
+        RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(10, index.size());
+        assertFalse(index.isRegistered("Automne", "IFT2035", "99999999"));
+        assertEquals(complete.getBytes(StandardCharsets.UTF_8).length, loader.getLoadedOffset());
+    }
+
+    @Test
+    public void validCheckpointOnlyParsesTheAppendedLines() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Path checkpoint = folder.getRoot().toPath().resolve("inscription.idx");
+        Files.writeString(file, lines(0, 500), StandardCharsets.UTF_8);
+        RegistrationLoader loader = new RegistrationLoader(file, checkpoint);
+        loader.writeCheckpoint(loader.load(RegistrationIndex.UNLIMITED), loader.getLoadedOffset());
+        assertFalse(Files.exists(checkpoint.resolveSibling("inscription.idx.tmp")));
+
+        String appended = lines(500, 600);
+        Files.writeString(file, appended, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(appended.getBytes(StandardCharsets.UTF_8).length, loader.getParsedBytes());
+        assertEquals(600, index.size());
+        assertContainsLines(index, 0, 600);
+    }
+
+    @Test
+    public void checkpointOfAModifiedFileIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Path checkpoint = folder.getRoot().toPath().resolve("inscription.idx");
+        String content = lines(0, 100);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        RegistrationLoader loader = new RegistrationLoader(file, checkpoint);
+        loader.writeCheckpoint(loader.load(RegistrationIndex.UNLIMITED), loader.getLoadedOffset());
+
+        // Même taille, mais un matricule a changé juste avant la position du point de reprise
+        String modified = content.substring(0, content.length() - line(99).length()) + line(99).replace("20240099", "20240098");
+        Files.writeString(file, modified, StandardCharsets.UTF_8);
+        RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(Files.size(file), loader.getParsedBytes());
+        assertTrue(index.isRegistered("Automne", "IFT" + (1000 + 99 % 37), "20240098"));
+        assertFalse(index.isRegistered("Automne", "IFT" + (1000 + 99 % 37), "20240099"));
+    }
+
+    @Test
+    public void checkpointBeyondATruncatedFileIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Path checkpoint = folder.getRoot().toPath().resolve("inscription.idx");
+        Files.writeString(file, lines(0, 100), StandardCharsets.UTF_8);
+        RegistrationLoader loader = new RegistrationLoader(file, checkpoint);
+        loader.writeCheckpoint(loader.load(RegistrationIndex.UNLIMITED), loader.getLoadedOffset());
+
+        Files.writeString(file, lines(0, 50), StandardCharsets.UTF_8);
+        RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(Files.size(file), loader.getParsedBytes());
+        assertEquals(50, index.size());
+    }
+
+    @Test
+    public void corruptCheckpointFallsBackToAFullParse() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("inscription.txt");
+        Path checkpoint = folder.getRoot().toPath().resolve("inscription.idx");
+        Files.writeString(file, lines(0, 200), StandardCharsets.UTF_8);
+        RegistrationLoader loader = new RegistrationLoader(file, checkpoint);
+        loader.writeCheckpoint(loader.load(RegistrationIndex.UNLIMITED), loader.getLoadedOffset());
+
+        // Point de reprise coupé au milieu des inscriptions: l'index ne doit pas garder la partie déjà lue
+        byte[] written = Files.readAllBytes(checkpoint);
+        Files.write(checkpoint, Arrays.copyOf(written, written.length / 2));
+        Files.writeString(file, lines(200, 210), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        RegistrationIndex index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(Files.size(file), loader.getParsedBytes());
+        assertEquals(210, index.size());
+
+        // Octets quelconques
+        Files.write(checkpoint, "pas un point de reprise".getBytes(StandardCharsets.UTF_8));
+        index = loader.load(RegistrationIndex.UNLIMITED);
+        assertEquals(Files.size(file), loader.getParsedBytes());
+        assertEquals(210, index.size());
+    }
+}
@@ -0,0 +1,246 @@
+package server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import server.models.Course;
+import server.models.RegistrationForm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests de la reprise du journal binaire: enregistrements incomplets ou corrompus à la fin d'un segment,
+ * compaction dans l'instantané et compaction interrompue
+ */
+public class RegistrationWalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ServerConfig config() {
+        return new ServerConfig().setFsyncPolicy(FsyncPolicy.EVERY_RECORD).setCompactionIntervalMillis(60_000);
+    }
+
+    private static RegistrationForm form(int matricule) {
+        return new RegistrationForm("Prenom", "Nom", "etudiant@umontreal.ca", String.valueOf(matricule),
+                new Course("Programmation 1", "IFT1015", "Automne"));
+    }
+
+    private static Path journal(Path dataDir) {
+        return dataDir.resolve(Server.WAL_DIRECTORY);
+    }
+
+    private static Path snapshot(Path dataDir) {
+        return dataDir.resolve("inscription.txt");
+    }
+
+    /**
+     * Le journal d'un dossier et l'index rechargé de son instantané puis de ses segments
+     */
+    private record Opened(RegistrationWal wal, RegistrationIndex index, long recovered) {
+    }
+
+    private static Opened open(Path dataDir) throws IOException {
+        RegistrationWal wal = new RegistrationWal(journal(dataDir), snapshot(dataDir), config());
+        RegistrationIndex index = new RegistrationLoader(snapshot(dataDir), null).load(RegistrationIndex.UNLIMITED);
+        return new Opened(wal, index, wal.recover(index));
+    }
+
+    /**
+     * Ajoute des inscriptions, une entrée par matricule, puis copie le dossier tel qu'un arrêt brutal le laisserait:
+     * tout est forcé mais rien n'est encore compacté
+     *
+     * @return le dossier copié
+     */
+    private Path crashAfter(int... matricules) throws IOException {
+        Path dataDir = folder.newFolder().toPath();
+        Opened opened = open(dataDir);
+        for (int matricule : matricules) {
+            opened.wal().append(List.of(form(matricule))).join();
+        }
+        Path crashed = folder.newFolder().toPath();
+        Files.createDirectories(journal(crashed));
+        Files.copy(snapshot(dataDir), snapshot(crashed));
+        copyFiles(journal(dataDir), journal(crashed));
+        opened.wal().close();
+        return crashed;
+    }
+
+    private static void copyFiles(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static Path lastSegment(Path dataDir) throws IOException {
+        try (Stream<Path> files = Files.list(journal(dataDir))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).max(Path::compareTo).orElseThrow();
+        }
+    }
+
+    private static void appendBytes(Path file, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(bytes);
+        }
+    }
+
+    private static long snapshotLines(Path dataDir) throws IOException {
+        try (Stream<String> lines = Files.lines(snapshot(dataDir), StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    private static boolean registered(RegistrationIndex index, int matricule) {
+        return index.isRegistered("Automne", "IFT1015", String.valueOf(matricule));
+    }
+
+    @Test
+    public void forcedRecordsAreReplayedAfterACrash() throws IOException {
+        Path dataDir = crashAfter(1, 2, 3);
+        Opened opened = open(dataDir);
+        assertEquals(3, opened.recovered());
+        assertTrue(registered(opened.index(), 1) && registered(opened.index(), 2) && registered(opened.index(), 3));
+        opened.wal().close();
+        assertEquals(3, snapshotLines(dataDir));
+    }
+
+    @Test
+    public void tornRecordIsTruncated() throws IOException {
+        Path dataDir = crashAfter(1, 2);
+        Path segment = lastSegment(dataDir);
+        // En-tête d'un enregistrement de 64 octets suivi de 10 octets seulement
+        appendBytes(segment, ByteBuffer.allocate(18).putInt(64).putInt(0x1234).put(new byte[10]).flip());
+
+        Opened opened = open(dataDir);
+        assertEquals(2, opened.recovered());
+        assertEquals(2, opened.index().size());
+        // Les segments relus sont compactés; le segment actif ne contient pas l'enregistrement tronqué
+        assertFalse(Files.exists(segment));
+        opened.wal().append(List.of(form(3))).join();
+        opened.wal().close();
+
+        Opened reopened = open(dataDir);
+        assertEquals(0, reopened.recovered());
+        assertEquals(3, reopened.index().size());
+        assertTrue(registered(reopened.index(), 3));
+        reopened.wal().close();
+    }
+
+    @Test
+    public void incompleteRecordHeaderIsTruncated() throws IOException {
+        Path dataDir = crashAfter(1);
+        appendBytes(lastSegment(dataDir), ByteBuffer.wrap(new byte[]{0, 0, 0}));
+        Opened opened = open(dataDir);
+        assertEquals(1, opened.recovered());
+        opened.wal().close();
+        assertEquals(1, snapshotLines(dataDir));
+    }
+
+    @Test
+    public void recordWithBadChecksumEndsRecovery() throws IOException {
+        Path dataDir = crashAfter(1, 2, 3);
+        Path segment = lastSegment(dataDir);
+        // Le dernier octet du segment appartient au courriel du dernier enregistrement
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0x01)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        Opened opened = open(dataDir);
+        assertEquals(2, opened.recovered());
+        assertTrue(registered(opened.index(), 2));
+        assertFalse(registered(opened.index(), 3));
+        opened.wal().close();
+        assertEquals(2, snapshotLines(dataDir));
+    }
+
+    @Test
+    public void segmentWithoutHeaderIsDeleted() throws IOException {
+        Path dataDir = crashAfter(1);
+        // Arrêt pendant la création d'un segment: son en-tête est incomplet
+        Path empty = journal(dataDir).resolve(String.format("segment-%010d.wal", 999));
+        Files.write(empty, new byte[]{0x57, 0x41});
+        Opened opened = open(dataDir);
+        assertEquals(1, opened.recovered());
+        assertFalse(Files.exists(empty));
+        opened.wal().close();
+    }
+
+    @Test
+    public void closeCompactsEverythingIntoTheSnapshot() throws IOException {
+        Path dataDir = folder.newFolder().toPath();
+        Opened opened = open(dataDir);
+        opened.wal().append(List.of(form(1), form(2))).join();
+        opened.wal().close();
+        assertEquals(2, snapshotLines(dataDir));
+
+        Opened reopened = open(dataDir);
+        assertEquals(0, reopened.recovered());
+        assertTrue(registered(reopened.index(), 1) && registered(reopened.index(), 2));
+        reopened.wal().close();
+        assertEquals(2, snapshotLines(dataDir));
+    }
+
+    @Test
+    public void interruptedCompactionIsNotAppliedTwice() throws IOException {
+        Path dataDir = folder.newFolder().toPath();
+        open(dataDir).wal().close();
+
+        // Le dossier du journal est copié avant la compaction de la fermeture, puis remis en place après:
+        // inscription.txt contient déjà les lignes des segments remis en place
+        Opened opened = open(dataDir);
+        opened.wal().append(List.of(form(1), form(2), form(3))).join();
+        Path saved = folder.newFolder().toPath();
+        copyFiles(journal(dataDir), saved);
+        opened.wal().close();
+        assertEquals(3, snapshotLines(dataDir));
+        try (Stream<Path> files = Files.list(journal(dataDir))) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        copyFiles(saved, journal(dataDir));
+
+        Opened reopened = open(dataDir);
+        assertEquals(3, reopened.recovered());
+        assertEquals(3, reopened.index().size());
+        reopened.wal().close();
+        assertEquals(3, snapshotLines(dataDir));
+    }
+
+    @Test
+    public void appendAfterCloseFails() throws IOException {
+        Path dataDir = folder.newFolder().toPath();
+        Opened opened = open(dataDir);
+        opened.wal().close();
+        try {
+            opened.wal().append(List.of(form(1))).join();
+            fail("Un ajout après la fermeture doit échouer");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void detachRefusesUncompactedSegments() throws IOException {
+        RegistrationWal.detach(journal(crashAfter(1)));
+    }
+}
@@ -0,0 +1,158 @@
+package server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import server.models.Course;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+import server.protocol.BinaryCodec;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests du routeur: un lot découpé entre deux fragments revient dans l'ordre des formulaires, et chaque
+ * inscription est écrite par le fragment de son cours
+ */
+public class ShardRouterTest {
+
+    private final static String[] CODES = {"IFT1015", "IFT1025", "IFT1065", "IFT1215", "IFT2015", "IFT2035", "IFT2105", "IFT2255"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Server[] servers = new Server[2];
+    private final Path[] dataDirs = new Path[2];
+    private ShardRouter router;
+
+    @Before
+    public void start() throws IOException {
+        StringBuilder catalog = new StringBuilder();
+        for (String code : CODES) {
+            catalog.append(code).append("\tCours\tAutomne\n");
+        }
+        List<InetSocketAddress> shards = new ArrayList<>();
+        for (int i = 0; i < servers.length; i++) {
+            dataDirs[i] = folder.newFolder("fragment" + i).toPath();
+            Files.writeString(dataDirs[i].resolve("cours.txt"), catalog, StandardCharsets.UTF_8);
+            servers[i] = new Server(0, new ServerConfig().setMode(ConnectionMode.NIO).setSelectorThreads(1)
+                    .setDataDir(dataDirs[i].toString()));
+            servers[i].start();
+            shards.add(new InetSocketAddress("localhost", servers[i].getPort()));
+        }
+        router = new ShardRouter(0, shards, new ServerConfig());
+        Thread thread = new Thread(router::run, "router");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void stop() {
+        router.stop(5000);
+        for (Server server : servers) {
+            server.stop(5000);
+        }
+    }
+
+    private static RegistrationForm form(String matricule, String code) {
+        return new RegistrationForm("Jean", "D", "j@d", matricule, new Course("Cours", code, "Automne"));
+    }
+
+    private List<?> sendBatch(List<RegistrationForm> forms) throws IOException {
+        try (Socket socket = new Socket("localhost", router.getPort())) {
+            socket.setSoTimeout(10_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(BinaryCodec.MAGIC);
+            byte[] magic = new byte[BinaryCodec.MAGIC.length];
+            new DataInputStream(socket.getInputStream()).readFully(magic);
+            assertArrayEquals(BinaryCodec.MAGIC, magic);
+            out.write(BinaryCodec.frame(Server.BATCH_REGISTER_COMMAND));
+            out.write(BinaryCodec.frame(new ArrayList<>(forms)));
+            Object reply = BinaryCodec.readMessage(socket.getInputStream());
+            assertTrue(reply instanceof List);
+            return (List<?>) reply;
+        }
+    }
+
+    @Test
+    public void batchSplitAcrossShardsComesBackInOrder() throws IOException {
+        // Les cours alternent entre les fragments; les doublons et le cours inconnu sont refusés à leur place
+        List<RegistrationForm> forms = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (String code : CODES) {
+                forms.add(form("111", code));
+            }
+            forms.add(form("222", "IFT9999"));
+        }
+        int[] perShard = new int[servers.length];
+        for (String code : CODES) {
+            perShard[router.getShardIndex("Automne", code)]++;
+        }
+        assertTrue("Tous les cours sont sur un seul fragment", perShard[0] > 0 && perShard[1] > 0);
+
+        List<?> results = sendBatch(forms);
+        assertEquals(forms.size(), results.size());
+        for (int i = 0; i < forms.size(); i++) {
+            RegistrationResult result = (RegistrationResult) results.get(i);
+            String code = forms.get(i).getCourse().getCode();
+            RegistrationResult.Status expected = code.equals("IFT9999") ? RegistrationResult.Status.INVALID
+                    : i < CODES.length ? RegistrationResult.Status.ACCEPTED : RegistrationResult.Status.DUPLICATE;
+            assertEquals("Formulaire " + i, expected, result.getStatus());
+            assertEquals("Formulaire " + i, code, result.getCourseCode());
+        }
+    }
+
+    @Test
+    public void eachShardWritesOnlyItsOwnCourses() throws IOException {
+        List<RegistrationForm> forms = new ArrayList<>();
+        for (String code : CODES) {
+            forms.add(form("333", code));
+        }
+        sendBatch(forms);
+        for (int i = 0; i < servers.length; i++) {
+            // Le journal texte rend la ligne durable avant la réponse
+            List<String> lines = Files.readAllLines(dataDirs[i].resolve("inscription.txt"), StandardCharsets.UTF_8);
+            int expected = 0;
+            for (String code : CODES) {
+                if (router.getShardIndex("Automne", code) == i) {
+                    expected++;
+                    assertTrue(code, lines.contains("Automne\t" + code + "\t333\tJean\tD\tj@d"));
+                }
+            }
+            assertEquals(expected, lines.size());
+        }
+    }
+
+    @Test
+    public void formsOfAStoppedShardAreRefusedWithoutLosingTheOthers() throws IOException {
+        servers[1].stop(5000);
+        List<RegistrationForm> forms = new ArrayList<>();
+        for (String code : CODES) {
+            forms.add(form("444", code));
+        }
+        List<?> results = sendBatch(forms);
+        assertEquals(forms.size(), results.size());
+        for (int i = 0; i < forms.size(); i++) {
+            RegistrationResult result = (RegistrationResult) results.get(i);
+            boolean available = router.getShardIndex("Automne", CODES[i]) == 0;
+            assertEquals(CODES[i], available ? RegistrationResult.Status.ACCEPTED : RegistrationResult.Status.ERROR,
+                    result.getStatus());
+            assertEquals(CODES[i], result.getCourseCode());
+        }
+    }
+}
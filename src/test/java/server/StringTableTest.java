@@ -0,0 +1,96 @@
+package server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests de la table des chaînes: numéros dans l'ordre d'apparition, recherche sans ajout et ajouts concurrents
+ */
+public class StringTableTest {
+
+    @Test
+    public void idsFollowTheOrderOfFirstAppearance() {
+        StringTable table = new StringTable();
+        assertEquals(0, table.intern("Automne"));
+        assertEquals(1, table.intern("Hiver"));
+        assertEquals(0, table.intern("Automne"));
+        assertEquals(2, table.intern("Ete"));
+        assertEquals(3, table.size());
+        assertEquals("Hiver", table.get(1));
+    }
+
+    @Test
+    public void findDoesNotAdd() {
+        StringTable table = new StringTable();
+        assertEquals(-1, table.find("IFT1015"));
+        assertEquals(0, table.size());
+        int id = table.intern("IFT1015");
+        assertEquals(id, table.find("IFT1015"));
+    }
+
+    @Test
+    public void canonicalReturnsTheFirstCopy() {
+        StringTable table = new StringTable();
+        String first = new String("IFT2255");
+        String second = new String("IFT2255");
+        assertNotSame(first, second);
+        assertSame(first, table.canonical(first));
+        assertSame(first, table.canonical(second));
+    }
+
+    @Test
+    public void tableGrowsPastItsInitialCapacity() {
+        StringTable table = new StringTable();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, table.intern("matricule-" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("matricule-" + i, table.get(i));
+            assertEquals(i, table.find("matricule-" + i));
+        }
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void concurrentInternsGiveOneIdPerString() throws InterruptedException {
+        StringTable table = new StringTable();
+        int threads = 4;
+        int strings = 5000;
+        int[][] ids = new int[threads][strings];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int[] mine = ids[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < strings; i++) {
+                    mine[i] = table.intern("s" + i);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(strings, table.size());
+        for (int i = 0; i < strings; i++) {
+            for (int t = 1; t < threads; t++) {
+                assertEquals(ids[0][i], ids[t][i]);
+            }
+            assertEquals("s" + i, table.get(ids[0][i]));
+        }
+    }
+}
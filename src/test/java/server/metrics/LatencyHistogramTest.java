@@ -0,0 +1,126 @@
+package server.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests de l'histogramme de latences: limites des intervalles, précision relative et calcul des centiles
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramGivesZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+        for (int value = 0; value < 64; value++) {
+            // Le rang value + 1 sur 64
+            assertEquals(value, histogram.getValueAtQuantile((value + 1) / 64.0));
+        }
+    }
+
+    @Test
+    public void largerValuesShareBucketsOfDoublingWidth() {
+        // À partir de 64, les intervalles ont une largeur de 2, puis 4 à partir de 128, etc.
+        assertEquals(65, medianWithLargerValue(64));
+        assertEquals(65, medianWithLargerValue(65));
+        assertEquals(67, medianWithLargerValue(66));
+        assertEquals(127, medianWithLargerValue(126));
+        assertEquals(131, medianWithLargerValue(128));
+        assertEquals(131, medianWithLargerValue(131));
+        assertEquals(135, medianWithLargerValue(132));
+    }
+
+    /**
+     * @return le centile 50 d'un histogramme qui contient la valeur et une valeur bien plus grande: la plus grande
+     * valeur de l'intervalle de la valeur, sans être ramenée au maximum
+     */
+    private static long medianWithLargerValue(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE / 2);
+        return histogram.getValueAtQuantile(0.5);
+    }
+
+    @Test
+    public void relativeErrorIsBoundedOverTheWholeRange() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long reported = medianWithLargerValue(value);
+            assertTrue(value + " -> " + reported, reported >= value && reported - value <= value / 32);
+        }
+    }
+
+    @Test
+    public void quantileIsTheValueAtItsRank() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(1, histogram.getValueAtQuantile(0));
+        assertEquals(1, histogram.getValueAtQuantile(0.01));
+        assertEquals(50, histogram.getValueAtQuantile(0.5));
+        // Rang 90,1 arrondi à 91: la 91e plus petite valeur
+        assertEquals(91, histogram.getValueAtQuantile(0.901));
+        assertEquals(99, histogram.getValueAtQuantile(0.99));
+        // 100 partage son intervalle avec 101, mais le résultat ne dépasse jamais le maximum
+        assertEquals(100, histogram.getValueAtQuantile(1));
+        assertEquals(100, histogram.getValueAtQuantile(1.5));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        assertEquals(5.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void largestValuesFitInTheHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtQuantile(1));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long base = t * 1000L;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(base + i % 1000);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(3999, histogram.getMax());
+    }
+}
@@ -0,0 +1,252 @@
+package server.protocol;
+
+import org.junit.Test;
+import server.models.Course;
+import server.models.CourseList;
+import server.models.CoursePage;
+import server.models.RegistrationForm;
+import server.models.RegistrationResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests du format binaire: aller-retour de chaque type du protocole, et refus des messages tronqués ou corrompus
+ */
+public class BinaryCodecTest {
+
+    private static Object roundTrip(Object message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeMessage(out, message);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        Object decoded = BinaryCodec.readMessage(in);
+        assertEquals("Le message doit être lu en entier", 0, in.available());
+        return decoded;
+    }
+
+    private static void assertCourse(Course expected, Object actual) {
+        Course course = (Course) actual;
+        assertEquals(expected.getName(), course.getName());
+        assertEquals(expected.getCode(), course.getCode());
+        assertEquals(expected.getSession(), course.getSession());
+    }
+
+    @Test
+    public void stringsRoundTrip() throws IOException {
+        assertEquals("CHARGER Automne", roundTrip("CHARGER Automne"));
+        assertEquals("", roundTrip(""));
+        assertEquals("Été, génie logiciel ✓", roundTrip("Été, génie logiciel ✓"));
+        assertNull(roundTrip(null));
+    }
+
+    @Test
+    public void longStringUsesMultiByteLength() throws IOException {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        assertEquals(value, roundTrip(value));
+    }
+
+    @Test
+    public void courseAndFormRoundTrip() throws IOException {
+        Course course = new Course("Programmation 1", "IFT1015", "Automne");
+        assertCourse(course, roundTrip(course));
+
+        RegistrationForm form = (RegistrationForm) roundTrip(new RegistrationForm("Zoé", "Tremblay", "zoe@umontreal.ca", "20241234", course));
+        assertEquals("Zoé", form.getPrenom());
+        assertEquals("Tremblay", form.getNom());
+        assertEquals("zoe@umontreal.ca", form.getEmail());
+        assertEquals("20241234", form.getMatricule());
+        assertCourse(course, form.getCourse());
+
+        RegistrationForm withoutCourse = (RegistrationForm) roundTrip(new RegistrationForm(null, "Nom", null, "1", null));
+        assertNull(withoutCourse.getPrenom());
+        assertNull(withoutCourse.getCourse());
+    }
+
+    @Test
+    public void resultsRoundTripWithEveryStatus() throws IOException {
+        for (RegistrationResult.Status status : RegistrationResult.Status.values()) {
+            RegistrationResult result = (RegistrationResult) roundTrip(new RegistrationResult("20241234", "IFT1015", status, "message"));
+            assertEquals(status, result.getStatus());
+            assertEquals("20241234", result.getMatricule());
+            assertEquals("IFT1015", result.getCourseCode());
+            assertEquals("message", result.getMessage());
+        }
+        assertNull(((RegistrationResult) roundTrip(new RegistrationResult(null, null, null, null))).getStatus());
+    }
+
+    @Test
+    public void courseListAndPageRoundTrip() throws IOException {
+        ArrayList<Course> courses = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            courses.add(new Course("Cours " + i, "IFT" + (1000 + i), "Hiver"));
+        }
+        CourseList list = (CourseList) roundTrip(new CourseList("Hiver", "v42", courses));
+        assertEquals("Hiver", list.getSession());
+        assertEquals("v42", list.getVersion());
+        assertTrue(list.isModified());
+        assertEquals(courses.size(), list.getCourses().size());
+        for (int i = 0; i < courses.size(); i++) {
+            assertCourse(courses.get(i), list.getCourses().get(i));
+        }
+
+        // Une liste absente signifie "non modifié"
+        CourseList unchanged = (CourseList) roundTrip(new CourseList("Hiver", "v42", null));
+        assertFalse(unchanged.isModified());
+
+        CoursePage page = (CoursePage) roundTrip(new CoursePage("Hiver", "v42", 200, 300, new ArrayList<>(courses.subList(200, 300))));
+        assertEquals(200, page.getOffset());
+        assertEquals(300, page.getTotal());
+        assertEquals(100, page.getCourses().size());
+        assertTrue(page.isLast());
+        assertCourse(courses.get(250), page.getCourses().get(50));
+    }
+
+    @Test
+    public void listsOfFormsRoundTrip() throws IOException {
+        Course course = new Course("Algèbre", "MAT1600", "Ete");
+        List<RegistrationForm> forms = List.of(
+                new RegistrationForm("A", "B", "a@b.ca", "1", course),
+                new RegistrationForm("C", "D", "c@d.ca", "2", course));
+        List<?> decoded = (List<?>) roundTrip(new ArrayList<>(forms));
+        assertEquals(2, decoded.size());
+        assertEquals("2", ((RegistrationForm) decoded.get(1)).getMatricule());
+        assertCourse(course, ((RegistrationForm) decoded.get(1)).getCourse());
+    }
+
+    @Test
+    public void framesCanFollowEachOtherInOneStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeMessage(out, "MAINTENIR");
+        BinaryCodec.writeMessage(out, "INSCRIRE");
+        BinaryCodec.writeMessage(out, new Course("Cours", "IFT1025", "Hiver"));
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals("MAINTENIR", BinaryCodec.readMessage(in));
+        assertEquals("INSCRIRE", BinaryCodec.readMessage(in));
+        assertCourse(new Course("Cours", "IFT1025", "Hiver"), BinaryCodec.readMessage(in));
+        try {
+            BinaryCodec.readMessage(in);
+            fail("La fin du flux entre deux messages doit lever EOFException");
+        } catch (EOFException e) {
+            // attendu
+        }
+    }
+
+    @Test
+    public void encodeIsTheBodyOfFrame() throws IOException {
+        Course course = new Course("Cours", "IFT2255", "Automne");
+        byte[] body = BinaryCodec.encode(course);
+        byte[] frame = BinaryCodec.frame(course);
+        assertEquals(body.length, frame[0]);
+        assertArrayEquals(body, Arrays.copyOfRange(frame, 1, frame.length));
+        assertCourse(course, BinaryCodec.decode(frame, 1, body.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedTypeIsRefused() {
+        BinaryCodec.encode(42);
+    }
+
+    @Test
+    public void everyTruncationIsRefused() throws IOException {
+        byte[] frame = BinaryCodec.frame(new RegistrationForm("Prénom", "Nom", "p@n.ca", "20241234", new Course("Cours", "IFT1015", "Automne")));
+        for (int length = 1; length < frame.length; length++) {
+            try {
+                BinaryCodec.readMessage(new ByteArrayInputStream(Arrays.copyOf(frame, length)));
+                fail("Un message tronqué à " + length + " octets sur " + frame.length + " doit être refusé");
+            } catch (IOException e) {
+                // attendu: EOFException ou StreamCorruptedException
+            }
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void emptyStreamIsEndOfStream() throws IOException {
+        BinaryCodec.readMessage(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void oversizedLengthIsRefused() throws IOException {
+        // Longueur de MAX_MESSAGE_LENGTH + 1 en varint, sans corps: refusée avant toute allocation
+        int length = BinaryCodec.MAX_MESSAGE_LENGTH + 1;
+        BinaryCodec.readMessage(new ByteArrayInputStream(new byte[]{
+                (byte) (length & 0x7F | 0x80), (byte) (length >>> 7 & 0x7F | 0x80), (byte) (length >>> 14 & 0x7F | 0x80), (byte) (length >>> 21)}));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void overlongLengthVarintIsRefused() throws IOException {
+        BinaryCodec.readMessage(new ByteArrayInputStream(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0}));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void unknownTagIsRefused() throws IOException {
+        BinaryCodec.decode(new byte[]{99}, 0, 1);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void trailingBytesAreRefused() throws IOException {
+        byte[] body = BinaryCodec.encode("FERMER");
+        BinaryCodec.decode(Arrays.copyOf(body, body.length + 1), 0, body.length + 1);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void listSizeLargerThanMessageIsRefused() throws IOException {
+        // Étiquette de liste suivie d'une taille de 1 000 000 d'éléments, sans éléments
+        BinaryCodec.decode(new byte[]{4, (byte) 0xC0, (byte) 0x84, 0x3D}, 0, 4);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void deepNestingIsRefused() throws IOException {
+        Object nested = "fond";
+        for (int i = 0; i < 20; i++) {
+            nested = new ArrayList<>(List.of(nested));
+        }
+        byte[] body = BinaryCodec.encode(nested);
+        BinaryCodec.decode(body, 0, body.length);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void unknownStatusIsRefused() throws IOException {
+        byte[] body = BinaryCodec.encode(new RegistrationResult(null, null, RegistrationResult.Status.ACCEPTED, null));
+        // Étiquette, matricule null, code null, puis le statut
+        body[3] = (byte) (RegistrationResult.Status.values().length + 1);
+        BinaryCodec.decode(body, 0, body.length);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void formWithSomethingElseThanACourseIsRefused() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(3);
+        for (int i = 0; i < 4; i++) {
+            body.write(0);
+        }
+        body.writeBytes(BinaryCodec.encode("pas un cours"));
+        BinaryCodec.decode(body.toByteArray(), 0, body.size());
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void courseListWithSomethingElseThanCoursesIsRefused() throws IOException {
+        ArrayList<Object> notCourses = new ArrayList<>(List.of("pas un cours"));
+        byte[] list = BinaryCodec.encode(notCourses);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(6);
+        body.write(0);
+        body.write(0);
+        body.writeBytes(list);
+        BinaryCodec.decode(body.toByteArray(), 0, body.size());
+    }
+}